@@ -0,0 +1,253 @@
+package feign;
+
+import static feign.FeignException.errorExecuting;
+import static feign.FeignException.errorReading;
+import static feign.Util.ensureClosed;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import feign.InvocationHandlerFactory.MethodHandler;
+import feign.Request.Options;
+import feign.client.AsyncClient;
+import feign.codec.DecodeException;
+import feign.codec.Decoder;
+import feign.codec.ErrorDecoder;
+import feign.util.FutureUtils;
+import rx.Observable;
+import rx.Single;
+import rx.subscriptions.Subscriptions;
+
+//异步调用的MethodHandler，适用于返回类型为CompletableFuture<T>、Observable<T>、Single<T>的方法
+//1、请求通过AsyncClient发送，不阻塞调用方线程，响应在传输层的I/O线程中解码并完成Future
+//2、Observable和Single在被订阅时才发起调用，取消订阅时取消正在进行的请求
+//3、取消返回的CompletableFuture时，同样取消正在进行的请求，SOCKET协议会通知服务端放弃该请求
+//说明：异步调用不使用Feign的Retryer，因为Retryer的重试等待会阻塞I/O线程
+final class AsyncMethodHandler implements MethodHandler {
+
+	//异步调用支持的返回类型
+	enum AsyncType {
+		COMPLETABLE_FUTURE, OBSERVABLE, SINGLE;
+
+		//根据方法的返回类型，获取对应的异步类型，如果不是异步的返回类型，那么返回null
+		static AsyncType of(Type returnType) {
+			if (!(returnType instanceof ParameterizedType)) {
+				return null;
+			}
+			Type rawType = ((ParameterizedType) returnType).getRawType();
+			if (rawType == CompletableFuture.class) {
+				return COMPLETABLE_FUTURE;
+			} else if (rawType == Observable.class) {
+				return OBSERVABLE;
+			} else if (rawType == Single.class) {
+				return SINGLE;
+			}
+			return null;
+		}
+	}
+
+	private final MethodMetadata metadata;
+	private final Target<?> target;
+	private final Client client;
+	private final List<RequestInterceptor> requestInterceptors;
+	private final Logger logger;
+	private final Logger.Level logLevel;
+	private final RequestTemplate.Factory buildTemplateFromArgs;
+	private final Options options;
+	private final Decoder decoder;
+	private final ErrorDecoder errorDecoder;
+	private final boolean decode404;
+	private final AsyncType asyncType;
+	//异步类型中包装的实际返回类型，例如：CompletableFuture<User>中的User
+	private final Type valueType;
+
+	private AsyncMethodHandler(Target<?> target, Client client, List<RequestInterceptor> requestInterceptors,
+			Logger logger, Logger.Level logLevel, MethodMetadata metadata,
+			RequestTemplate.Factory buildTemplateFromArgs, Options options, Decoder decoder,
+			ErrorDecoder errorDecoder, boolean decode404) {
+		this.target = target;
+		this.client = client;
+		this.requestInterceptors = requestInterceptors;
+		this.logger = logger;
+		this.logLevel = logLevel;
+		this.metadata = metadata;
+		this.buildTemplateFromArgs = buildTemplateFromArgs;
+		this.options = options;
+		this.decoder = decoder;
+		this.errorDecoder = errorDecoder;
+		this.decode404 = decode404;
+		this.asyncType = AsyncType.of(metadata.returnType());
+		this.valueType = ((ParameterizedType) metadata.returnType()).getActualTypeArguments()[0];
+	}
+
+	@Override
+	public Object invoke(Object[] argv) throws Throwable {
+		switch (this.asyncType) {
+		case OBSERVABLE:
+			return Observable.create(subscriber -> {
+				CompletableFuture<Object> future = executeAndDecode(argv);
+				subscriber.add(Subscriptions.create(() -> future.cancel(false)));
+				future.whenComplete((result, e) -> {
+					if (subscriber.isUnsubscribed()) {
+						return;
+					}
+					if (e != null) {
+						subscriber.onError(unwrap(e));
+					} else {
+						subscriber.onNext(result);
+						subscriber.onCompleted();
+					}
+				});
+			});
+		case SINGLE:
+			return Single.create(subscriber -> {
+				CompletableFuture<Object> future = executeAndDecode(argv);
+				subscriber.add(Subscriptions.create(() -> future.cancel(false)));
+				future.whenComplete((result, e) -> {
+					if (subscriber.isUnsubscribed()) {
+						return;
+					}
+					if (e != null) {
+						subscriber.onError(unwrap(e));
+					} else {
+						subscriber.onSuccess(result);
+					}
+				});
+			});
+		default:
+			return executeAndDecode(argv);
+		}
+	}
+
+	//发起异步调用，并在响应返回时解码
+	CompletableFuture<Object> executeAndDecode(Object[] argv) {
+		Request request;
+		try {
+			request = targetRequest(this.buildTemplateFromArgs.create(argv));
+		} catch (RuntimeException e) {
+			CompletableFuture<Object> failed = new CompletableFuture<Object>();
+			failed.completeExceptionally(e);
+			return failed;
+		}
+		if (this.logLevel != Logger.Level.NONE) {
+			this.logger.logRequest(this.metadata.configKey(), this.logLevel, request);
+		}
+		long start = System.nanoTime();
+		CompletableFuture<Response> sent = execute(request);
+		return FutureUtils.propagateCancel(sent.handle((response, e) -> {
+			if (e != null) {
+				Throwable cause = unwrap(e);
+				if (cause instanceof IOException) {
+					if (this.logLevel != Logger.Level.NONE) {
+						this.logger.logIOException(this.metadata.configKey(), this.logLevel, (IOException) cause, elapsedTime(start));
+					}
+					throw errorExecuting(request, (IOException) cause);
+				}
+				throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(cause);
+			}
+			return decode(request, response, elapsedTime(start));
+		}), sent);
+	}
+
+	//如果Client支持异步调用，那么通过executeAsync发送请求，否则在调用方线程中同步执行
+	private CompletableFuture<Response> execute(Request request) {
+		if (this.client instanceof AsyncClient) {
+			return ((AsyncClient) this.client).executeAsync(request, this.options);
+		}
+		CompletableFuture<Response> future = new CompletableFuture<Response>();
+		try {
+			future.complete(this.client.execute(request, this.options));
+		} catch (Throwable e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	private Object decode(Request request, Response response, long elapsedTime) {
+		try {
+			if (this.logLevel != Logger.Level.NONE) {
+				response = this.logger.logAndRebufferResponse(this.metadata.configKey(), this.logLevel, response, elapsedTime);
+			}
+			if (response.status() >= 200 && response.status() < 300) {
+				return decode(response);
+			} else if (this.decode404 && response.status() == 404) {
+				return decode(response);
+			} else {
+				throw this.errorDecoder.decode(this.metadata.configKey(), response);
+			}
+		} catch (IOException e) {
+			if (this.logLevel != Logger.Level.NONE) {
+				this.logger.logIOException(this.metadata.configKey(), this.logLevel, e, elapsedTime);
+			}
+			throw errorReading(request, response, e);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new CompletionException(e);
+		} finally {
+			ensureClosed(response.body());
+		}
+	}
+
+	private Object decode(Response response) throws IOException {
+		try {
+			return this.decoder.decode(response, this.valueType);
+		} catch (FeignException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw new DecodeException(e.getMessage(), e);
+		}
+	}
+
+	private Request targetRequest(RequestTemplate template) {
+		for (RequestInterceptor interceptor : this.requestInterceptors) {
+			interceptor.apply(template);
+		}
+		return this.target.apply(new RequestTemplate(template));
+	}
+
+	private static long elapsedTime(long start) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	//获取CompletableFuture中包装的实际异常
+	private static Throwable unwrap(Throwable e) {
+		return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+	}
+
+	//判断方法是否需要使用AsyncMethodHandler
+	//说明：使用Hystrix时，HystrixDelegatingContract会将Observable、Single的返回类型解包成实际的类型，此时仍然使用SynchronousMethodHandler
+	static boolean isAsync(MethodMetadata md) {
+		return AsyncType.of(md.returnType()) != null;
+	}
+
+	static class Factory {
+
+		private final Client client;
+		private final List<RequestInterceptor> requestInterceptors;
+		private final Logger logger;
+		private final Logger.Level logLevel;
+		private final boolean decode404;
+
+		Factory(Client client, List<RequestInterceptor> requestInterceptors, Logger logger,
+				Logger.Level logLevel, boolean decode404) {
+			this.client = Util.checkNotNull(client, "client");
+			this.requestInterceptors = Util.checkNotNull(requestInterceptors, "requestInterceptors");
+			this.logger = Util.checkNotNull(logger, "logger");
+			this.logLevel = Util.checkNotNull(logLevel, "logLevel");
+			this.decode404 = decode404;
+		}
+
+		public MethodHandler create(Target<?> target, MethodMetadata md, RequestTemplate.Factory buildTemplateFromArgs,
+				Options options, Decoder decoder, ErrorDecoder errorDecoder) {
+			return new AsyncMethodHandler(target, this.client, this.requestInterceptors, this.logger, this.logLevel, md,
+					buildTemplateFromArgs, options, decoder, errorDecoder, this.decode404);
+		}
+	}
+
+}
@@ -5,6 +5,7 @@ import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
@@ -19,6 +20,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.Primary;
 
+import feign.client.socket.SocketClientFactory;
 import feign.properties.FeignSocketClientProperties;
 import feign.target.DefaultTargeter;
 import feign.target.HystrixTargeter;
@@ -50,6 +52,12 @@ public class FeignAutoConfigurationExt {
 		context.setConfigurations(this.configurations);
 		return context;
 	}
+
+	//应用上下文关闭时，关闭SocketClient共用的连接池，停止连接池的I/O线程
+	@Bean
+	public DisposableBean socketConnectionPoolsCloser() {
+		return SocketClientFactory::closeConnectionPools;
+	}
 	
 	@Configuration
 	@ConditionalOnClass(name = "feign.hystrix.HystrixFeign")
@@ -12,6 +12,7 @@ import feign.Target.HardCodedTarget;
 import feign.codec.Decoder;
 import feign.codec.Encoder;
 import feign.codec.ErrorDecoder;
+import feign.serializer.SerializerFactory;
 
 public class FeignBuilderExt extends Feign.Builder {
 
@@ -29,6 +30,8 @@ public class FeignBuilderExt extends Feign.Builder {
     private InvocationHandlerFactory invocationHandlerFactory =
         new InvocationHandlerFactory.Default();
     private boolean decode404;
+    //SOCKET协议中方法参数的序列化器
+    private String serializer = SerializerFactory.DEFAULT_SERIALIZER;
 
     public Builder logLevel(Logger.Level logLevel) {
       this.logLevel = logLevel;
@@ -93,6 +96,15 @@ public class FeignBuilderExt extends Feign.Builder {
       return this;
     }
 
+    /**
+     * Sets the name of the {@link feign.serializer.Serializer} used to encode the arguments of
+     * SOCKET calls, see {@link SerializerFactory}.
+     */
+    public FeignBuilderExt serializer(String serializer) {
+      this.serializer = serializer;
+      return this;
+    }
+
     public Builder errorDecoder(ErrorDecoder errorDecoder) {
       this.errorDecoder = errorDecoder;
       return this;
@@ -144,9 +156,12 @@ public class FeignBuilderExt extends Feign.Builder {
       SynchronousMethodHandler.Factory synchronousMethodHandlerFactory =
           new SynchronousMethodHandler.Factory(client, retryer, requestInterceptors, logger,
                                                logLevel, decode404);
+      AsyncMethodHandler.Factory asyncMethodHandlerFactory =
+          new AsyncMethodHandler.Factory(client, requestInterceptors, logger, logLevel, decode404);
       ParseHandlersByName handlersByName =
           new ParseHandlersByName(contract, options, encoder, decoder,
-                                  errorDecoder, synchronousMethodHandlerFactory);
+                                  errorDecoder, synchronousMethodHandlerFactory, asyncMethodHandlerFactory,
+                                  SerializerFactory.getSerializer(serializer));
       return new ReflectiveFeignExt(handlersByName, invocationHandlerFactory);
     }
     
@@ -60,6 +60,8 @@ public class FeignClientFactoryBeanExt implements FactoryBean<Object>, Initializ
 	
 	//增加Protocol的属性
 	private ProtocolType protocol;
+	//SOCKET协议使用的序列化器
+	private String serializer;
 
 	private boolean decode404;
 
@@ -95,7 +97,10 @@ public class FeignClientFactoryBeanExt implements FactoryBean<Object>, Initializ
 		
 		//作用是啥？
 		configureFeign(context, builder);
-
+		//设置SOCKET协议使用的序列化器
+		if (builder instanceof FeignBuilderExt && StringUtils.hasText(this.serializer)) {
+			((FeignBuilderExt) builder).serializer(this.serializer);
+		}
 		return builder;
 	}
 
@@ -430,4 +435,12 @@ public class FeignClientFactoryBeanExt implements FactoryBean<Object>, Initializ
 		this.protocol = protocol;
 	}
 
+	public String getSerializer() {
+		return serializer;
+	}
+
+	public void setSerializer(String serializer) {
+		this.serializer = serializer;
+	}
+
 }
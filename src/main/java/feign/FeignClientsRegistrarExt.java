@@ -189,6 +189,7 @@ public class FeignClientsRegistrarExt implements ImportBeanDefinitionRegistrar,
 		definition.addPropertyValue("type", className);
 		//增加Protocol的属性
 		definition.addPropertyValue("protocol", attributes.get("protocol"));
+		definition.addPropertyValue("serializer", attributes.get("serializer"));
 		definition.addPropertyValue("decode404", attributes.get("decode404"));
 		definition.addPropertyValue("fallback", attributes.get("fallback"));
 		definition.addPropertyValue("fallbackFactory", attributes.get("fallbackFactory"));
@@ -4,10 +4,13 @@ import static feign.Util.checkArgument;
 import static feign.Util.checkNotNull;
 import static feign.Util.checkState;
 
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.net.URI;
+import java.net.URLDecoder;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -28,14 +31,21 @@ import feign.Request.Options;
 import feign.codec.Decoder;
 import feign.codec.EncodeException;
 import feign.codec.Encoder;
+import feign.annotation.Hedged;
+import feign.annotation.Idempotent;
+import feign.client.RpcMethodDescriptor;
 import feign.codec.ErrorDecoder;
 import feign.enumerate.ProtocolType;
-import feign.packet.PpcPacketBody;
-import feign.util.BytesConversionUtils;
+import feign.loadbalancer.HedgePolicy;
+import feign.serializer.Serializer;
+import feign.serializer.SerializerFactory;
 import feign.util.ProtocolUtils;
 
 public class ReflectiveFeignExt extends Feign  {
 
+	  //RPC调用的方法在URL中的参数名
+	  private static final String RPC_INTERFACE_KEY = "interface";
+
 	  private final ParseHandlersByName targetToHandlersByName;
 	  private final InvocationHandlerFactory factory;
 
@@ -135,12 +145,19 @@ public class ReflectiveFeignExt extends Feign  {
 	    private final Decoder decoder;
 	    private final ErrorDecoder errorDecoder;
 	    private final SynchronousMethodHandler.Factory factory;
+	    //返回类型为CompletableFuture、Observable、Single的方法，使用AsyncMethodHandler
+	    private final AsyncMethodHandler.Factory asyncFactory;
+	    //SOCKET协议中方法参数的序列化器
+	    private final Serializer serializer;
 
 	    ParseHandlersByName(Contract contract, Options options, Encoder encoder, Decoder decoder,
-	                        ErrorDecoder errorDecoder, SynchronousMethodHandler.Factory factory) {
+	                        ErrorDecoder errorDecoder, SynchronousMethodHandler.Factory factory,
+	                        AsyncMethodHandler.Factory asyncFactory, Serializer serializer) {
 	      this.contract = contract;
 	      this.options = options;
 	      this.factory = factory;
+	      this.asyncFactory = asyncFactory;
+	      this.serializer = checkNotNull(serializer, "serializer");
 	      this.errorDecoder = errorDecoder;
 	      this.encoder = checkNotNull(encoder, "encoder");
 	      this.decoder = checkNotNull(decoder, "decoder");
@@ -153,6 +170,22 @@ public class ReflectiveFeignExt extends Feign  {
 		  	
 		    //获取当前代理对象（ApiService）上设置的Protocol
 			ProtocolType protocol =  ProtocolUtils.getProtocol(key.url());
+			//服务名，即URL中的host，只在解析时获取一次
+			String serviceName = URI.create(key.url()).getHost();
+			//configKey对应的接口方法，用来读取方法上除@RequestMapping之外的注解，例如：@Hedged
+			Map<String, Method> methods = new LinkedHashMap<String, Method>();
+			if (protocol == ProtocolType.SOCKET) {
+				for (Method method : key.type().getMethods()) {
+					methods.put(Feign.configKey(key.type(), method), method);
+				}
+			} else {
+				//对冲请求需要异步的Client，HTTP方法上设置的@Hedged不会生效，直接报错
+				for (Method method : key.type().getMethods()) {
+					if (method.isAnnotationPresent(Hedged.class)) {
+						throw new IllegalStateException("@Hedged is only supported on SOCKET methods: " + method);
+					}
+				}
+			}
 			
 			Map<String, MethodHandler> result = new LinkedHashMap<String, MethodHandler>();
 			for (MethodMetadata md : metadata) {
@@ -161,7 +194,8 @@ public class ReflectiveFeignExt extends Feign  {
 				BuildTemplateByResolvingArgs buildTemplate = null;
 				//如果ApiService的调用方式是RPC方式
 				if (protocol == ProtocolType.SOCKET) {
-					buildTemplate = new BuildRpcTemplateFromArgs(md,encoder);
+					describeRpcMethod(md, protocol, serviceName, key.type(), methods.get(md.configKey()));
+					buildTemplate = new BuildRpcTemplateFromArgs(md,serializer);
 				}else {
 				//如果ApiService的调用方式是HTTP方式
 					//1、当在@RequestMapping设置了PathVariable时（例如：@RequestMapping("/user/{id}")），
@@ -181,13 +215,58 @@ public class ReflectiveFeignExt extends Feign  {
 						buildTemplate = new BuildTemplateByResolvingArgs(md);
 					}
 				}
-				result.put(md.configKey(),
-					factory.create(key, md, buildTemplate, options, decoder, errorDecoder));//创建SynchronousMethodHandler对象
+				//如果RPC方法的返回类型是异步类型，那么创建AsyncMethodHandler对象，调用方线程不会被阻塞
+				if (protocol == ProtocolType.SOCKET && AsyncMethodHandler.isAsync(md)) {
+					result.put(md.configKey(),
+						asyncFactory.create(key, md, buildTemplate, options, decoder, errorDecoder));
+				}else {
+					result.put(md.configKey(),
+						factory.create(key, md, buildTemplate, options, decoder, errorDecoder));//创建SynchronousMethodHandler对象
+				}
 			}
 			return result;
 	    }
 	  }
 
+	  //生成RPC方法的RpcMethodDescriptor，并将描述的key作为X-RPC-LOCAL-METHOD头信息写入方法的RequestTemplate
+	  //之后每次调用时，LoadBalancerFeignClientExt和SocketClient都直接使用描述中的服务名和方法签名，不再解析URL
+	  //方法上设置了@Hedged、@Idempotent注解时，同时在描述中记录对冲策略以及是否幂等
+	  static void describeRpcMethod(MethodMetadata md, ProtocolType protocol, String serviceName, Class<?> clientType, Method method) {
+		  String invokeMethod = appendRpcSignature(md);
+		  if (invokeMethod == null || serviceName == null) {
+			  return;
+		  }
+		  HedgePolicy hedgePolicy = method != null ? HedgePolicy.of(method.getAnnotation(Hedged.class)) : null;
+		  boolean idempotent = method != null && method.isAnnotationPresent(Idempotent.class);
+		  RpcMethodDescriptor descriptor = RpcMethodDescriptor.register(protocol, serviceName, invokeMethod, clientType, hedgePolicy, idempotent);
+		  md.template().header(RpcMethodDescriptor.DESCRIPTOR_HEADER, descriptor.getKey());
+	  }
+
+	  //将方法的参数类型追加到@RequestMapping中interface参数的方法名之后，例如：interface=com.migu.Controller2.hello(String,int)
+	  //服务端按照完整的方法签名区分重载的方法，参数类型使用简单类名，与configKey中的格式一致
+	  //返回URL解码之后的方法签名，没有设置interface参数时返回null
+	  static String appendRpcSignature(MethodMetadata md) {
+		  Collection<String> values = md.template().queries().get(RPC_INTERFACE_KEY);
+		  if (values == null || values.isEmpty() || values.iterator().next() == null) {
+			  return null;
+		  }
+		  String invokeMethod = decode(values.iterator().next());
+		  if (invokeMethod.indexOf('(') < 0) {
+			  String configKey = md.configKey();
+			  invokeMethod = invokeMethod + configKey.substring(configKey.indexOf('('));
+			  md.template().query(RPC_INTERFACE_KEY, invokeMethod);
+		  }
+		  return invokeMethod;
+	  }
+
+	  private static String decode(String value) {
+		  try {
+			  return URLDecoder.decode(value, "UTF-8");
+		  } catch (UnsupportedEncodingException e) {
+			  return value;
+		  }
+	  }
+
 	  //适用于参数不在body以及form中的场景
 	  private static class BuildTemplateByResolvingArgs implements RequestTemplate.Factory {
 
@@ -399,19 +478,25 @@ public class ReflectiveFeignExt extends Feign  {
 	  
 	  private static class BuildRpcTemplateFromArgs extends BuildTemplateByResolvingArgs {
 
-		    private final Encoder encoder;
+		    private final Serializer serializer;
 
-		    private BuildRpcTemplateFromArgs(MethodMetadata metadata, Encoder encoder) {
+		    private BuildRpcTemplateFromArgs(MethodMetadata metadata, Serializer serializer) {
 		      super(metadata);
-		      this.encoder = encoder;
+		      this.serializer = serializer;
 		    }
 		    
 		    @Override
 		    public RequestTemplate create(Object[] argv) {
 		    	RequestTemplate template = super.create(argv);
 		    	//RequestTemplate template = new RequestTemplate(metadata.template());
-		    	PpcPacketBody packetBody = new PpcPacketBody(argv);
-		    	template.body(BytesConversionUtils.toBytes(packetBody),Charset.forName("UTF-8"));
+		    	//方法参数只在这里序列化一次，SocketClient将body原样作为请求包的包体发送
+		    	//并通过X-RPC-SERIALIZER头信息告知服务端所使用的序列化器
+		    	try {
+		    		template.body(serializer.serializeArgs(argv),Charset.forName("UTF-8"));
+		    	} catch (IOException e) {
+		    		throw new EncodeException("Serialize arguments with " + serializer.getName() + " failed! " + e.getMessage(), e);
+		    	}
+		    	template.header(SerializerFactory.SERIALIZER_HEADER, serializer.getName());
 		    	return template;
 		    } 
 	  }   
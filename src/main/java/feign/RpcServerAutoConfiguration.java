@@ -34,11 +34,15 @@ import org.springframework.core.env.Environment;
 import org.springframework.core.io.Resource;
 import org.springframework.util.StringUtils;
 
+import feign.annotation.Bulkhead;
 import feign.annotation.RpcController;
 import feign.enumerate.ProtocolType;
+import feign.serializer.SerializerFactory;
 import feign.server.RpcServerGroup;
 import feign.server.SocketServer;
+import feign.server.context.RpcMethodRegistry;
 import feign.server.context.RpcServerContext;
+import feign.server.method.RpcMethodInvoker;
 import feign.server.method.RpcMethodWrapper;
 
 @Configuration
@@ -66,10 +70,33 @@ public class RpcServerAutoConfiguration implements ApplicationContextAware,Envir
 		int socketPort = environment.getProperty("eureka.instance.metadata-map.socket-port", Integer.class, ProtocolType.SOCKET.getDefaultPort());
 		int dubboPort = environment.getProperty("eureka.instance.metadata-map.dubbo-port", Integer.class, ProtocolType.DUBBO.getDefaultPort());
 		int thriftPort = environment.getProperty("eureka.instance.metadata-map.thrift-port", Integer.class, ProtocolType.THRIFT.getDefaultPort());
+		//SocketServer的I/O线程数以及执行RPC方法调用的业务线程数
+		int socketIoThreads = environment.getProperty("feign.rpc.server.socket.io-threads", Integer.class, SocketServer.DEFAULT_IO_THREADS);
+		int socketWorkerThreads = environment.getProperty("feign.rpc.server.socket.worker-threads", Integer.class, SocketServer.DEFAULT_WORKER_THREADS);
+		//SocketServer上连接的空闲超时时间（毫秒），小于等于0表示不关闭空闲连接
+		long socketIdleTimeout = environment.getProperty("feign.rpc.server.socket.idle-timeout", Long.class, SocketServer.DEFAULT_IDLE_TIMEOUT);
+		//SocketServer业务线程池的队列长度，以及队列满时的处理方式：busy（响应服务端过载）、close（关闭连接）
+		int socketQueueCapacity = environment.getProperty("feign.rpc.server.socket.queue-capacity", Integer.class, SocketServer.DEFAULT_QUEUE_CAPACITY);
+		SocketServer.RejectionPolicy socketRejectionPolicy = SocketServer.RejectionPolicy.of(
+				environment.getProperty("feign.rpc.server.socket.rejection-policy", "busy"));
 		Map<ProtocolType,RpcServerContext> contextMap = getRpcServerContext();
 		
-		if (contextMap.containsKey(ProtocolType.SOCKET))
-			serverGroup.addServer(new SocketServer(socketPort,contextMap.get(ProtocolType.SOCKET)));
+		//SocketServer的自适应并发限制：按照延迟调整整个Server以及每个方法允许同时处理的请求数，默认不开启
+		boolean socketAdaptiveLimit = environment.getProperty("feign.rpc.server.socket.adaptive-limit.enabled", Boolean.class, false);
+		int socketInitialLimit = environment.getProperty("feign.rpc.server.socket.adaptive-limit.initial", Integer.class, 20);
+		int socketMaxLimit = environment.getProperty("feign.rpc.server.socket.adaptive-limit.max", Integer.class, 1000);
+		//客户端取消正在执行的请求时，是否中断SocketServer的执行线程，默认只标记请求的截止时间到期
+		boolean socketInterruptOnCancel = environment.getProperty("feign.rpc.server.socket.interrupt-on-cancel", Boolean.class, false);
+		
+		if (contextMap.containsKey(ProtocolType.SOCKET)) {
+			SocketServer socketServer = new SocketServer(socketPort,contextMap.get(ProtocolType.SOCKET),socketIoThreads,socketWorkerThreads,socketIdleTimeout,
+					socketQueueCapacity,socketRejectionPolicy);
+			if (socketAdaptiveLimit) {
+				socketServer.setAdaptiveConcurrencyLimit(socketInitialLimit, socketMaxLimit);
+			}
+			socketServer.setInterruptOnCancel(socketInterruptOnCancel);
+			serverGroup.addServer(socketServer);
+		}
 		return serverGroup;
 	}
 	
@@ -92,19 +119,33 @@ public class RpcServerAutoConfiguration implements ApplicationContextAware,Envir
 				RpcController controller = bean.getClass().getAnnotation(RpcController.class);
 				//获取设置在@RpcController注解上，用来表示支持哪些协议
 				ProtocolType[] supportProtocols = controller.protocol();
+				//获取设置在@RpcController注解上，用来表示支持哪些序列化器，未注册的序列化器在启动时直接报错
+				String[] supportSerializers = controller.serializer();
+				for (String serializer : supportSerializers) {
+					SerializerFactory.getSerializer(serializer);
+				}
+				//设置在Controller上的隔离舱，Controller中没有单独设置隔离舱的方法共用
+				Bulkhead controllerBulkhead = bean.getClass().getAnnotation(Bulkhead.class);
 				//获取Controller下的所有方法信息，并创建methoMrapper对象
 				Method[] methods = bean.getClass().getDeclaredMethods();
 				for(Method method : methods) {
 					RpcMethodWrapper wrapper =  new RpcMethodWrapper();
 					wrapper.setClassName(bean.getClass().getName());
 					wrapper.setMethodName(method.getName());
+					//方法签名包含参数类型，重载的方法不会互相覆盖
+					wrapper.setSignature(RpcMethodRegistry.signatureOf(wrapper.getClassName(), method));
 					wrapper.setMethod(method);
 					wrapper.setParameterTypes(method.getParameterTypes());
 					wrapper.setReturnType(method.getReturnType());
 					wrapper.setTarget(bean);
+					//在注册时创建绑定到Bean的方法调用器
+					wrapper.setInvoker(RpcMethodInvoker.create(bean, method));
 					wrapper.setProtocol(supportProtocols);
+					wrapper.setSerializers(supportSerializers);
+					Bulkhead bulkhead = method.getAnnotation(Bulkhead.class);
+					wrapper.setBulkhead(bulkhead != null ? bulkhead : controllerBulkhead);
 					rpcMethodrapperList.add(wrapper);
-					LOGGER.info("Mapped RPC Service [" + wrapper.getClassName() + "." + wrapper.getMethodName() + "] ");
+					LOGGER.info("Mapped RPC Service [" + wrapper.getSignature() + "] ");
 				}
 				return rpcMethodrapperList.stream();
 			})
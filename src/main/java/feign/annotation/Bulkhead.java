@@ -0,0 +1,23 @@
+package feign.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//隔离舱，限制@RpcController中的方法在SocketServer上占用的执行资源，避免一个慢方法拖垮同一个实例上的其他方法
+//设置在类上时，Controller中的所有方法共用一个隔离舱；设置在方法上时，该方法单独使用一个隔离舱，并覆盖类上的设置
+@Documented
+@Target({ ElementType.TYPE, ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Bulkhead {
+	//同时执行的最大请求数，超过时直接响应FLAG_BUSY，小于等于0表示不限制
+	int maxConcurrent() default 0;
+
+	//专用的业务线程数，大于0时在专用的线程池中执行，不与其他方法共用SocketServer的业务线程池
+	int threads() default 0;
+
+	//专用线程池的队列长度，小于等于0表示不排队，队列满时按照SocketServer的RejectionPolicy处理
+	int queueCapacity() default 64;
+}
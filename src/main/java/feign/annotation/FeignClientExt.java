@@ -12,6 +12,7 @@ import org.springframework.cloud.netflix.feign.FeignClientsConfiguration;
 import org.springframework.core.annotation.AliasFor;
 
 import feign.enumerate.ProtocolType;
+import feign.serializer.SerializerFactory;
 
 @Inherited
 @Target(ElementType.TYPE)
@@ -31,6 +32,9 @@ public @interface FeignClientExt {
 	//Protocol
 	ProtocolType protocol() default ProtocolType.HTTP;
 	
+	//SOCKET协议中方法参数以及返回值的序列化器，例如：java、json、binary
+	String serializer() default SerializerFactory.DEFAULT_SERIALIZER;
+	
 	/**
 	 * The service id with optional protocol prefix. Synonym for {@link #value() value}.
 	 *
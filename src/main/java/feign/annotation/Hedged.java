@@ -0,0 +1,25 @@
+package feign.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//对冲请求，只能用于@FeignClientExt接口中SOCKET协议的幂等（只读）方法，与@RequestMapping一起使用
+//设置了@Hedged的方法同时被视为@Idempotent的方法
+//请求在最近延迟的percentile百分位之后仍未返回时，向另一个Server再发送一次请求，使用先返回的响应并取消另一个请求
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Hedged {
+
+	//发送对冲请求之前等待的最近延迟的百分位，例如：95表示等待P95延迟
+	double percentile() default 95;
+
+	//对冲请求占该方法请求总数的最大百分比
+	double budget() default 10;
+
+	//发送对冲请求之前最少等待的时间（毫秒）
+	long minDelay() default 5;
+}
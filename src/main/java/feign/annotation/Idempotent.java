@@ -0,0 +1,16 @@
+package feign.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//幂等的方法，用于@FeignClientExt接口中SOCKET协议的方法，与@RequestMapping一起使用
+//请求已经发出之后失败（例如：读取超时、服务端错误）时，RetryableFeignLoadBalancerExt只重试幂等的方法
+//请求没有发出（建立连接失败）时，所有方法都可以重试
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Idempotent {
+}
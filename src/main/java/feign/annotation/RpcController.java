@@ -18,4 +18,8 @@ import feign.enumerate.ProtocolType;
 public @interface RpcController {
 	//Protocol
 	ProtocolType[] protocol() default ProtocolType.SOCKET; 
+	
+	//支持的序列化器，按照优先级排序，为空时支持所有已注册的序列化器
+	//客户端使用的序列化器不在其中时，使用第一个序列化器编码返回值
+	String[] serializer() default {};
 }
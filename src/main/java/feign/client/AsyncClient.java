@@ -0,0 +1,15 @@
+package feign.client;
+
+import java.util.concurrent.CompletableFuture;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+
+//支持异步调用的Client
+//executeAsync不阻塞调用方线程，返回的Future在传输层的I/O线程中完成
+public interface AsyncClient extends Client {
+
+	CompletableFuture<Response> executeAsync(Request request, Request.Options options);
+
+}
@@ -1,9 +1,14 @@
 package feign.client;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import org.springframework.cloud.netflix.ribbon.SpringClientFactory;
+import org.springframework.util.ConcurrentReferenceHashMap;
 
 import com.netflix.client.ClientException;
 import com.netflix.client.config.CommonClientConfigKey;
@@ -16,14 +21,17 @@ import feign.Response;
 import feign.loadbalancer.CachingSpringLoadBalancerFactoryExt;
 import feign.loadbalancer.FeignLoadBalancerExt;
 import feign.loadbalancer.FeignLoadBalancerExt.RibbonRequest;
+import feign.util.FutureUtils;
 
-public class LoadBalancerFeignClientExt implements Client {
+public class LoadBalancerFeignClientExt implements AsyncClient {
 
 	static final Request.Options DEFAULT_OPTIONS = new Request.Options();
 
 	private final Client delegate;
 	private CachingSpringLoadBalancerFactoryExt lbClientFactory;
 	private SpringClientFactory clientFactory;
+	//按照Feign的Options缓存的IClientConfig，Feign的每个方法都使用固定的Options对象
+	private final Map<Request.Options, IClientConfig> optionsClientConfigs = new ConcurrentReferenceHashMap<Request.Options, IClientConfig>();
 
 	public LoadBalancerFeignClientExt(Client delegate,
 			CachingSpringLoadBalancerFactoryExt lbClientFactory,
@@ -36,13 +44,18 @@ public class LoadBalancerFeignClientExt implements Client {
 	@Override
 	public Response execute(Request request, Request.Options options) throws IOException {
 		try {
-			URI asUri = URI.create(request.url());
-			String clientName = asUri.getHost();
-			URI uriWithoutHost = cleanUrl(request.url(), clientName);
+			//SOCKET方法使用解析MethodMetadata时生成的RpcMethodDescriptor，不再解析URL
+			RpcMethodDescriptor descriptor = RpcMethodDescriptor.get(request);
+			String clientName = descriptor != null ? descriptor.getServiceName() : URI.create(request.url()).getHost();
+			URI uriWithoutHost = descriptor != null ? descriptor.getUriWithoutHost(request.url()) : cleanUrl(request.url(), clientName);
 			FeignLoadBalancerExt.RibbonRequest ribbonRequest = new FeignLoadBalancerExt.RibbonRequest(
 					this.delegate, request, uriWithoutHost);
 
 			IClientConfig requestConfig = getClientConfig(options, clientName);
+			//设置了@Hedged的方法发送对冲请求，不经过LoadBalancerCommand的重试
+			if (descriptor != null && descriptor.getHedgePolicy() != null) {
+				return awaitHedged(lbClient(clientName).executeHedged(ribbonRequest, requestConfig, descriptor.getHedgePolicy()));
+			}
 			return lbClient(clientName).executeWithLoadBalancer(ribbonRequest,
 					requestConfig).toResponse();
 		}
@@ -55,12 +68,62 @@ public class LoadBalancerFeignClientExt implements Client {
 		}
 	}
 
+	//异步执行负载均衡的请求，delegate为AsyncClient时不阻塞调用方线程
+	//取消返回的Future时，同时取消正在进行的请求
+	@Override
+	public CompletableFuture<Response> executeAsync(Request request, Request.Options options) {
+		try {
+			//SOCKET方法使用解析MethodMetadata时生成的RpcMethodDescriptor，不再解析URL
+			RpcMethodDescriptor descriptor = RpcMethodDescriptor.get(request);
+			String clientName = descriptor != null ? descriptor.getServiceName() : URI.create(request.url()).getHost();
+			URI uriWithoutHost = descriptor != null ? descriptor.getUriWithoutHost(request.url()) : cleanUrl(request.url(), clientName);
+			FeignLoadBalancerExt.RibbonRequest ribbonRequest = new FeignLoadBalancerExt.RibbonRequest(
+					this.delegate, request, uriWithoutHost);
+
+			IClientConfig requestConfig = getClientConfig(options, clientName);
+			CompletableFuture<FeignLoadBalancerExt.RibbonResponse> future;
+			if (descriptor != null && descriptor.getHedgePolicy() != null) {
+				future = lbClient(clientName).executeHedged(ribbonRequest, requestConfig, descriptor.getHedgePolicy());
+			} else {
+				future = lbClient(clientName).executeAsync(ribbonRequest, requestConfig);
+			}
+			return FutureUtils.propagateCancel(future.thenApply(FeignLoadBalancerExt.RibbonResponse::toResponse), future);
+		}
+		catch (RuntimeException e) {
+			CompletableFuture<Response> failed = new CompletableFuture<Response>();
+			failed.completeExceptionally(e);
+			return failed;
+		}
+	}
+
+	//同步等待对冲请求的结果，失败的原因按照execute的方式抛出
+	private Response awaitHedged(CompletableFuture<FeignLoadBalancerExt.RibbonResponse> future) throws IOException {
+		try {
+			return future.get().toResponse();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			future.cancel(false);
+			throw new InterruptedIOException(e.getMessage());
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause() != null ? e.getCause() : e;
+			IOException io = findIOException(cause);
+			if (io != null) {
+				throw io;
+			}
+			throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+		}
+	}
+
 	IClientConfig getClientConfig(Request.Options options, String clientName) {
 		IClientConfig requestConfig;
 		if (options == DEFAULT_OPTIONS) {
 			requestConfig = this.clientFactory.getClientConfig(clientName);
 		} else {
-			requestConfig = new FeignOptionsClientConfig(options);
+			requestConfig = this.optionsClientConfigs.get(options);
+			if (requestConfig == null) {
+				requestConfig = new FeignOptionsClientConfig(options);
+				this.optionsClientConfigs.put(options, requestConfig);
+			}
 		}
 		return requestConfig;
 	}
@@ -79,22 +142,35 @@ public class LoadBalancerFeignClientExt implements Client {
 		return this.delegate;
 	}
 
+	//去掉URL中第一次出现的host，host按照普通字符串匹配，不需要编译成正则表达式
 	static URI cleanUrl(String originalUrl, String host) {
-		return URI.create(originalUrl.replaceFirst(host, ""));
+		int index = originalUrl.indexOf(host);
+		if (index < 0) {
+			return URI.create(originalUrl);
+		}
+		return URI.create(originalUrl.substring(0, index) + originalUrl.substring(index + host.length()));
 	}
 
 	private FeignLoadBalancerExt lbClient(String clientName) {
 		return this.lbClientFactory.create(clientName);
 	}
 
-	static class FeignOptionsClientConfig extends DefaultClientConfigImpl {
+	public static class FeignOptionsClientConfig extends DefaultClientConfigImpl {
+
+		private final Request.Options options;
 
 		public FeignOptionsClientConfig(Request.Options options) {
+			this.options = options;
 			setProperty(CommonClientConfigKey.ConnectTimeout,
 					options.connectTimeoutMillis());
 			setProperty(CommonClientConfigKey.ReadTimeout, options.readTimeoutMillis());
 		}
 
+		//生成该配置的Options，FeignLoadBalancerExt直接使用，不再重新创建
+		public Request.Options getOptions() {
+			return this.options;
+		}
+
 		@Override
 		public void loadProperties(String clientName) {
 
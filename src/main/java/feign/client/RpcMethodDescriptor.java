@@ -0,0 +1,132 @@
+package feign.client;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import feign.Request;
+import feign.enumerate.ProtocolType;
+import feign.loadbalancer.HedgePolicy;
+import feign.packet.RpcPacketCodec;
+
+//RPC方法的路由描述，在ReflectiveFeignExt解析MethodMetadata时生成一次，包括：协议、服务名以及方法签名
+//描述的key通过X-RPC-LOCAL-METHOD头信息随Request传递，LoadBalancerFeignClientExt和SocketClient直接使用描述中的信息，不再解析URL
+public final class RpcMethodDescriptor {
+
+	//Request中携带描述key的头信息，只在客户端本地使用，RpcPacketCodec不会将其写入帧中
+	public static final String DESCRIPTOR_HEADER = RpcPacketCodec.LOCAL_HEADER_PREFIX + "METHOD";
+
+	//所有的方法描述，key是服务名/方法签名，注册时指定了客户端接口的描述再加上#接口名
+	private static final Map<String, RpcMethodDescriptor> DESCRIPTORS = new ConcurrentHashMap<String, RpcMethodDescriptor>();
+
+	private final String key;
+
+	private final ProtocolType protocol;
+
+	//服务名，即负载均衡的clientName
+	private final String serviceName;
+
+	//URL解码之后的方法签名，例如：com.migu.Controller2.hello(String,int)
+	private final String invokeMethod;
+
+	//方法上@Hedged注解对应的对冲策略，没有设置时为null
+	private volatile HedgePolicy hedgePolicy;
+
+	//是否是幂等的方法（设置了@Idempotent或者@Hedged），失败时可以在其他Server上重试
+	private volatile boolean idempotent;
+
+	//最近一次请求的URL，以及去掉服务名之后的URI，同一个方法的URL通常不会变化
+	private volatile CleanUri cleanUri;
+
+	private RpcMethodDescriptor(String key, ProtocolType protocol, String serviceName, String invokeMethod) {
+		this.key = key;
+		this.protocol = protocol;
+		this.serviceName = serviceName;
+		this.invokeMethod = invokeMethod;
+	}
+
+	//注册方法描述，同一个服务的同一个方法共用一个描述
+	public static RpcMethodDescriptor register(ProtocolType protocol, String serviceName, String invokeMethod) {
+		String key = serviceName + "/" + invokeMethod;
+		return DESCRIPTORS.computeIfAbsent(key, k -> new RpcMethodDescriptor(k, protocol, serviceName, invokeMethod));
+	}
+
+	//注册客户端接口中方法的描述，并设置方法的对冲策略以及是否幂等
+	//对冲策略以及是否幂等来自接口方法上的注解，所以按照客户端接口区分：调用同一个服务的同一个方法的不同接口，使用各自的描述
+	public static RpcMethodDescriptor register(ProtocolType protocol, String serviceName, String invokeMethod,
+			Class<?> clientType, HedgePolicy hedgePolicy, boolean idempotent) {
+		String key = serviceName + "/" + invokeMethod + "#" + clientType.getName();
+		return DESCRIPTORS.computeIfAbsent(key, k -> {
+			RpcMethodDescriptor descriptor = new RpcMethodDescriptor(k, protocol, serviceName, invokeMethod);
+			descriptor.hedgePolicy = hedgePolicy;
+			descriptor.idempotent = idempotent || hedgePolicy != null;
+			return descriptor;
+		});
+	}
+
+	//获取Request中X-RPC-LOCAL-METHOD头信息对应的方法描述，不存在时返回null
+	public static RpcMethodDescriptor get(Request request) {
+		return get(request.headers());
+	}
+
+	public static RpcMethodDescriptor get(Map<String, Collection<String>> headers) {
+		if (headers == null) {
+			return null;
+		}
+		Collection<String> values = headers.get(DESCRIPTOR_HEADER);
+		return values == null || values.isEmpty() ? null : DESCRIPTORS.get(values.iterator().next());
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public ProtocolType getProtocol() {
+		return protocol;
+	}
+
+	public String getServiceName() {
+		return serviceName;
+	}
+
+	public String getInvokeMethod() {
+		return invokeMethod;
+	}
+
+	public HedgePolicy getHedgePolicy() {
+		return hedgePolicy;
+	}
+
+	public boolean isIdempotent() {
+		return idempotent;
+	}
+
+	//去掉URL中的服务名，生成交给Ribbon重建的URI，URL不变时直接返回上次的结果
+	URI getUriWithoutHost(String url) {
+		CleanUri cleanUri = this.cleanUri;
+		if (cleanUri == null || !cleanUri.url.equals(url)) {
+			cleanUri = new CleanUri(url, LoadBalancerFeignClientExt.cleanUrl(url, this.serviceName));
+			this.cleanUri = cleanUri;
+		}
+		return cleanUri.uri;
+	}
+
+	@Override
+	public String toString() {
+		return "RpcMethodDescriptor{protocol=" + this.protocol + ", service=" + this.serviceName + ", method=" + this.invokeMethod + "}";
+	}
+
+	private static final class CleanUri {
+
+		private final String url;
+
+		private final URI uri;
+
+		CleanUri(String url, URI uri) {
+			this.url = url;
+			this.uri = uri;
+		}
+	}
+
+}
@@ -0,0 +1,19 @@
+package feign.client.socket;
+
+import java.io.IOException;
+
+//请求没有发出：无法从连接池中借出连接，或者请求帧写出之前连接已经关闭
+//服务端一定没有收到该请求，SocketClient可以换一条连接重新发送，最终失败时返回NOT_SENT_STATUS
+public class RequestNotSentException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	public RequestNotSentException(String message) {
+		super(message);
+	}
+
+	public RequestNotSentException(IOException cause) {
+		super(cause.getMessage(), cause);
+	}
+
+}
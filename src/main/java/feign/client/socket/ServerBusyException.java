@@ -0,0 +1,15 @@
+package feign.client.socket;
+
+import java.io.IOException;
+
+//服务端过载，拒绝执行请求（响应包设置了FLAG_BUSY）
+//服务端没有执行该请求，SocketClient返回NOT_SENT_STATUS，调用方可以立即在其他Server上重试
+public class ServerBusyException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	public ServerBusyException(String message) {
+		super(message);
+	}
+
+}
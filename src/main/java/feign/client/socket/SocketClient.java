@@ -1,27 +1,36 @@
 package feign.client.socket;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.InetSocketAddress;
-import java.net.Socket;
-import java.net.URI;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.io.UnsupportedEncodingException;
+import java.net.SocketTimeoutException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 
-import feign.Client;
+import org.springframework.util.ConcurrentReferenceHashMap;
+
 import feign.Request;
 import feign.Response;
-import feign.packet.PpcPacketBody;
+import feign.client.AsyncClient;
+import feign.client.RpcMethodDescriptor;
+import feign.packet.RpcDeadline;
 import feign.packet.RpcPacket;
-import feign.util.BytesConversionUtils;
+import feign.packet.RpcPacketCodec;
+import feign.serializer.Serializer;
+import feign.serializer.SerializerFactory;
 import feign.util.URLUtils;
 import feign.Request.Options;
 
-public class SocketClient implements Client {
+public class SocketClient implements AsyncClient {
+	//请求没有发出（建立连接失败或者无法从连接池中借出连接）或者服务端过载拒绝执行时的状态码
+	//服务端一定没有执行该请求，调用方可以安全地重试
+	public static final int NOT_SENT_STATUS = 503;
+	//服务端执行请求失败（方法抛出异常、参数无法反序列化、找不到方法等）时的状态码，Response的包体是服务端返回的错误信息
+	public static final int SERVER_ERROR_STATUS = 500;
+
 	private String INVOKE_METHOD_KEY = "interface";
 	
 	private String ip;
@@ -31,69 +40,178 @@ public class SocketClient implements Client {
 	//读取的超时时间
 	private int readTimeout;
 	
-	private Socket socket = null;
+	//Socket的连接池，连接在调用结束后归还到连接池中复用
+	private SocketConnectionPool connectionPool;
+
+	//URL对应的路由
+	private final Map<String, SocketRoute> routes = new ConcurrentReferenceHashMap<String, SocketRoute>();
 	
-	private SocketClient(String ip,int port,int connectTimeout, int readTimeout) {
+	private SocketClient(String ip,int port,int connectTimeout, int readTimeout, SocketConnectionPool connectionPool) {
 		this.ip = ip;
 		this.port = port;
 		this.connectTimeout = connectTimeout;
 		this.readTimeout = readTimeout;
+		this.connectionPool = connectionPool;
 	}
 	
 	@Override
 	public Response execute(Request request, Options options) throws IOException {
 		try {
-			System.out.println("Socket:" + this.socket);
-			
-			URI uri = new URI(request.url());
-			String host = uri.getHost();
-			int port = uri.getPort();
-			String invokeMethodName = this.getInvokeMethod(request.url());
-			//Map<String,String> params = this.getRequestParams(request.url());			
-			PpcPacketBody packetBody = PpcPacketBody.class.cast(BytesConversionUtils.toObject(request.body()));
-			//创建Socket的连接endpoint
-			InetSocketAddress endpoint = new InetSocketAddress(host,port);
-			if (socket == null || socket.isClosed() || !socket.isConnected()) { 
-				this.socket = new Socket();
-                this.socket.connect(endpoint);
-    			//this.socket.connect(endpoint, this.connectTimeout);
-				//this.socket.setSoTimeout(readTimeout);
-            }
-
-			//创建Socket的Ouput对象，用于发送请求
-			ObjectOutputStream output = new ObjectOutputStream(this.socket.getOutputStream());
+			//连接池中按照负载均衡后的host:port区分连接
+			SocketRoute route = this.getRoute(request.url());
 			//构建请求的包
-			RpcPacket requestPacket = new RpcPacket(invokeMethodName,request.headers(),packetBody);
-			output.writeObject(requestPacket);
-			//创建Socket的Input对象，用于接受远程调用的结果
-			ObjectInputStream input = new ObjectInputStream(this.socket.getInputStream()); 
-			//构建返回的包
-			RpcPacket responsePacket = (RpcPacket)input.readObject();
-			input.close();
-			output.close();
-			//获取返回包体中的结果数据
-			byte[] result = BytesConversionUtils.toBytes(responsePacket.getPacketBody().getResult());
+			RpcPacket requestPacket = this.toRequestPacket(request);
+			//在RPC方法中发起的嵌套调用，只使用上游请求剩余的时间
+			int timeout = RpcDeadline.timeout(options.readTimeoutMillis());
+			if (timeout <= 0) {
+				throw new SocketTimeoutException("Deadline exceeded before sending request to " + route);
+			}
+			requestPacket.setTimeout(timeout);
+			//发送请求，并接收远程调用的结果
+			RpcPacket responsePacket = this.exchange(route, requestPacket, options.connectTimeoutMillis(), timeout);
+			return this.toResponse(responsePacket);
+			
+		}catch(Exception e) {
+			int status = e instanceof RequestNotSentException || e instanceof ServerBusyException ? NOT_SENT_STATUS : 502;
+			return Response.builder().status(status).headers(request.headers()).reason(e.getMessage()).build();
+		}
+	}
+	
+	//异步发送请求，响应包在连接所在的I/O线程中转换成Response
+	//与同步调用一样，调用失败时返回状态码为502的Response
+	@Override
+	public CompletableFuture<Response> executeAsync(Request request, Options options) {
+		SocketConnection connection = null;
+		try {
+			SocketRoute route = this.getRoute(request.url());
+			RpcPacket requestPacket = this.toRequestPacket(request);
+			int timeout = RpcDeadline.timeout(options.readTimeoutMillis());
+			if (timeout <= 0) {
+				return CompletableFuture.completedFuture(Response.builder().status(502).headers(request.headers())
+						.reason("Deadline exceeded before sending request to " + route).build());
+			}
+			requestPacket.setTimeout(timeout);
+			try {
+				connection = this.connectionPool.borrow(route, options.connectTimeoutMillis());
+			} catch (IOException e) {
+				return CompletableFuture.completedFuture(
+						Response.builder().status(NOT_SENT_STATUS).headers(request.headers()).reason(e.getMessage()).build());
+			}
+			SocketConnection borrowed = connection;
+			CompletableFuture<RpcPacket> sent = connection.send(requestPacket, timeout);
+			//单个请求的失败（读取超时、服务端过载、调用方取消等）只放弃当前请求，连接仍然打开时可以继续使用
+			sent.whenComplete((responsePacket, e) -> this.connectionPool.release(borrowed, e == null || borrowed.isOpen()));
+			CompletableFuture<Response> response = sent.handle((responsePacket, e) -> {
+				Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+				if (cause != null) {
+					int status = cause instanceof RequestNotSentException || cause instanceof ServerBusyException ? NOT_SENT_STATUS : 502;
+					return Response.builder().status(status).headers(request.headers()).reason(cause.getMessage()).build();
+				}
+				return this.toResponse(responsePacket);
+			});
+			//调用方取消返回的CompletableFuture时（例如：对冲请求中另一个请求先返回），同时取消连接上等待的请求
+			response.whenComplete((r, e) -> {
+				if (response.isCancelled()) {
+					sent.cancel(false);
+				}
+			});
+			return response;
+		}catch(Exception e) {
+			if (connection != null) {
+				this.connectionPool.release(connection, false);
+			}
+			return CompletableFuture.completedFuture(
+					Response.builder().status(502).headers(request.headers()).reason(e.getMessage()).build());
+		}
+	}
+	
+	//将Feign的Request转换成请求包
+	//Request的body中已经是序列化后的方法参数，直接作为请求包的包体，不再反序列化
+	//调用的方法优先使用X-RPC-LOCAL-METHOD头信息对应的RpcMethodDescriptor，没有时才从URL中解析
+	//X-RPC-LOCAL-METHOD只在客户端本地使用，由RpcPacketCodec在编码时跳过，头信息不需要复制
+	private RpcPacket toRequestPacket(Request request) {
+		RpcMethodDescriptor descriptor = RpcMethodDescriptor.get(request);
+		String invokeMethodName = descriptor != null ? descriptor.getInvokeMethod() : this.getInvokeMethod(request.url());
+		return new RpcPacket(invokeMethodName,request.headers(),request.body());
+	}
+	
+	//将响应包转换成Feign的Response
+	//响应包的包体是服务端序列化后的方法返回值，直接作为Response的body，由RpcMessageConverter反序列化成返回类型
+	//带有FLAG_ERROR的响应包转换成状态码为500的Response，由Feign的ErrorDecoder处理，异常节点检测以及重试也把它当作Server的错误
+	private Response toResponse(RpcPacket responsePacket) {
+		if (responsePacket.hasFlag(RpcPacketCodec.FLAG_ERROR)) {
+			String message = this.getErrorMessage(responsePacket);
 			return Response.builder()
-					.status(200)
+					.status(SERVER_ERROR_STATUS)
+					.reason(message)
 					.headers(responsePacket.getHeaders())
-					.body(result)
+					.body(message, StandardCharsets.UTF_8)
 					.build();
-			
-		}catch(Exception e) {
-			return Response.builder().status(502).headers(request.headers()).reason(e.getMessage()).build();
-		}finally {
+		}
+		return Response.builder()
+				.status(200)
+				.headers(responsePacket.getHeaders())
+				.body(responsePacket.getPayload())
+				.build();
+	}
+	
+	//按照响应包的X-RPC-SERIALIZER反序列化服务端返回的错误信息
+	private String getErrorMessage(RpcPacket responsePacket) {
+		try {
+			Serializer serializer = SerializerFactory.getSerializer(responsePacket.getHeaders());
+			return String.valueOf(serializer.deserialize(responsePacket.getPayload(), String.class));
+		} catch (Exception e) {
+			return "Remote invocation failed, and the error message can not be resolved! " + e.getMessage();
+		}
+	}
+	
+	//从连接池中借出连接，发送请求包并等待响应包
+	//只有请求帧还没有写出，复用的空闲连接就已经被服务端关闭时，才关闭该连接，并使用其他连接重新发送请求
+	//请求帧已经写出之后的失败一律不重发，避免非幂等的方法被执行两次
+	private RpcPacket exchange(SocketRoute route, RpcPacket requestPacket, int connectTimeout, int readTimeout) throws IOException {
+		for (;;) {
+			SocketConnection connection;
 			try {
-				this.socket.close();
+				connection = this.connectionPool.borrow(route, connectTimeout);
 			} catch (IOException e) {
-				e.printStackTrace();
-				return Response.builder().status(502).headers(request.headers()).reason(e.getMessage()).build();
+				throw new RequestNotSentException(e);
+			}
+			boolean reusable = true;
+			try {
+				return connection.exchange(requestPacket, readTimeout);
+			} catch (RequestNotSentException e) {
+				reusable = false;
+				if (!connection.isReused()) {
+					throw e;
+				}
+			} finally {
+				//单个请求的失败（读取超时、服务端过载等）不影响连接上的其他请求，连接已经关闭时才从连接池中移除
+				this.connectionPool.release(connection, reusable && connection.isOpen());
 			}
 		}
 	}
 	
-	//获取rpc协议中调用的方法
+	//获取URL对应的路由，FeignLoadBalancerExt对同一个Server上的同一个方法复用重建之后的URI，URL通常是同一个字符串对象
+	private SocketRoute getRoute(String url) {
+		SocketRoute route = this.routes.get(url);
+		if (route == null) {
+			route = SocketRoute.fromUrl(url);
+			this.routes.put(url, route);
+		}
+		return route;
+	}
+
+	//获取rpc协议中调用的方法，即URL解码之后的方法签名
 	private String getInvokeMethod(String url) {
-		return URLUtils.resolveParam(url, INVOKE_METHOD_KEY);
+		String invokeMethod = URLUtils.resolveParam(url, INVOKE_METHOD_KEY);
+		if (invokeMethod.indexOf('%') < 0) {
+			return invokeMethod;
+		}
+		try {
+			return URLDecoder.decode(invokeMethod, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			return invokeMethod;
+		}
 	}
 
 	//从请求uri中获取所有的参数
@@ -111,6 +229,8 @@ public class SocketClient implements Client {
 		private int connectTimeout = 5000;
 		//读取数据的超时时间，默认超时时间为5秒
 		private int readTimeout = 5000;
+		//Socket的连接池，没有指定时使用默认配置的共用连接池
+		private SocketConnectionPool connectionPool;
 		
 		//创建SocketClient Builder的实例
 		public static SocketClient.Builder create(){
@@ -119,7 +239,10 @@ public class SocketClient implements Client {
 		
 		//创建SocketClient的实例
 		public SocketClient build() {
-			return new SocketClient(this.ip,this.port,this.connectTimeout,this.readTimeout);
+			if (this.connectionPool == null) {
+				this.connectionPool = SocketClientFactory.getDefaultConnectionPool();
+			}
+			return new SocketClient(this.ip,this.port,this.connectTimeout,this.readTimeout,this.connectionPool);
 		}
 		
 		public int getConnectTimeout() {
@@ -151,6 +274,13 @@ public class SocketClient implements Client {
 			this.port = port;
 			return this;
 		}
+		public SocketConnectionPool getConnectionPool() {
+			return connectionPool;
+		}
+		public SocketClient.Builder ConnectionPool(SocketConnectionPool connectionPool) {
+			this.connectionPool = connectionPool;
+			return this;
+		}
 		
 		
 	}
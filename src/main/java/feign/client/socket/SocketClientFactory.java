@@ -1,5 +1,8 @@
 package feign.client.socket;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.springframework.cloud.netflix.ribbon.SpringClientFactory;
 
 import feign.Client;
@@ -9,13 +12,40 @@ import feign.properties.FeignSocketClientProperties;
 
 public class SocketClientFactory {
 	
+	//所有的SocketClient共用同一个配置对应的连接池
+	private static final Map<FeignSocketClientProperties, SocketConnectionPool> CONNECTION_POOLS = new ConcurrentHashMap<FeignSocketClientProperties, SocketConnectionPool>();
+
+	//没有指定连接池的SocketClient共用的默认配置
+	private static final FeignSocketClientProperties DEFAULT_PROPERTIES = new FeignSocketClientProperties();
+	
 	//创建实际请求的Client对象
 	static SocketClient createDelegate(FeignSocketClientProperties properties) {
 		return SocketClient.Builder.create()
 					.ConnectTimeout(properties.getConnectionTimeout())
 					.ReadTimeout(properties.getReadTimeout())
+					.ConnectionPool(getConnectionPool(properties))
 					.build();
 	}
+	
+	//获取配置对应的连接池，如果不存在则创建
+	static SocketConnectionPool getConnectionPool(FeignSocketClientProperties properties) {
+		return CONNECTION_POOLS.computeIfAbsent(properties, SocketConnectionPool::new);
+	}
+
+	//获取默认配置的连接池
+	static SocketConnectionPool getDefaultConnectionPool() {
+		return getConnectionPool(DEFAULT_PROPERTIES);
+	}
+
+	//关闭所有的连接池以及I/O线程，在应用上下文关闭时调用
+	public static void closeConnectionPools() {
+		for (FeignSocketClientProperties properties : CONNECTION_POOLS.keySet()) {
+			SocketConnectionPool connectionPool = CONNECTION_POOLS.remove(properties);
+			if (connectionPool != null) {
+				connectionPool.close();
+			}
+		}
+	}
 
 	public static Client createClient(CachingSpringLoadBalancerFactoryExt cachingFactory,
 			  SpringClientFactory clientFactory, FeignSocketClientProperties properties) {
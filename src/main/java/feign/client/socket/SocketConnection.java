@@ -0,0 +1,322 @@
+package feign.client.socket;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import feign.packet.RpcHandshake;
+import feign.packet.RpcPacket;
+import feign.packet.RpcPacketCodec;
+import feign.packet.RpcSession;
+import feign.serializer.SerializerFactory;
+import feign.transport.EventLoop;
+import feign.transport.NioChannel;
+
+//连接池中的一条持久化Socket连接，连接上可以同时进行多个请求（多路复用）
+//1、每个请求包都带有唯一的requestId，编码成帧后放入连接的发送队列，由I/O线程写出，并登记到inFlight表中
+//2、I/O线程读取到响应帧后，根据响应包中的requestId完成对应的Future，响应包可以乱序返回
+//3、请求读取超时或者被调用方取消时，发送FLAG_CANCEL的帧，服务端不再执行或者写回该请求
+//连接上的读写都在EventLoop的I/O线程中完成，调用方线程只在等待Future时阻塞
+public class SocketConnection implements NioChannel.FrameHandler {
+	private static final Logger LOGGER = LoggerFactory.getLogger(SocketConnection.class);
+
+	//请求ID的生成器，所有连接共用，保证同一进程内请求ID唯一
+	private static final AtomicLong REQUEST_ID_GENERATOR = new AtomicLong();
+
+	//异步请求的读取超时定时器，所有连接共用
+	private static final ScheduledExecutorService TIMEOUT_TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "SocketConnection-Timeout");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final SocketRoute route;
+
+	private final NioChannel channel;
+
+	//正在等待响应的请求，key是requestId
+	private final Map<Long, CompletableFuture<RpcPacket>> inFlight = new ConcurrentHashMap<Long, CompletableFuture<RpcPacket>>();
+
+	//连接的创建时间
+	private final long createdTime;
+
+	//连接的过期时间，小于等于0表示永不过期
+	private final long expiryTime;
+
+	//连接最后一次被归还到连接池的时间
+	private volatile long lastUsedTime;
+
+	//连接是否被使用过，用于判断连接失败时，是否可能是因为对端已经关闭了空闲连接
+	private volatile boolean reused = false;
+
+	private volatile boolean closed = false;
+
+	//当前借出的次数，即连接上正在进行的请求数，由SocketConnectionPool在路由锁内维护
+	int leased = 0;
+
+	//握手时从服务端获取的方法签名与方法ID的对应关系
+	private volatile Map<String, Integer> methodIds = Collections.emptyMap();
+
+	//握手时与服务端协商的帧编码参数
+	private volatile RpcSession session = RpcSession.NONE;
+
+	//路由上请求的延迟统计
+	private final SocketRouteStats stats;
+
+	private SocketConnection(SocketRoute route, SocketChannel socketChannel, EventLoop eventLoop, long timeToLiveMillis) throws IOException {
+		this.route = route;
+		this.createdTime = System.currentTimeMillis();
+		this.expiryTime = timeToLiveMillis > 0 ? this.createdTime + timeToLiveMillis : 0;
+		this.lastUsedTime = this.createdTime;
+		this.stats = SocketRouteStats.acquire(route);
+		try {
+			this.channel = new NioChannel(socketChannel, eventLoop, this, RpcPacketCodec.DEFAULT_MAX_FRAME_LENGTH);
+		} catch (IOException e) {
+			SocketRouteStats.release(route);
+			throw e;
+		}
+	}
+
+	//创建到指定路由的Socket连接，并注册到指定的EventLoop上
+	//建立连接的过程仍然是阻塞的，以便使用connectTimeout，连接建立之后切换为非阻塞模式，并与服务端握手
+	static SocketConnection open(SocketRoute route, int connectTimeout, long timeToLiveMillis, EventLoop eventLoop) throws IOException {
+		SocketChannel socketChannel = SocketChannel.open();
+		SocketConnection connection = null;
+		try {
+			socketChannel.socket().setTcpNoDelay(true);
+			socketChannel.socket().setKeepAlive(true);
+			socketChannel.socket().connect(route.toAddress(), connectTimeout);
+			connection = new SocketConnection(route, socketChannel, eventLoop, timeToLiveMillis);
+			connection.handshake(connectTimeout);
+			return connection;
+		} catch (IOException e) {
+			if (connection != null) {
+				connection.close();
+			}
+			socketChannel.close();
+			throw e;
+		}
+	}
+
+	//握手：协商协议版本、序列化器、压缩算法，并获取服务端的方法签名与方法ID的对应关系以及头信息字典
+	//协议版本不一致时直接失败，不会在该连接上发送任何请求
+	private void handshake(int timeout) throws IOException {
+		RpcHandshake request = RpcHandshake.request(SerializerFactory.getSerializerNames(),
+				Arrays.asList(RpcPacketCodec.COMPRESSION_DEFLATE));
+		RpcPacket handshakePacket = new RpcPacket("", null, request.encode());
+		handshakePacket.setFlags(RpcPacketCodec.FLAG_HANDSHAKE);
+		RpcPacket responsePacket = exchange(handshakePacket, timeout);
+		if (!responsePacket.hasFlag(RpcPacketCodec.FLAG_HANDSHAKE)) {
+			throw new IOException("Handshake with " + this.route + " failed, unexpected response");
+		}
+		RpcHandshake response = RpcHandshake.decode(responsePacket.getPayload());
+		if (response.getVersion() != RpcHandshake.PROTOCOL_VERSION) {
+			throw new IOException("Handshake with " + this.route + " failed, server uses rpc protocol version "
+					+ response.getVersion() + ", but the client uses " + RpcHandshake.PROTOCOL_VERSION);
+		}
+		this.methodIds = response.getMethodIds();
+		this.session = response.toSession();
+	}
+
+	//发送请求包，返回对应requestId的响应包的Future，不阻塞调用方线程
+	public CompletableFuture<RpcPacket> send(RpcPacket requestPacket) {
+		long requestId = REQUEST_ID_GENERATOR.incrementAndGet();
+		requestPacket.setRequestId(requestId);
+		//方法ID只在当前连接上有效，同一个请求包重试时可能发送到其他连接
+		requestPacket.setMethodId(getMethodId(requestPacket.getInvokeMethod()));
+		CompletableFuture<RpcPacket> future = new CompletableFuture<RpcPacket>();
+		this.inFlight.put(requestId, future);
+		this.stats.requestStarted();
+		long start = System.nanoTime();
+		//Future完成（包括调用方取消）之后，从inFlight表中移除，并记录请求的延迟
+		//已经发出的请求超时或者被取消时，通知服务端放弃该请求
+		future.whenComplete((response, e) -> {
+			this.inFlight.remove(requestId);
+			this.stats.requestCompleted(System.nanoTime() - start);
+			if (e instanceof SocketTimeoutException || e instanceof CancellationException) {
+				this.cancel(requestId);
+			}
+		});
+		//只有请求帧没有写入发送队列时，才以RequestNotSentException失败，调用方可以安全地换一条连接重新发送
+		String serializer = SerializerFactory.getSerializerName(requestPacket.getHeaders());
+		if (!this.session.supportsSerializer(serializer)) {
+			future.completeExceptionally(new IOException("Serializer " + serializer + " is not supported by " + this.route));
+			return future;
+		}
+		ByteBuffer frame;
+		try {
+			frame = RpcPacketCodec.encode(requestPacket, this.session);
+		} catch (IOException e) {
+			future.completeExceptionally(e);
+			return future;
+		}
+		try {
+			if (this.closed) {
+				throw new RequestNotSentException("Connection " + this + " has been closed");
+			}
+			this.channel.write(frame);
+		} catch (IOException e) {
+			future.completeExceptionally(e instanceof RequestNotSentException ? e : new RequestNotSentException(e));
+		}
+		return future;
+	}
+
+	//发送请求包，如果在readTimeout内没有收到响应包，那么Future以SocketTimeoutException失败
+	public CompletableFuture<RpcPacket> send(RpcPacket requestPacket, int readTimeout) {
+		CompletableFuture<RpcPacket> future = send(requestPacket);
+		if (!future.isDone()) {
+			ScheduledFuture<?> timeout = TIMEOUT_TIMER.schedule(() -> future.completeExceptionally(
+					new SocketTimeoutException("Read timed out after " + readTimeout + "ms, route: " + this.route)),
+					readTimeout, TimeUnit.MILLISECONDS);
+			future.whenComplete((response, e) -> timeout.cancel(false));
+		}
+		return future;
+	}
+
+	//发送请求包，并等待对应requestId的响应包
+	//等待超时只会放弃当前请求，不影响连接上的其他请求
+	//调用方线程被中断（例如：Hystrix超时）时取消请求，并抛出InterruptedIOException，调用方不应该再重发该请求
+	public RpcPacket exchange(RpcPacket requestPacket, int readTimeout) throws IOException {
+		CompletableFuture<RpcPacket> future = send(requestPacket);
+		try {
+			return future.get(readTimeout, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			future.cancel(false);
+			throw new SocketTimeoutException("Read timed out after " + readTimeout + "ms, route: " + this.route);
+		} catch (InterruptedException e) {
+			future.cancel(false);
+			Thread.currentThread().interrupt();
+			InterruptedIOException interrupted = new InterruptedIOException("Interrupted while waiting for response, route: " + this.route);
+			interrupted.initCause(e);
+			throw interrupted;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+		}
+	}
+
+	//发送FLAG_CANCEL的帧，连接已经关闭时不再发送
+	private void cancel(long requestId) {
+		if (this.closed) {
+			return;
+		}
+		RpcPacket cancelPacket = new RpcPacket("", null, null);
+		cancelPacket.setRequestId(requestId);
+		cancelPacket.setFlags(RpcPacketCodec.FLAG_CANCEL);
+		try {
+			this.channel.write(RpcPacketCodec.encode(cancelPacket, this.session));
+		} catch (IOException e) {
+			LOGGER.debug("Send cancel frame to " + this.route + " failed! " + e.getMessage());
+		}
+	}
+
+	//在I/O线程中调用，解码响应帧并唤醒对应的调用方
+	@Override
+	public void frameReceived(NioChannel channel, ByteBuffer frame) {
+		RpcPacket responsePacket;
+		try {
+			responsePacket = RpcPacketCodec.decode(frame, this.session);
+		} catch (IOException e) {
+			LOGGER.error("Decode response packet from " + this.route + " failed! " + e.getMessage());
+			channel.close();
+			return;
+		}
+		CompletableFuture<RpcPacket> future = this.inFlight.get(responsePacket.getRequestId());
+		//调用方已经超时放弃的请求，直接丢弃响应包
+		if (future == null) {
+			return;
+		}
+		//服务端过载拒绝执行的请求，以ServerBusyException结束，连接可以继续使用
+		if (responsePacket.hasFlag(RpcPacketCodec.FLAG_BUSY)) {
+			future.completeExceptionally(new ServerBusyException("Server " + this.route + " is busy, request rejected"));
+			return;
+		}
+		future.complete(responsePacket);
+	}
+
+	//连接关闭时，所有正在等待响应的请求都以失败结束
+	@Override
+	public void channelClosed(NioChannel channel, Throwable cause) {
+		if (cause != null && !this.closed) {
+			LOGGER.debug("Connection " + this + " closed: " + cause.getMessage());
+		}
+		this.closed = true;
+		SocketRouteStats.release(this.route);
+		IOException failure = cause instanceof IOException ? (IOException) cause
+				: new IOException("Connection " + this + " has been closed", cause);
+		for (CompletableFuture<RpcPacket> future : this.inFlight.values()) {
+			future.completeExceptionally(failure);
+		}
+	}
+
+	public SocketRoute getRoute() {
+		return route;
+	}
+
+	public long getCreatedTime() {
+		return createdTime;
+	}
+
+	public long getLastUsedTime() {
+		return lastUsedTime;
+	}
+
+	//服务端的方法ID，不存在时返回0
+	public int getMethodId(String signature) {
+		Integer methodId = this.methodIds.get(signature);
+		return methodId != null ? methodId : 0;
+	}
+
+	//连接上正在等待响应的请求数
+	public int getInFlightCount() {
+		return this.inFlight.size();
+	}
+
+	boolean isReused() {
+		return reused;
+	}
+
+	//标记连接上的一次请求已经完成
+	void markIdle(long now) {
+		this.lastUsedTime = now;
+		this.reused = true;
+	}
+
+	//判断连接是否超过了存活时间
+	boolean isExpired(long now) {
+		return this.expiryTime > 0 && now >= this.expiryTime;
+	}
+
+	public boolean isOpen() {
+		return !this.closed && this.channel.isOpen();
+	}
+
+	public void close() {
+		this.closed = true;
+		this.channel.close();
+	}
+
+	@Override
+	public String toString() {
+		return "SocketConnection{route=" + this.route + ", channel=" + this.channel + "}";
+	}
+
+}
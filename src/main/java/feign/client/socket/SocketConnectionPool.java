@@ -0,0 +1,395 @@
+package feign.client.socket;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import feign.properties.FeignSocketClientProperties;
+import feign.transport.EventLoopGroup;
+
+//按路由（host:port）划分的Socket连接池
+//1、每个路由的连接数不超过maxConnectionsPerRoute，整个连接池的连接数不超过maxConnections
+//2、每条连接上同时进行的请求数不超过maxRequestsPerConnection，大于1时为多路复用模式，多个请求共享同一条连接
+//3、连接在创建之后超过timeToLive的时间，就不再被借出，并在请求全部完成后关闭
+//4、后台定时清理过期的空闲连接，并为每个已使用过的路由保持minIdlePerRoute条预热的空闲连接
+//5、连接上的读写由ioThreads个I/O线程（EventLoop）负责，新建的连接按照轮询的方式分配到各个I/O线程上
+public class SocketConnectionPool {
+	private static final Logger LOGGER = LoggerFactory.getLogger(SocketConnectionPool.class);
+
+	//所有连接池共用的后台清理线程
+	private static final ScheduledExecutorService EVICTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "SocketConnectionPool-Evictor");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final Map<SocketRoute, RoutePool> routePools = new ConcurrentHashMap<SocketRoute, RoutePool>();
+
+	//整个连接池中已经打开的连接数
+	private final AtomicInteger totalConnections = new AtomicInteger();
+
+	private final int maxConnections;
+
+	private final int maxConnectionsPerRoute;
+
+	private final int maxRequestsPerConnection;
+
+	private final int minIdlePerRoute;
+
+	private final long timeToLiveMillis;
+
+	//后台创建预热连接时使用的连接超时时间
+	private final int connectTimeout;
+
+	private final ScheduledFuture<?> evictorTask;
+
+	//负责连接读写的I/O线程
+	private final EventLoopGroup eventLoopGroup;
+
+	private volatile boolean closed = false;
+
+	public SocketConnectionPool(FeignSocketClientProperties properties) {
+		this.maxConnections = properties.getMaxConnections();
+		this.maxConnectionsPerRoute = properties.getMaxConnectionsPerRoute();
+		this.maxRequestsPerConnection = Math.max(1, properties.getMaxRequestsPerConnection());
+		this.minIdlePerRoute = Math.min(properties.getMinIdlePerRoute(), properties.getMaxConnectionsPerRoute());
+		this.timeToLiveMillis = properties.getTimeToLiveUnit().toMillis(properties.getTimeToLive());
+		this.connectTimeout = properties.getConnectionTimeout();
+		try {
+			this.eventLoopGroup = new EventLoopGroup("SocketClient-IO", properties.getIoThreads());
+		} catch (IOException e) {
+			throw new IllegalStateException("Can not create I/O threads for socket connection pool! " + e.getMessage(), e);
+		}
+		long period = properties.getConnectionTimerRepeat();
+		this.evictorTask = EVICTOR.scheduleWithFixedDelay(this::maintain, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	//从连接池中借出一条到指定路由的连接，优先选择正在进行的请求数最少的连接
+	//如果所有连接上的请求数都达到上限，那么创建新的连接，当连接数也达到上限时，最多等待connectTimeout的时间
+	public SocketConnection borrow(SocketRoute route, int connectTimeout) throws IOException {
+		if (this.closed) {
+			throw new IOException("Socket connection pool has been closed");
+		}
+		RoutePool routePool = routePool(route);
+		long deadline = System.currentTimeMillis() + connectTimeout;
+		routePool.lock.lock();
+		try {
+			for (;;) {
+				SocketConnection connection = routePool.lease(System.currentTimeMillis());
+				if (connection != null) {
+					return connection;
+				}
+				//正在创建的连接还有足够的容量时，等待连接创建完成，避免并发请求同时创建大量连接
+				boolean pendingAvailable = routePool.pendingConnections * this.maxRequestsPerConnection > routePool.waiting;
+				if (!pendingAvailable && routePool.openConnections < this.maxConnectionsPerRoute && reserveConnection(route)) {
+					routePool.openConnections++;
+					routePool.pendingConnections++;
+					break;
+				}
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					throw new SocketTimeoutException("Timeout waiting for connection from pool, route: " + route);
+				}
+				routePool.waiting++;
+				try {
+					routePool.available.await(remaining, TimeUnit.MILLISECONDS);
+				} finally {
+					routePool.waiting--;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for connection from pool, route: " + route, e);
+		} finally {
+			routePool.lock.unlock();
+		}
+		//在锁之外创建连接，避免阻塞同一路由上的其他调用
+		SocketConnection connection;
+		try {
+			connection = SocketConnection.open(route, connectTimeout, this.timeToLiveMillis, this.eventLoopGroup.next());
+		} catch (IOException e) {
+			routePool.connectionFailed(true);
+			throw e;
+		}
+		routePool.add(connection, 1, true);
+		return connection;
+	}
+
+	//将借出的连接归还到连接池，reusable为false表示连接已经不可用，直接关闭连接
+	public void release(SocketConnection connection, boolean reusable) {
+		RoutePool routePool = routePool(connection.getRoute());
+		long now = System.currentTimeMillis();
+		boolean close = false;
+		routePool.lock.lock();
+		try {
+			connection.leased--;
+			if (!reusable || this.closed || !connection.isOpen()
+					|| (connection.leased == 0 && connection.isExpired(now))) {
+				close = routePool.remove(connection);
+			} else {
+				connection.markIdle(now);
+			}
+			routePool.available.signalAll();
+		} finally {
+			routePool.lock.unlock();
+		}
+		if (close) {
+			connection.close();
+		}
+	}
+
+	//关闭连接池中所有的空闲连接，停止后台清理任务以及I/O线程
+	//I/O线程停止时关闭其上所有的连接，还在等待响应的请求以IOException结束
+	public synchronized void close() {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		this.evictorTask.cancel(false);
+		for (RoutePool routePool : this.routePools.values()) {
+			routePool.closeIdle(Long.MAX_VALUE);
+		}
+		this.eventLoopGroup.shutdown();
+	}
+
+	//连接池中打开的连接总数
+	public int getTotalConnections() {
+		return this.totalConnections.get();
+	}
+
+	private RoutePool routePool(SocketRoute route) {
+		RoutePool routePool = this.routePools.get(route);
+		if (routePool == null) {
+			routePool = this.routePools.computeIfAbsent(route, RoutePool::new);
+		}
+		return routePool;
+	}
+
+	//在连接池的总连接数中占用一个名额，如果已达到上限，那么尝试关闭其他路由上的一条空闲连接
+	private boolean reserveConnection(SocketRoute route) {
+		for (;;) {
+			int current = this.totalConnections.get();
+			if (current < this.maxConnections) {
+				if (this.totalConnections.compareAndSet(current, current + 1)) {
+					return true;
+				}
+				continue;
+			}
+			if (!evictIdleFromOtherRoute(route)) {
+				return false;
+			}
+		}
+	}
+
+	private boolean evictIdleFromOtherRoute(SocketRoute route) {
+		for (RoutePool routePool : this.routePools.values()) {
+			if (!routePool.route.equals(route) && routePool.closeOldestIdle()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	//后台任务：清理过期的空闲连接，并补充预热连接
+	private void maintain() {
+		long now = System.currentTimeMillis();
+		for (RoutePool routePool : this.routePools.values()) {
+			try {
+				routePool.closeIdle(now);
+				routePool.fillIdle();
+			} catch (Exception e) {
+				LOGGER.warn("Maintain socket connections of route " + routePool.route + " failed! " + e.getMessage());
+			}
+		}
+	}
+
+	//单个路由上的连接
+	private class RoutePool {
+
+		private final SocketRoute route;
+
+		private final ReentrantLock lock = new ReentrantLock();
+
+		private final Condition available = lock.newCondition();
+
+		//当前路由上所有已经建立的连接
+		private final List<SocketConnection> connections = new ArrayList<SocketConnection>();
+
+		//当前路由上已经打开以及正在打开的连接数
+		private int openConnections = 0;
+
+		//调用方正在创建的连接数
+		private int pendingConnections = 0;
+
+		//正在等待可用连接的调用方数量
+		private int waiting = 0;
+
+		RoutePool(SocketRoute route) {
+			this.route = route;
+		}
+
+		//从已建立的连接中，选择正在进行的请求数最少且未达到上限的连接，调用方必须持有lock
+		SocketConnection lease(long now) {
+			SocketConnection selected = null;
+			Iterator<SocketConnection> iterator = this.connections.iterator();
+			while (iterator.hasNext()) {
+				SocketConnection connection = iterator.next();
+				boolean expired = connection.isExpired(now);
+				if (!connection.isOpen() || (expired && connection.leased == 0)) {
+					iterator.remove();
+					discard(connection);
+					continue;
+				}
+				if (expired || connection.leased >= maxRequestsPerConnection) {
+					continue;
+				}
+				if (selected == null || connection.leased < selected.leased) {
+					selected = connection;
+				}
+			}
+			if (selected != null) {
+				selected.leased++;
+			}
+			return selected;
+		}
+
+		void add(SocketConnection connection, int leased, boolean pending) {
+			this.lock.lock();
+			try {
+				if (pending) {
+					this.pendingConnections--;
+				}
+				connection.leased = leased;
+				this.connections.add(connection);
+				this.available.signalAll();
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		//从路由中移除连接，调用方必须持有lock
+		boolean remove(SocketConnection connection) {
+			if (this.connections.remove(connection)) {
+				this.openConnections--;
+				totalConnections.decrementAndGet();
+				return true;
+			}
+			return false;
+		}
+
+		//关闭已经从connections中移除的连接，调用方必须持有lock
+		private void discard(SocketConnection connection) {
+			connection.close();
+			this.openConnections--;
+			totalConnections.decrementAndGet();
+		}
+
+		//连接创建失败时，释放占用的连接数
+		void connectionFailed(boolean pending) {
+			totalConnections.decrementAndGet();
+			this.lock.lock();
+			try {
+				if (pending) {
+					this.pendingConnections--;
+				}
+				this.openConnections--;
+				this.available.signalAll();
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		//关闭在now时刻已经过期的空闲连接，now为Long.MAX_VALUE时关闭所有空闲连接
+		void closeIdle(long now) {
+			this.lock.lock();
+			try {
+				Iterator<SocketConnection> iterator = this.connections.iterator();
+				while (iterator.hasNext()) {
+					SocketConnection connection = iterator.next();
+					if (!connection.isOpen()
+							|| (connection.leased == 0 && (now == Long.MAX_VALUE || connection.isExpired(now)))) {
+						iterator.remove();
+						discard(connection);
+					}
+				}
+				this.available.signalAll();
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		//关闭最久未使用的一条空闲连接，使用tryLock，避免与持有其他路由锁的线程互相等待
+		boolean closeOldestIdle() {
+			if (!this.lock.tryLock()) {
+				return false;
+			}
+			try {
+				SocketConnection oldest = null;
+				for (SocketConnection connection : this.connections) {
+					if (connection.leased == 0
+							&& (oldest == null || connection.getLastUsedTime() < oldest.getLastUsedTime())) {
+						oldest = connection;
+					}
+				}
+				if (oldest == null) {
+					return false;
+				}
+				this.connections.remove(oldest);
+				discard(oldest);
+				this.available.signalAll();
+				return true;
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		private int idleConnections() {
+			int idle = 0;
+			for (SocketConnection connection : this.connections) {
+				if (connection.leased == 0) {
+					idle++;
+				}
+			}
+			return idle;
+		}
+
+		//为当前路由补充预热的空闲连接
+		void fillIdle() throws IOException {
+			while (!closed) {
+				this.lock.lock();
+				try {
+					if (idleConnections() >= minIdlePerRoute || this.openConnections >= maxConnectionsPerRoute
+							|| !reserveConnection(this.route)) {
+						return;
+					}
+					this.openConnections++;
+				} finally {
+					this.lock.unlock();
+				}
+				SocketConnection connection;
+				try {
+					connection = SocketConnection.open(this.route, connectTimeout, timeToLiveMillis, eventLoopGroup.next());
+				} catch (IOException e) {
+					connectionFailed(false);
+					throw e;
+				}
+				add(connection, 0, false);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,72 @@
+package feign.client.socket;
+
+import java.net.InetSocketAddress;
+
+//Socket连接的路由信息，即负载均衡后选中的目标Server的host:port
+//作为连接池中按路由划分连接的key
+public final class SocketRoute {
+
+	private final String host;
+
+	private final int port;
+
+	private final String name;
+
+	public SocketRoute(String host, int port) {
+		this.host = host;
+		this.port = port;
+		this.name = host + ":" + port;
+	}
+
+	//从负载均衡之后的URL中获取host:port，例如：socket://192.168.1.1:12345/path?interface=...
+	//只查找分隔符，不需要创建URI对象
+	public static SocketRoute fromUrl(String url) {
+		int start = url.indexOf("://");
+		start = start < 0 ? 0 : start + 3;
+		int end = start;
+		while (end < url.length() && "/?#".indexOf(url.charAt(end)) < 0) {
+			end++;
+		}
+		int userInfo = url.lastIndexOf('@', end - 1);
+		if (userInfo >= start) {
+			start = userInfo + 1;
+		}
+		int colon = url.lastIndexOf(':', end - 1);
+		if (colon < start || url.lastIndexOf(']', end - 1) > colon) {
+			throw new IllegalArgumentException("No port in url: " + url);
+		}
+		return new SocketRoute(url.substring(start, colon), Integer.parseInt(url.substring(colon + 1, end)));
+	}
+
+	public String getHost() {
+		return host;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	//创建Socket连接的endpoint
+	public InetSocketAddress toAddress() {
+		return new InetSocketAddress(this.host, this.port);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		SocketRoute that = (SocketRoute) o;
+		return this.port == that.port && this.host.equals(that.host);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * this.host.hashCode() + this.port;
+	}
+
+	@Override
+	public String toString() {
+		return this.name;
+	}
+
+}
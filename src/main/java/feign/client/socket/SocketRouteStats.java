@@ -0,0 +1,105 @@
+package feign.client.socket;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//路由（host:port）上请求的延迟统计，由SocketConnection在请求发出以及完成时更新，供PeakEwmaRule选择Server
+//1、Peak EWMA：新的延迟大于当前值时直接取新的值，否则按照距离上次更新的时间指数衰减，慢节点会被立即发现，恢复之后逐渐回落
+//2、正在等待响应的请求数：成本 = 延迟 * (正在等待响应的请求数 + 1)
+public final class SocketRouteStats {
+
+	//延迟的衰减时间（纳秒）
+	private static final double DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+	//还没有延迟样本，但是已经有请求在等待响应时的成本，保证新的节点不会一次接收过多的请求
+	private static final double PENALTY = Long.MAX_VALUE >> 16;
+
+	//所有路由的统计，key是host:port
+	//只保留还有连接的路由，路由上的最后一条连接关闭时移除，已经下线的Server的统计不会一直保留
+	private static final Map<SocketRoute, SocketRouteStats> STATS = new ConcurrentHashMap<SocketRoute, SocketRouteStats>();
+
+	private final AtomicInteger pending = new AtomicInteger();
+
+	//路由上打开的连接数，只在STATS.compute中修改
+	private int connections = 0;
+
+	//Peak EWMA延迟（毫秒）
+	private double latency = 0;
+
+	//上次更新延迟的时间
+	private long stamp = System.nanoTime();
+
+	private SocketRouteStats() {
+	}
+
+	//获取路由的统计，路由上没有打开的连接时返回null
+	public static SocketRouteStats get(SocketRoute route) {
+		return STATS.get(route);
+	}
+
+	public static SocketRouteStats get(String host, int port) {
+		return get(new SocketRoute(host, port));
+	}
+
+	//连接建立时获取路由的统计，并增加路由上的连接数
+	static SocketRouteStats acquire(SocketRoute route) {
+		return STATS.compute(route, (key, stats) -> {
+			if (stats == null) {
+				stats = new SocketRouteStats();
+			}
+			stats.connections++;
+			return stats;
+		});
+	}
+
+	//连接关闭时减少路由上的连接数，没有连接时移除路由的统计
+	static void release(SocketRoute route) {
+		STATS.computeIfPresent(route, (key, stats) -> --stats.connections > 0 ? stats : null);
+	}
+
+	//请求发出
+	void requestStarted() {
+		this.pending.incrementAndGet();
+	}
+
+	//请求完成（包括失败和超时），记录从发出到完成的时间
+	void requestCompleted(long elapsedNanos) {
+		this.pending.decrementAndGet();
+		synchronized (this) {
+			observe(elapsedNanos / 1000000.0);
+		}
+	}
+
+	//当前的成本，越小越好
+	public double getCost() {
+		int pending = this.pending.get();
+		double latency;
+		synchronized (this) {
+			//没有新的样本时，延迟随时间衰减，空闲的节点会重新被选中
+			observe(0);
+			latency = this.latency;
+		}
+		if (latency == 0 && pending > 0) {
+			return PENALTY + pending;
+		}
+		return latency * (pending + 1);
+	}
+
+	public int getPending() {
+		return this.pending.get();
+	}
+
+	public synchronized double getLatency() {
+		return this.latency;
+	}
+
+	private void observe(double rtt) {
+		long now = System.nanoTime();
+		double weight = Math.exp(-Math.max(now - this.stamp, 0) / DECAY_NANOS);
+		this.latency = rtt > this.latency ? rtt : this.latency * weight + rtt * (1 - weight);
+		this.stamp = now;
+	}
+
+}
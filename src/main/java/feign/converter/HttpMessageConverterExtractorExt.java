@@ -16,6 +16,8 @@ import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import feign.serializer.SerializerFactory;
+
 /**
  * Response extractor that uses the given {@linkplain HttpMessageConverter entity converters}
  * to convert the response into a type {@code T}.
@@ -76,7 +78,9 @@ public class HttpMessageConverterExtractorExt<T> implements ResponseExtractor<T>
 		if (response.getHeaders().containsKey("X-RPC-CALL")){
 			RpcMessageConverter rpcMessageConvert =  new RpcMessageConverter();
 			if (rpcMessageConvert.canRead(this.responseClass, response.getHeaders().get("X-RPC-CALL").get(0))) {
-				return (T) rpcMessageConvert.read((Class) this.responseClass, responseWrapper);
+				//包体按照响应包中X-RPC-SERIALIZER头信息指定的序列化器解析
+				return (T) rpcMessageConvert.read(this.responseType,
+						response.getHeaders().getFirst(SerializerFactory.SERIALIZER_HEADER), responseWrapper);
 			}
 			throw new RestClientException("Could not extract response: no suitable HttpMessageConverter found " +
 					"for response type [" + this.responseType + "] and content type [" + contentType + "]");
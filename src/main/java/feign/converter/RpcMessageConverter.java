@@ -2,12 +2,17 @@ package feign.converter;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Type;
+
 import org.springframework.http.HttpInputMessage;
 import org.springframework.http.HttpOutputMessage;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.util.StreamUtils;
 
+import feign.serializer.Serializer;
+import feign.serializer.SerializerFactory;
 import feign.util.BytesConversionUtils;
 import feign.util.ProtocolUtils;
 
@@ -48,6 +53,21 @@ public class RpcMessageConverter<T>{
 		return readInternal(clazz, inputMessage);
 	}
 
+	//使用响应包中X-RPC-SERIALIZER头信息指定的序列化器，将包体反序列化成方法的返回类型
+	public final T read(Type type, String serializerName, HttpInputMessage inputMessage) throws IOException {
+		byte[] bytes = StreamUtils.copyToByteArray(inputMessage.getBody());
+		Serializer serializer;
+		try {
+			serializer = SerializerFactory.getSerializer(serializerName);
+		} catch (IllegalArgumentException e) {
+			throw new HttpMessageNotReadableException(e.getMessage(), e);
+		}
+		//返回类型由调用方按照方法的返回类型指定
+		@SuppressWarnings("unchecked")
+		T result = (T) serializer.deserialize(bytes, type);
+		return result;
+	}
+
 	protected T readInternal(Class<? extends Object> clazz, HttpInputMessage inputMessage)
 			throws IOException, HttpMessageNotReadableException {
 		InputStream input = inputMessage.getBody();
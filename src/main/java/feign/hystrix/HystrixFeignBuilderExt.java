@@ -127,6 +127,8 @@ public class HystrixFeignBuilderExt extends FeignBuilderExt {
 	
 	/** Configures components needed for hystrix integration. */
 	Feign build(final FallbackFactory<?> nullableFallbackFactory) {
+	  //调用方线程上的RpcDeadline随Hystrix的命令传递到Hystrix的线程上
+	  RpcDeadlineConcurrencyStrategy.register();
 	  super.invocationHandlerFactory(new InvocationHandlerFactory() {
 	    @Override public InvocationHandler create(Target target,
 	        Map<Method, MethodHandler> dispatch) {
@@ -0,0 +1,95 @@
+package feign.hystrix;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.hystrix.HystrixThreadPoolKey;
+import com.netflix.hystrix.strategy.HystrixPlugins;
+import com.netflix.hystrix.strategy.concurrency.HystrixConcurrencyStrategy;
+import com.netflix.hystrix.strategy.concurrency.HystrixRequestVariable;
+import com.netflix.hystrix.strategy.concurrency.HystrixRequestVariableLifecycle;
+import com.netflix.hystrix.strategy.eventnotifier.HystrixEventNotifier;
+import com.netflix.hystrix.strategy.executionhook.HystrixCommandExecutionHook;
+import com.netflix.hystrix.strategy.metrics.HystrixMetricsPublisher;
+import com.netflix.hystrix.strategy.properties.HystrixPropertiesStrategy;
+import com.netflix.hystrix.strategy.properties.HystrixProperty;
+
+import feign.packet.RpcDeadline;
+
+//Hystrix在自己的线程池中执行命令，调用方线程上的RpcDeadline（例如：SocketServer正在处理的请求的截止时间）不会随之传递
+//Hystrix在执行命令（execute、queue，或者订阅返回的Observable、Single）时通过wrapCallable包装任务，
+//这里记录执行时调用方线程上的截止时间，并在Hystrix的线程上绑定，嵌套调用只使用剩余的时间
+//返回HystrixCommand、Observable、Single的方法在调用方执行或者订阅时才记录截止时间
+//Hystrix只允许注册一个ConcurrencyStrategy，已经注册的其他实现作为delegate，线程池以及请求变量仍然由它创建
+public class RpcDeadlineConcurrencyStrategy extends HystrixConcurrencyStrategy {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RpcDeadlineConcurrencyStrategy.class);
+
+	private final HystrixConcurrencyStrategy delegate;
+
+	RpcDeadlineConcurrencyStrategy(HystrixConcurrencyStrategy delegate) {
+		this.delegate = delegate;
+	}
+
+	//注册到HystrixPlugins，已经注册时直接返回
+	//HystrixPlugins的各个插件只能注册一次，替换ConcurrencyStrategy时先reset，再重新注册其他已有的插件
+	public static synchronized void register() {
+		HystrixPlugins plugins = HystrixPlugins.getInstance();
+		HystrixConcurrencyStrategy existing = plugins.getConcurrencyStrategy();
+		if (existing instanceof RpcDeadlineConcurrencyStrategy) {
+			return;
+		}
+		HystrixEventNotifier eventNotifier = plugins.getEventNotifier();
+		HystrixMetricsPublisher metricsPublisher = plugins.getMetricsPublisher();
+		HystrixPropertiesStrategy propertiesStrategy = plugins.getPropertiesStrategy();
+		HystrixCommandExecutionHook commandExecutionHook = plugins.getCommandExecutionHook();
+		HystrixPlugins.reset();
+		plugins = HystrixPlugins.getInstance();
+		plugins.registerConcurrencyStrategy(new RpcDeadlineConcurrencyStrategy(existing));
+		plugins.registerEventNotifier(eventNotifier);
+		plugins.registerMetricsPublisher(metricsPublisher);
+		plugins.registerPropertiesStrategy(propertiesStrategy);
+		plugins.registerCommandExecutionHook(commandExecutionHook);
+		LOGGER.info("Registered RpcDeadlineConcurrencyStrategy, delegate: " + existing.getClass().getName());
+	}
+
+	@Override
+	public <T> Callable<T> wrapCallable(Callable<T> callable) {
+		Callable<T> wrapped = this.delegate.wrapCallable(callable);
+		RpcDeadline deadline = RpcDeadline.current();
+		if (deadline == null) {
+			return wrapped;
+		}
+		return () -> {
+			RpcDeadline previous = RpcDeadline.attach(deadline);
+			try {
+				return wrapped.call();
+			} finally {
+				RpcDeadline.restore(previous);
+			}
+		};
+	}
+
+	@Override
+	public ThreadPoolExecutor getThreadPool(HystrixThreadPoolKey threadPoolKey, HystrixProperty<Integer> corePoolSize,
+			HystrixProperty<Integer> maximumPoolSize, HystrixProperty<Integer> keepAliveTime, TimeUnit unit,
+			BlockingQueue<Runnable> workQueue) {
+		return this.delegate.getThreadPool(threadPoolKey, corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue);
+	}
+
+	@Override
+	public BlockingQueue<Runnable> getBlockingQueue(int maxQueueSize) {
+		return this.delegate.getBlockingQueue(maxQueueSize);
+	}
+
+	@Override
+	public <T> HystrixRequestVariable<T> getRequestVariable(HystrixRequestVariableLifecycle<T> rv) {
+		return this.delegate.getRequestVariable(rv);
+	}
+
+}
@@ -88,10 +88,9 @@ public class CachingSpringLoadBalancerFactoryExt{
 		IClientConfig config = this.factory.getClientConfig(clientName);
 		ILoadBalancer lb = this.factory.getLoadBalancer(clientName);
 		ServerIntrospector serverIntrospector = this.factory.getInstance(clientName, ServerIntrospector.class);
-		//暂时不支持重试的功能
-		//FeignLoadBalancerExt client = enableRetry ? new RetryableFeignLoadBalancerExt(lb, config, serverIntrospector,
-		//	loadBalancedRetryPolicyFactory, loadBalancedBackOffPolicyFactory, loadBalancedRetryListenerFactory) : new FeignLoadBalancerExt(lb, config, serverIntrospector);
-		FeignLoadBalancerExt client = new FeignLoadBalancerExt(lb, config, serverIntrospector);
+		//开启重试时（classpath中存在spring-retry），使用带重试预算的RetryableFeignLoadBalancerExt
+		FeignLoadBalancerExt client = enableRetry ? new RetryableFeignLoadBalancerExt(lb, config, serverIntrospector,
+			loadBalancedRetryPolicyFactory, loadBalancedBackOffPolicyFactory, loadBalancedRetryListenerFactory) : new FeignLoadBalancerExt(lb, config, serverIntrospector);
 		this.cache.put(clientName, client);
 		return client;
 	}
@@ -8,14 +8,25 @@ import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.springframework.cloud.netflix.ribbon.ServerIntrospector;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpRequest;
+import org.springframework.util.ConcurrentReferenceHashMap;
 
 import com.google.common.base.Strings;
 import com.netflix.client.AbstractLoadBalancerAwareClient;
@@ -26,22 +37,64 @@ import com.netflix.client.RequestSpecificRetryHandler;
 import com.netflix.client.RetryHandler;
 import com.netflix.client.config.CommonClientConfigKey;
 import com.netflix.client.config.IClientConfig;
+import com.netflix.client.config.IClientConfigKey;
 import com.netflix.loadbalancer.ILoadBalancer;
 import com.netflix.loadbalancer.Server;
+import com.netflix.loadbalancer.ServerStats;
 import com.netflix.niws.loadbalancer.DiscoveryEnabledServer;
 
 import feign.Client;
 import feign.Request;
 import feign.Response;
+import feign.client.AsyncClient;
+import feign.client.LoadBalancerFeignClientExt.FeignOptionsClientConfig;
+import feign.client.socket.RequestNotSentException;
+import feign.client.socket.ServerBusyException;
+import feign.client.socket.SocketClient;
 import feign.enumerate.ProtocolType;
+import feign.packet.RpcDeadline;
 import feign.util.ProtocolUtils;
 
 public class FeignLoadBalancerExt extends AbstractLoadBalancerAwareClient<FeignLoadBalancerExt.RibbonRequest, FeignLoadBalancerExt.RibbonResponse> {
 
+	//选择另一个Server（对冲请求、重试）以及选中被剔除的Server时重新选择的次数
+	private static final int MAX_CHOOSE_ATTEMPTS = 3;
+	//是否在没有配置重试时直接执行请求，通过<clientName>.ribbon.DirectExecution配置，默认开启
+	public static final IClientConfigKey<Boolean> DIRECT_EXECUTION = new CommonClientConfigKey<Boolean>("DirectExecution") {};
+	//对冲请求以及重试退避的定时器，所有客户端共用一个守护线程，只负责在到期时把请求交给DISPATCHER
+	//请求先于定时器返回时取消定时任务，并立即从队列中移除
+	protected static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, runnable -> {
+		Thread thread = new Thread(runnable, "FeignLoadBalancer-Timer");
+		thread.setDaemon(true);
+		return thread;
+	});
+	static {
+		TIMER.setRemoveOnCancelPolicy(true);
+	}
+	//发送定时器触发的请求：从连接池借出连接时可能要等待建立连接以及握手，不能阻塞共用的定时器线程
+	//空闲的线程60秒之后回收
+	private static final AtomicInteger DISPATCHER_COUNT = new AtomicInteger();
+	protected static final ExecutorService DISPATCHER = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+			new SynchronousQueue<Runnable>(), runnable -> {
+		Thread thread = new Thread(runnable, "FeignLoadBalancer-Dispatcher-" + DISPATCHER_COUNT.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	});
+
 	protected int connectTimeout;
 	protected int readTimeout;
 	protected IClientConfig clientConfig;
 	protected ServerIntrospector serverIntrospector;
+	//没有配置重试时，是否绕过LoadBalancerCommand直接执行请求
+	protected boolean directExecution = true;
+	//被动的异常节点检测，被剔除的Server暂时不会被选中
+	protected final OutlierDetector outlierDetector;
+	//ServerStats对应的Server，请求完成时由ServerStats找到Server，记录异常节点检测的结果
+	private final Map<ServerStats, Server> statsServers = new ConcurrentReferenceHashMap<ServerStats, Server>();
+	//最近一次使用的Options，超时时间不变时直接复用
+	private volatile Request.Options lastOptions;
+	//Server的端点缓存：各个协议的端口以及重建之后的URI
+	protected final ServerEndpointCache endpoints;
 
 	public FeignLoadBalancerExt(ILoadBalancer lb, IClientConfig clientConfig,
 							 ServerIntrospector serverIntrospector) {
@@ -51,24 +104,230 @@ public class FeignLoadBalancerExt extends AbstractLoadBalancerAwareClient<FeignL
 		this.connectTimeout = clientConfig.get(CommonClientConfigKey.ConnectTimeout);
 		this.readTimeout = clientConfig.get(CommonClientConfigKey.ReadTimeout);
 		this.serverIntrospector = serverIntrospector;
+		this.directExecution = clientConfig.getPropertyAsBoolean(DIRECT_EXECUTION, true);
+		this.outlierDetector = new OutlierDetector(lb, clientConfig);
+		this.endpoints = new ServerEndpointCache(lb);
+	}
+
+	//跳过被剔除的Server：重新选择至多MAX_CHOOSE_ATTEMPTS次，仍然是被剔除的Server时使用最后一次选择的结果
+	//LoadBalancerCommand（重试）、直接执行以及异步执行都通过该方法选择Server
+	@Override
+	public Server getServerFromLoadBalancer(URI original, Object loadBalancerKey) throws ClientException {
+		Server server = super.getServerFromLoadBalancer(original, loadBalancerKey);
+		for (int i = 0; i < MAX_CHOOSE_ATTEMPTS && this.outlierDetector.isEjected(server); i++) {
+			server = super.getServerFromLoadBalancer(original, loadBalancerKey);
+		}
+		ServerStats stats = getServerStats(server);
+		if (stats != null && !this.statsServers.containsKey(stats)) {
+			this.statsServers.put(stats, server);
+		}
+		return server;
+	}
+
+	//请求完成时，同时记录异常节点检测的结果；调用方取消的请求（例如：对冲请求）不计入
+	//请求没有发出或者服务端繁忙拒绝执行（SocketClient的NOT_SENT_STATUS即503，例如：连接池耗尽、服务端过载）不是Server的故障，也不计入
+	@Override
+	public void noteRequestCompletion(ServerStats stats, Object response, Throwable e, long responseTime, RetryHandler errorHandler) {
+		super.noteRequestCompletion(stats, response, e, responseTime, errorHandler);
+		Server server = stats != null ? this.statsServers.get(stats) : null;
+		if (server == null || e instanceof CancellationException
+				|| e instanceof RequestNotSentException || e instanceof ServerBusyException) {
+			return;
+		}
+		int status = response instanceof RibbonResponse ? ((RibbonResponse) response).toResponse().status() : 0;
+		if (status == SocketClient.NOT_SENT_STATUS) {
+			return;
+		}
+		this.outlierDetector.record(server, e != null || status >= 500, responseTime);
 	}
 
 	@Override
 	public RibbonResponse execute(RibbonRequest request, IClientConfig configOverride)
 			throws IOException {
-		Request.Options options;
+		Request.Options options = getOptions(configOverride);
+		Response response = request.client().execute(request.toRequest(), options);
+		return new RibbonResponse(request.getUri(), response);
+	}
+
+	//没有配置重试时，直接选择Server执行请求并记录Server的统计信息
+	//不再为每个请求创建LoadBalancerCommand以及RxJava的Observable；配置了重试时仍然使用父类的实现
+	@Override
+	public RibbonResponse executeWithLoadBalancer(RibbonRequest request, IClientConfig requestConfig) throws ClientException {
+		if (!this.directExecution || isRetryEnabled(requestConfig)) {
+			return super.executeWithLoadBalancer(request, requestConfig);
+		}
+		Server server = getServerFromLoadBalancer(request.getUri(), request.getLoadBalancerKey());
+		return executeOnServer(request, server, requestConfig);
+	}
+
+	//在指定的Server上同步执行请求，并记录Server的统计信息
+	protected RibbonResponse executeOnServer(RibbonRequest request, Server server, IClientConfig requestConfig) throws ClientException {
+		ServerStats stats = getServerStats(server);
+		RibbonRequest requestForServer = (RibbonRequest) request.replaceUri(reconstructURIWithServer(server, request.getUri()));
+		noteOpenConnection(stats);
+		long start = System.currentTimeMillis();
+		RibbonResponse response = null;
+		Throwable failure = null;
+		RpcDeadline previous = RpcDeadline.attach(request.getDeadline() != null ? request.getDeadline() : RpcDeadline.current());
+		try {
+			response = execute(requestForServer, requestConfig);
+			return response;
+		} catch (Exception e) {
+			failure = e;
+			throw e instanceof ClientException ? (ClientException) e : new ClientException(e);
+		} finally {
+			RpcDeadline.restore(previous);
+			noteRequestCompletion(stats, response, failure, System.currentTimeMillis() - start, getRetryHandler());
+		}
+	}
+
+	//判断请求是否可能重试，与RequestSpecificRetryHandler一致：请求的配置中没有设置的重试次数使用当前RetryHandler的值
+	boolean isRetryEnabled(IClientConfig requestConfig) {
+		return getMaxRetriesOnSameServer(requestConfig) > 0 || getMaxRetriesOnNextServer(requestConfig) > 0;
+	}
+
+	//在同一个Server上的最大重试次数
+	protected int getMaxRetriesOnSameServer(IClientConfig requestConfig) {
+		return requestConfig != null && requestConfig.containsProperty(CommonClientConfigKey.MaxAutoRetries)
+				? requestConfig.get(CommonClientConfigKey.MaxAutoRetries, 0) : getRetryHandler().getMaxRetriesOnSameServer();
+	}
+
+	//最多重试的其他Server的个数
+	protected int getMaxRetriesOnNextServer(IClientConfig requestConfig) {
+		return requestConfig != null && requestConfig.containsProperty(CommonClientConfigKey.MaxAutoRetriesNextServer)
+				? requestConfig.get(CommonClientConfigKey.MaxAutoRetriesNextServer, 0) : getRetryHandler().getMaxRetriesOnNextServer();
+	}
+
+	//异步执行负载均衡的请求：选择Server，重建URI，并在响应返回时记录Server的统计信息
+	//与executeWithLoadBalancer不同，异步调用不经过LoadBalancerCommand，也不在其他Server上重试
+	public CompletableFuture<RibbonResponse> executeAsync(RibbonRequest request, IClientConfig configOverride) {
+		Server server;
+		try {
+			server = getServerFromLoadBalancer(request.getUri(), request.getLoadBalancerKey());
+		} catch (ClientException e) {
+			CompletableFuture<RibbonResponse> result = new CompletableFuture<RibbonResponse>();
+			result.completeExceptionally(e);
+			return result;
+		}
+		return executeOnServerAsync(request, server, configOverride);
+	}
+
+	//执行对冲请求：先向选中的Server发送请求，在最近延迟的百分位之后仍未返回、并且对冲预算允许时，向另一个Server再发送一次请求
+	//使用先成功返回的响应，并取消另一个请求；所有请求都失败时，使用最后一个失败的结果
+	//延迟样本不足或者只有一个Server时，与executeAsync相同
+	//对冲请求只支持AsyncClient：同步的Client在调用方线程中执行完第一个请求之后才会返回，无法在等待期间发送对冲请求
+	public CompletableFuture<RibbonResponse> executeHedged(RibbonRequest request, IClientConfig configOverride, HedgePolicy policy) {
+		if (!(request.client() instanceof AsyncClient)) {
+			CompletableFuture<RibbonResponse> result = new CompletableFuture<RibbonResponse>();
+			result.completeExceptionally(new IllegalStateException("Hedged requests require an asynchronous client, but got "
+					+ request.client().getClass().getName()));
+			return result;
+		}
+		Server server;
+		try {
+			server = getServerFromLoadBalancer(request.getUri(), request.getLoadBalancerKey());
+		} catch (ClientException e) {
+			CompletableFuture<RibbonResponse> result = new CompletableFuture<RibbonResponse>();
+			result.completeExceptionally(e);
+			return result;
+		}
+		policy.requestStarted();
+		HedgedCall call = new HedgedCall(request, configOverride, policy);
+		call.attempt(server);
+		long delayNanos = policy.getDelayNanos();
+		if (delayNanos >= 0) {
+			ScheduledFuture<?> timer = TIMER.schedule(() -> DISPATCHER.execute(() -> call.hedge(server)), delayNanos, TimeUnit.NANOSECONDS);
+			call.result.whenComplete((response, e) -> timer.cancel(false));
+		}
+		return call.result;
+	}
+
+	//选择与first不同的Server发送对冲请求或者重试，没有其他可用的Server时返回null
+	protected Server chooseOtherServer(RibbonRequest request, Server first) {
+		for (int i = 0; i < MAX_CHOOSE_ATTEMPTS; i++) {
+			try {
+				Server server = getServerFromLoadBalancer(request.getUri(), request.getLoadBalancerKey());
+				if (!server.equals(first)) {
+					return server;
+				}
+			} catch (ClientException e) {
+				return null;
+			}
+		}
+		for (Server server : getLoadBalancer().getReachableServers()) {
+			if (!server.equals(first) && !this.outlierDetector.isEjected(server)) {
+				return server;
+			}
+		}
+		return null;
+	}
+
+	//在指定的Server上异步执行请求，并在响应返回时记录Server的统计信息
+	//取消返回的CompletableFuture时，同时取消delegate返回的请求，SocketClient会放弃等待该请求的响应
+	protected CompletableFuture<RibbonResponse> executeOnServerAsync(RibbonRequest request, Server server, IClientConfig configOverride) {
+		CompletableFuture<RibbonResponse> result = new CompletableFuture<RibbonResponse>();
+		final ServerStats stats = getServerStats(server);
+		final URI finalUri = reconstructURIWithServer(server, request.getUri());
+		RibbonRequest requestForServer = (RibbonRequest) request.replaceUri(finalUri);
+		Request.Options options = getOptions(configOverride);
+		Client client = requestForServer.client();
+		noteOpenConnection(stats);
+		final long start = System.currentTimeMillis();
+		CompletableFuture<Response> future;
+		//重试以及对冲请求在定时器线程中发送，发送时绑定创建请求时记录的截止时间，SocketClient按照剩余的时间设置超时
+		RpcDeadline previous = RpcDeadline.attach(request.getDeadline() != null ? request.getDeadline() : RpcDeadline.current());
+		try {
+			if (client instanceof AsyncClient) {
+				future = ((AsyncClient) client).executeAsync(requestForServer.toRequest(), options);
+			} else {
+				future = new CompletableFuture<Response>();
+				try {
+					future.complete(client.execute(requestForServer.toRequest(), options));
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				}
+			}
+		} finally {
+			RpcDeadline.restore(previous);
+		}
+		future.whenComplete((response, e) -> {
+			Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+			RibbonResponse ribbonResponse = response != null ? new RibbonResponse(finalUri, response) : null;
+			noteRequestCompletion(stats, ribbonResponse, cause, System.currentTimeMillis() - start, getRetryHandler());
+			if (cause != null) {
+				result.completeExceptionally(cause);
+			} else {
+				result.complete(ribbonResponse);
+			}
+		});
+		if (!future.isDone()) {
+			result.whenComplete((response, e) -> {
+				if (result.isCancelled()) {
+					future.cancel(false);
+				}
+			});
+		}
+		return result;
+	}
+
+	//根据请求的配置生成Feign的Options，未配置的超时时间使用当前Client的默认值
+	//由Feign的Options生成的配置直接返回原来的Options，其他情况下超时时间不变时复用上次的Options
+	private Request.Options getOptions(IClientConfig configOverride) {
+		if (configOverride instanceof FeignOptionsClientConfig) {
+			return ((FeignOptionsClientConfig) configOverride).getOptions();
+		}
+		int connectTimeout = this.connectTimeout;
+		int readTimeout = this.readTimeout;
 		if (configOverride != null) {
-			options = new Request.Options(
-					configOverride.get(CommonClientConfigKey.ConnectTimeout,
-							this.connectTimeout),
-					(configOverride.get(CommonClientConfigKey.ReadTimeout,
-							this.readTimeout)));
+			connectTimeout = configOverride.get(CommonClientConfigKey.ConnectTimeout, this.connectTimeout);
+			readTimeout = configOverride.get(CommonClientConfigKey.ReadTimeout, this.readTimeout);
 		}
-		else {
-			options = new Request.Options(this.connectTimeout, this.readTimeout);
+		Request.Options options = this.lastOptions;
+		if (options == null || options.connectTimeoutMillis() != connectTimeout || options.readTimeoutMillis() != readTimeout) {
+			options = new Request.Options(connectTimeout, readTimeout);
+			this.lastOptions = options;
 		}
-		Response response = request.client().execute(request.toRequest(), options);
-		return new RibbonResponse(request.getUri(), response);
+		return options;
 	}
 
 	@Override
@@ -79,7 +338,7 @@ public class FeignLoadBalancerExt extends AbstractLoadBalancerAwareClient<FeignL
 			return new RequestSpecificRetryHandler(true, true, this.getRetryHandler(),
 					requestConfig);
 		}
-		if (!request.toRequest().method().equals("GET")) {
+		if (!request.method().equals("GET")) {
 			return new RequestSpecificRetryHandler(true, false, this.getRetryHandler(),
 					requestConfig);
 		}
@@ -89,8 +348,21 @@ public class FeignLoadBalancerExt extends AbstractLoadBalancerAwareClient<FeignL
 		}
 	}
 
+	//同一个Server上同一个方法的URI是不变的，重建一次之后缓存在Server的端点中
+	//Server列表或者Server的InstanceInfo变化时，端点以及其中的URI由ServerEndpointCache失效
 	@Override
 	public URI reconstructURIWithServer(Server server, URI original) {
+		ServerEndpoint endpoint = this.endpoints.get(server);
+		URI uri = endpoint.getUri(original);
+		if (uri == null) {
+			uri = reconstructURI(endpoint, original);
+			endpoint.putUri(original, uri);
+		}
+		return uri;
+	}
+
+	private URI reconstructURI(ServerEndpoint endpoint, URI original) {
+		Server server = endpoint.getServer();
 		URI uri = updateToHttpsIfNeeded(original, this.clientConfig, this.serverIntrospector, server);
 		
 		//return super.reconstructURIWithServer(server, uri);
@@ -131,10 +403,7 @@ public class FeignLoadBalancerExt extends AbstractLoadBalancerAwareClient<FeignL
             }else {
             	//如果URL的协议，是FeignX支持的协议
             	if (ProtocolUtils.containsSupportedProtocol(scheme)) {
-            		Map<String, String> serverMetaData = ((DiscoveryEnabledServer)server).getInstanceInfo().getMetadata();
-            		ProtocolType protocol = ProtocolUtils.getProtocol(original.toString());
-            		//如果无法从目标server的MetaData中获取到port信息，那么使用支持scheme的默认port
-            		port = Integer.parseInt(serverMetaData.getOrDefault(scheme+"-port", String.valueOf(protocol.getDefaultPort())));
+            		port = endpoint.getPort(ProtocolUtils.getProtocol(original.toString()));
             		sb.append(":").append(port);
             	}else {
             		throw new RuntimeException("Not supported scheme in URL:"+original);
@@ -155,36 +424,145 @@ public class FeignLoadBalancerExt extends AbstractLoadBalancerAwareClient<FeignL
 		
 	}
 
+	//获取Server上指定协议的端口：从Server的MetaData中获取<协议>-port，无法获取时使用协议的默认端口
+	public static int getProtocolPort(Server server, ProtocolType protocol) {
+		if (!(server instanceof DiscoveryEnabledServer)) {
+			throw new RuntimeException("Can not get " + protocol.getName() + " port from server " + server + " without MetaData");
+		}
+		Map<String, String> serverMetaData = ((DiscoveryEnabledServer) server).getInstanceInfo().getMetadata();
+		return Integer.parseInt(serverMetaData.getOrDefault(protocol.getName() + "-port", String.valueOf(protocol.getDefaultPort())));
+	}
+
+	//一次对冲调用：最多两个请求，先成功返回的响应作为结果
+	private class HedgedCall {
+
+		private final RibbonRequest request;
+		private final IClientConfig configOverride;
+		private final HedgePolicy policy;
+		private final CompletableFuture<RibbonResponse> result = new CompletableFuture<RibbonResponse>();
+		private final List<CompletableFuture<RibbonResponse>> attempts = new CopyOnWriteArrayList<CompletableFuture<RibbonResponse>>();
+		//还没有完成的请求个数
+		private final AtomicInteger pending = new AtomicInteger();
+
+		HedgedCall(RibbonRequest request, IClientConfig configOverride, HedgePolicy policy) {
+			this.request = request;
+			this.configOverride = configOverride;
+			this.policy = policy;
+			//调用方取消结果时，取消所有正在进行的请求
+			this.result.whenComplete((response, e) -> {
+				if (this.result.isCancelled()) {
+					for (CompletableFuture<RibbonResponse> attempt : this.attempts) {
+						attempt.cancel(false);
+					}
+				}
+			});
+		}
+
+		void attempt(Server server) {
+			this.pending.incrementAndGet();
+			long start = System.nanoTime();
+			CompletableFuture<RibbonResponse> attempt = executeOnServerAsync(this.request, server, this.configOverride);
+			this.attempts.add(attempt);
+			//对冲请求发出时，结果可能已经返回
+			if (this.result.isDone()) {
+				attempt.cancel(false);
+			}
+			attempt.whenComplete((response, e) -> completed(response, e, System.nanoTime() - start));
+		}
+
+		//对冲的时间到达时，请求仍未返回，并且预算允许时，向另一个Server发送请求
+		void hedge(Server first) {
+			if (this.result.isDone()) {
+				return;
+			}
+			Server server = chooseOtherServer(this.request, first);
+			if (server == null || !this.policy.tryAcquireHedge()) {
+				return;
+			}
+			attempt(server);
+		}
+
+		private void completed(RibbonResponse response, Throwable e, long elapsedNanos) {
+			if (e == null && response.isSuccess()) {
+				this.policy.recordLatency(elapsedNanos);
+				if (this.result.complete(response)) {
+					for (CompletableFuture<RibbonResponse> attempt : this.attempts) {
+						attempt.cancel(false);
+					}
+				}
+				return;
+			}
+			//失败时等待另一个请求，所有请求都完成之后才使用失败的结果
+			if (this.pending.decrementAndGet() > 0 || this.result.isDone()) {
+				return;
+			}
+			if (e != null) {
+				this.result.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+			} else {
+				this.result.complete(response);
+			}
+		}
+	}
+
 	public static class RibbonRequest extends ClientRequest implements Cloneable {
 
 		private final Request request;
 		private final Client client;
+		//创建请求时调用方线程上的截止时间，没有时为null
+		//重试、对冲请求以及异步的后续处理可能在其他线程中执行，每次发送时都使用这里记录的截止时间
+		private final RpcDeadline deadline;
+		//按照当前URI生成的Request，以及生成时的URI
+		private Request requestForUri;
+		private URI requestUri;
 
 		public RibbonRequest(Client client, Request request, URI uri) {
+			this(client, request, uri, RpcDeadline.current());
+		}
+
+		private RibbonRequest(Client client, Request request, URI uri, RpcDeadline deadline) {
 			this.client = client;
 			setUri(uri);
-			this.request = toRequest(request);
+			this.request = request;
+			this.deadline = deadline;
 		}
 
-		private Request toRequest(Request request) {
-			Map<String, Collection<String>> headers = new LinkedHashMap<>(
-					request.headers());
-			return Request.create(request.method(),getUri().toASCIIString(),headers,request.body(),request.charset());
+		//按照当前的URI生成发送给Client的Request，只在第一次调用时生成，头信息和包体直接复用原来的Request
+		Request toRequest() {
+			URI uri = getUri();
+			if (this.requestForUri == null || this.requestUri != uri) {
+				this.requestForUri = Request.create(this.request.method(), uri.toASCIIString(), this.request.headers(),
+						this.request.body(), this.request.charset());
+				this.requestUri = uri;
+			}
+			return this.requestForUri;
 		}
 
-		Request toRequest() {
-			return toRequest(this.request);
+		String method() {
+			return this.request.method();
+		}
+
+		Map<String, Collection<String>> headers() {
+			return this.request.headers();
 		}
 
 		Client client() {
 			return this.client;
 		}
 
+		RpcDeadline getDeadline() {
+			return this.deadline;
+		}
+
+		//截止时间已经过去（或者调用方的请求已经被取消）时，不再发送请求以及重试
+		boolean isExpired() {
+			return this.deadline != null && this.deadline.isExpired();
+		}
+
 		HttpRequest toHttpRequest() {
 			return new HttpRequest() {
 				@Override
 				public HttpMethod getMethod() {
-					return HttpMethod.resolve(RibbonRequest.this.toRequest().method());
+					return HttpMethod.resolve(RibbonRequest.this.method());
 				}
 
 				@Override
@@ -210,7 +588,7 @@ public class FeignLoadBalancerExt extends AbstractLoadBalancerAwareClient<FeignL
 
 		@Override
 		public Object clone() {
-			return new RibbonRequest(this.client, this.request, getUri());
+			return new RibbonRequest(this.client, this.request, getUri(), this.deadline);
 		}
 	}
 
@@ -0,0 +1,87 @@
+package feign.loadbalancer;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import feign.annotation.Hedged;
+
+//方法的对冲策略，由@Hedged注解生成，随RpcMethodDescriptor保存
+//1、延迟：记录最近SAMPLE_SIZE次成功请求的延迟，每SAMPLE_INTERVAL次重新计算一次百分位，样本不足时不发送对冲请求
+//2、预算：每个请求增加budget%个令牌，每个对冲请求消耗一个令牌，令牌最多累积MAX_TOKENS个，保证对冲请求不超过请求总数的budget%
+public final class HedgePolicy {
+
+	//延迟样本的个数
+	private static final int SAMPLE_SIZE = 128;
+
+	//重新计算百分位的间隔（样本个数），也是开始对冲之前需要的最少样本个数
+	private static final int SAMPLE_INTERVAL = 32;
+
+	//最多累积的令牌个数，避免空闲之后一次发送过多的对冲请求
+	private static final long MAX_TOKENS = 10;
+
+	private final double percentile;
+
+	private final long minDelayNanos;
+
+	private final long[] samples = new long[SAMPLE_SIZE];
+
+	private final AtomicInteger sampleCount = new AtomicInteger();
+
+	//对冲的令牌，每个请求增加budget%个令牌
+	private final TokenBucket tokens;
+
+	//当前的对冲延迟（纳秒），还没有足够的样本时为-1
+	private volatile long delayNanos = -1;
+
+	public HedgePolicy(double percentile, double budget, long minDelayMillis) {
+		if (percentile <= 0 || percentile > 100) {
+			throw new IllegalArgumentException("Hedge percentile must be in (0, 100]: " + percentile);
+		}
+		if (budget < 0 || budget > 100) {
+			throw new IllegalArgumentException("Hedge budget must be in [0, 100]: " + budget);
+		}
+		this.percentile = percentile;
+		this.tokens = new TokenBucket(budget / 100, 0, MAX_TOKENS);
+		this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(minDelayMillis, 0));
+	}
+
+	public static HedgePolicy of(Hedged hedged) {
+		return hedged == null ? null : new HedgePolicy(hedged.percentile(), hedged.budget(), hedged.minDelay());
+	}
+
+	//请求发出，增加对冲的令牌
+	void requestStarted() {
+		this.tokens.deposit();
+	}
+
+	//尝试消耗一个令牌，成功时可以发送对冲请求
+	boolean tryAcquireHedge() {
+		return this.tokens.tryWithdraw();
+	}
+
+	//记录一次成功请求的延迟
+	void recordLatency(long elapsedNanos) {
+		int count = this.sampleCount.incrementAndGet();
+		//第count个样本写入下标count - 1，前SAMPLE_SIZE个样本依次填满数组
+		this.samples[((count - 1) & Integer.MAX_VALUE) % SAMPLE_SIZE] = elapsedNanos;
+		if (count % SAMPLE_INTERVAL == 0) {
+			//样本数组没有加锁，复制时可能混入个别正在写入的样本，不影响百分位的估算
+			long[] sorted = Arrays.copyOf(this.samples, Math.min(count & Integer.MAX_VALUE, SAMPLE_SIZE));
+			Arrays.sort(sorted);
+			int index = (int) Math.ceil(sorted.length * this.percentile / 100) - 1;
+			this.delayNanos = Math.max(sorted[Math.max(index, 0)], this.minDelayNanos);
+		}
+	}
+
+	//发送对冲请求之前等待的时间（纳秒），样本不足时返回-1，表示不发送对冲请求
+	long getDelayNanos() {
+		return this.delayNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "HedgePolicy{percentile=" + this.percentile + ", budget=" + (this.tokens.getTokensPerDeposit() * 100) + "%}";
+	}
+
+}
@@ -0,0 +1,194 @@
+package feign.loadbalancer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.client.config.CommonClientConfigKey;
+import com.netflix.client.config.IClientConfig;
+import com.netflix.client.config.IClientConfigKey;
+import com.netflix.loadbalancer.BaseLoadBalancer;
+import com.netflix.loadbalancer.ILoadBalancer;
+import com.netflix.loadbalancer.Server;
+
+//被动的异常节点检测，由FeignLoadBalancerExt在每个请求完成时记录结果，被剔除的Server暂时不会被选中
+//1、连续失败：连续失败（异常或者5xx响应，SocketClient的失败会转换成502响应）达到OutlierConsecutiveFailures次时剔除
+//   没有发出或者服务端繁忙拒绝执行的请求（503）不记录
+//2、延迟异常：每个检测周期内，延迟（EWMA）超过其他Server延迟中位数OutlierLatencyFactor倍的Server被剔除，设置为0时关闭
+//3、剔除的时间 = OutlierBaseEjectionTime * 2^(被剔除的次数 - 1)，最长为10倍，检测周期内没有失败的Server，被剔除的次数逐渐减少
+//4、被剔除的Server个数不超过Server总数的OutlierMaxEjectionPercent，保证部分故障时不会把请求集中到少数几个Server上
+//5、Ribbon的Server列表变化时，移除已经不在列表中的Server的状态
+//按照Feign客户端的名称配置，例如：<clientName>.ribbon.OutlierConsecutiveFailures=5
+public class OutlierDetector {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(OutlierDetector.class);
+
+	public static final IClientConfigKey<Integer> CONSECUTIVE_FAILURES = new CommonClientConfigKey<Integer>("OutlierConsecutiveFailures") {};
+	public static final IClientConfigKey<Integer> BASE_EJECTION_TIME = new CommonClientConfigKey<Integer>("OutlierBaseEjectionTime") {};
+	public static final IClientConfigKey<Integer> MAX_EJECTION_PERCENT = new CommonClientConfigKey<Integer>("OutlierMaxEjectionPercent") {};
+	public static final IClientConfigKey<Integer> LATENCY_FACTOR = new CommonClientConfigKey<Integer>("OutlierLatencyFactor") {};
+
+	//延迟异常检测的周期
+	private static final long DETECTION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+	//检测周期内至少需要的请求数，以及至少需要的Server个数，样本不足时不检测延迟异常
+	private static final int MIN_REQUESTS = 20;
+	private static final int MIN_SERVERS = 3;
+
+	//延迟EWMA的权重
+	private static final double LATENCY_WEIGHT = 0.1;
+
+	private final ILoadBalancer lb;
+	private final int consecutiveFailures;
+	private final long baseEjectionNanos;
+	private final int maxEjectionPercent;
+	private final int latencyFactor;
+
+	private final Map<Server, ServerState> states = new ConcurrentHashMap<Server, ServerState>();
+
+	//下一次检测延迟异常的时间
+	private final AtomicLong nextDetection = new AtomicLong(System.nanoTime() + DETECTION_INTERVAL_NANOS);
+
+	public OutlierDetector(ILoadBalancer lb, IClientConfig clientConfig) {
+		this.lb = lb;
+		this.consecutiveFailures = clientConfig.getPropertyAsInteger(CONSECUTIVE_FAILURES, 5);
+		this.baseEjectionNanos = TimeUnit.MILLISECONDS.toNanos(clientConfig.getPropertyAsInteger(BASE_EJECTION_TIME, 30000));
+		this.maxEjectionPercent = clientConfig.getPropertyAsInteger(MAX_EJECTION_PERCENT, 50);
+		this.latencyFactor = clientConfig.getPropertyAsInteger(LATENCY_FACTOR, 3);
+		if (lb instanceof BaseLoadBalancer) {
+			((BaseLoadBalancer) lb).addServerListChangeListener((oldList, newList) -> serverListChanged(newList));
+		}
+	}
+
+	private void serverListChanged(List<Server> servers) {
+		this.states.keySet().retainAll(new HashSet<Server>(servers));
+	}
+
+	//Server是否处于被剔除的状态
+	public boolean isEjected(Server server) {
+		ServerState state = this.states.get(server);
+		return state != null && state.isEjected();
+	}
+
+	//记录一次请求的结果，failed表示请求异常或者服务端错误
+	public void record(Server server, boolean failed, long latencyMillis) {
+		ServerState state = this.states.computeIfAbsent(server, key -> new ServerState());
+		boolean eject;
+		synchronized (state) {
+			state.requests++;
+			if (failed) {
+				state.failed = true;
+				eject = ++state.consecutiveFailures >= this.consecutiveFailures;
+			} else {
+				state.consecutiveFailures = 0;
+				state.latency = state.latency == 0 ? latencyMillis : state.latency * (1 - LATENCY_WEIGHT) + latencyMillis * LATENCY_WEIGHT;
+				eject = false;
+			}
+		}
+		if (eject) {
+			eject(server, state, "consecutive failures");
+		}
+		long now = System.nanoTime();
+		long next = this.nextDetection.get();
+		if (now - next >= 0 && this.nextDetection.compareAndSet(next, now + DETECTION_INTERVAL_NANOS)) {
+			detect();
+		}
+	}
+
+	//检测延迟异常的Server，并减少检测周期内没有失败的Server被剔除的次数
+	private void detect() {
+		List<Double> latencies = new ArrayList<Double>();
+		for (ServerState state : this.states.values()) {
+			synchronized (state) {
+				if (!state.failed && state.ejections > 0 && !state.isEjected()) {
+					state.ejections--;
+				}
+				state.failed = false;
+				if (state.requests >= MIN_REQUESTS && !state.isEjected()) {
+					latencies.add(state.latency);
+				}
+			}
+		}
+		if (this.latencyFactor <= 0 || latencies.size() < MIN_SERVERS) {
+			resetRequests();
+			return;
+		}
+		Collections.sort(latencies);
+		double median = latencies.get(latencies.size() / 2);
+		for (Map.Entry<Server, ServerState> entry : this.states.entrySet()) {
+			ServerState state = entry.getValue();
+			boolean slow;
+			synchronized (state) {
+				slow = state.requests >= MIN_REQUESTS && !state.isEjected() && median > 0 && state.latency > median * this.latencyFactor;
+			}
+			if (slow) {
+				eject(entry.getKey(), state, "latency " + (long) state.latency + "ms, median " + (long) median + "ms");
+			}
+		}
+		resetRequests();
+	}
+
+	private void resetRequests() {
+		for (ServerState state : this.states.values()) {
+			synchronized (state) {
+				state.requests = 0;
+			}
+		}
+	}
+
+	//剔除Server，被剔除的Server个数已经达到上限时不剔除
+	private synchronized void eject(Server server, ServerState state, String reason) {
+		//只统计仍在Server列表中的Server
+		List<Server> servers = this.lb.getAllServers();
+		int total = servers.size();
+		int ejected = 0;
+		for (Server other : servers) {
+			ServerState otherState = this.states.get(other);
+			if (otherState != null && otherState.isEjected()) {
+				ejected++;
+			}
+		}
+		//Server较少时，至少允许剔除一个
+		int maxEjected = this.maxEjectionPercent > 0 ? Math.max(1, total * this.maxEjectionPercent / 100) : 0;
+		if (total <= 1 || ejected >= maxEjected) {
+			return;
+		}
+		long duration;
+		synchronized (state) {
+			if (state.isEjected()) {
+				return;
+			}
+			state.ejections++;
+			duration = Math.min(this.baseEjectionNanos << Math.min(state.ejections - 1, 10), this.baseEjectionNanos * 10);
+			state.ejectedUntil = System.nanoTime() + duration;
+			state.consecutiveFailures = 0;
+		}
+		LOGGER.warn("Eject server " + server + " for " + TimeUnit.NANOSECONDS.toMillis(duration) + "ms: " + reason);
+	}
+
+	private static final class ServerState {
+
+		private int consecutiveFailures;
+		//检测周期内的请求数，以及是否有失败的请求
+		private int requests;
+		private boolean failed;
+		//成功请求的延迟EWMA（毫秒）
+		private double latency;
+		//被剔除的次数，决定下一次剔除的时间
+		private int ejections;
+		private volatile long ejectedUntil = System.nanoTime();
+
+		boolean isEjected() {
+			return this.ejectedUntil - System.nanoTime() > 0;
+		}
+	}
+
+}
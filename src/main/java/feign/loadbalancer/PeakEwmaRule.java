@@ -0,0 +1,74 @@
+package feign.loadbalancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.netflix.client.config.IClientConfig;
+import com.netflix.loadbalancer.AbstractLoadBalancerRule;
+import com.netflix.loadbalancer.ILoadBalancer;
+import com.netflix.loadbalancer.Server;
+
+import feign.client.socket.SocketRoute;
+import feign.client.socket.SocketRouteStats;
+import feign.enumerate.ProtocolType;
+
+//基于Peak EWMA延迟的Power of Two Choices负载均衡规则
+//每次从可用的Server中随机选出两个，选择SocketRouteStats中成本（延迟 * (正在等待响应的请求数 + 1)）较小的一个，
+//变慢或者GC停顿的节点的成本会立即升高，从而少分配请求，又不会像总是选最小值那样把请求集中到同一个节点
+//还没有连接的Server以及没有有效SOCKET端口的Server没有统计，成本按0计算
+//按照Feign客户端的名称配置：<clientName>.ribbon.NFLoadBalancerRuleClassName=feign.loadbalancer.PeakEwmaRule
+public class PeakEwmaRule extends AbstractLoadBalancerRule {
+
+	//Server的端点缓存，Server的InstanceInfo变化（例如：SOCKET端口变化）时得到新的端点
+	private volatile ServerEndpointCache endpoints;
+
+	public PeakEwmaRule() {
+	}
+
+	public PeakEwmaRule(ILoadBalancer lb) {
+		setLoadBalancer(lb);
+	}
+
+	@Override
+	public void setLoadBalancer(ILoadBalancer lb) {
+		super.setLoadBalancer(lb);
+		this.endpoints = new ServerEndpointCache(lb);
+	}
+
+	@Override
+	public void initWithNiwsConfig(IClientConfig clientConfig) {
+	}
+
+	@Override
+	public Server choose(Object key) {
+		ILoadBalancer lb = getLoadBalancer();
+		if (lb == null) {
+			return null;
+		}
+		List<Server> servers = lb.getReachableServers();
+		int size = servers.size();
+		if (size == 0) {
+			return null;
+		}
+		if (size == 1) {
+			return servers.get(0);
+		}
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int first = random.nextInt(size);
+		int second = random.nextInt(size - 1);
+		if (second >= first) {
+			second++;
+		}
+		Server server1 = servers.get(first);
+		Server server2 = servers.get(second);
+		return getCost(server1) <= getCost(server2) ? server1 : server2;
+	}
+
+	//Server的SOCKET路由的成本，统计由SocketConnection维护，路由上的连接全部关闭之后移除
+	double getCost(Server server) {
+		SocketRoute route = this.endpoints.get(server).findRoute(ProtocolType.SOCKET);
+		SocketRouteStats stats = route != null ? SocketRouteStats.get(route) : null;
+		return stats != null ? stats.getCost() : 0;
+	}
+
+}
@@ -0,0 +1,36 @@
+package feign.loadbalancer;
+
+//客户端的重试预算（令牌桶）：每个成功的请求增加percent%个令牌，每次重试消耗一个令牌
+//重试的次数不会超过成功请求数的percent%，服务端大面积故障时重试很快停止，不会成倍放大请求
+//初始有MIN_TOKENS个令牌，保证刚启动或者请求量很小时仍然可以重试；令牌最多累积MAX_TOKENS个
+public final class RetryBudget {
+
+	private static final long MIN_TOKENS = 10;
+
+	private static final long MAX_TOKENS = 100;
+
+	private final TokenBucket tokens;
+
+	public RetryBudget(int percent) {
+		if (percent < 0) {
+			throw new IllegalArgumentException("Retry budget percent must not be negative: " + percent);
+		}
+		this.tokens = new TokenBucket(percent / 100.0, MIN_TOKENS, MAX_TOKENS);
+	}
+
+	//记录一次成功的请求
+	public void deposit() {
+		this.tokens.deposit();
+	}
+
+	//尝试消耗一个令牌，成功时可以重试
+	public boolean tryWithdraw() {
+		return this.tokens.tryWithdraw();
+	}
+
+	//当前可以重试的次数
+	public long getAvailable() {
+		return this.tokens.getAvailable();
+	}
+
+}
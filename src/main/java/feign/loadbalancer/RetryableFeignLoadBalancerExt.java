@@ -1,7 +1,15 @@
 package feign.loadbalancer;
 
 import java.io.IOException;
+import java.net.ConnectException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.cloud.client.ServiceInstance;
 import org.springframework.cloud.client.loadbalancer.LoadBalancedBackOffPolicyFactory;
 import org.springframework.cloud.client.loadbalancer.LoadBalancedRetryListenerFactory;
@@ -11,26 +19,50 @@ import org.springframework.cloud.netflix.ribbon.RibbonLoadBalancerClient;
 import org.springframework.cloud.netflix.ribbon.ServerIntrospector;
 
 
+import com.netflix.client.ClientException;
 import com.netflix.client.DefaultLoadBalancerRetryHandler;
 import com.netflix.client.RequestSpecificRetryHandler;
+import com.netflix.client.config.CommonClientConfigKey;
 import com.netflix.client.config.IClientConfig;
+import com.netflix.client.config.IClientConfigKey;
 import com.netflix.loadbalancer.ILoadBalancer;
+import com.netflix.loadbalancer.Server;
 
+import feign.client.RpcMethodDescriptor;
+import feign.client.socket.SocketClient;
+import feign.enumerate.ProtocolType;
+import feign.packet.RpcDeadline;
+
+//SOCKET客户端的重试：不依赖spring-retry，按照Ribbon的MaxAutoRetries、MaxAutoRetriesNextServer重试
+//1、只重试请求没有发出（建立连接失败）的请求，以及幂等的方法（@Idempotent、@Hedged，HTTP协议的GET方法）
+//2、重试预算：重试的次数不超过成功请求数的RetryBudgetPercent%，服务端故障时重试不会成倍放大请求
+//3、重试之间按照RetryBackoff、RetryMaxBackoff进行带随机抖动的指数退避
+//4、请求带有调用方的截止时间（RpcDeadline）时，截止时间到期之后不再重试，退避的时间也不超过剩余的时间
+//按照Feign客户端的名称配置，例如：<clientName>.ribbon.RetryBudgetPercent=20
+//构造方法中spring-retry的LoadBalancedRetryPolicyFactory、LoadBalancedBackOffPolicyFactory、LoadBalancedRetryListenerFactory
+//只为兼容CachingSpringLoadBalancerFactoryExt的调用方式保留，重试的策略、退避以及监听器都不使用它们
 public class RetryableFeignLoadBalancerExt extends FeignLoadBalancerExt implements ServiceInstanceChooser {
 
-	private final LoadBalancedRetryPolicyFactory loadBalancedRetryPolicyFactory;
-	private final LoadBalancedBackOffPolicyFactory loadBalancedBackOffPolicyFactory;
-	private final LoadBalancedRetryListenerFactory loadBalancedRetryListenerFactory;
+	private static final Logger LOGGER = LoggerFactory.getLogger(RetryableFeignLoadBalancerExt.class);
+
+	public static final IClientConfigKey<Integer> RETRY_BUDGET_PERCENT = new CommonClientConfigKey<Integer>("RetryBudgetPercent") {};
+	public static final IClientConfigKey<Integer> RETRY_BACKOFF = new CommonClientConfigKey<Integer>("RetryBackoff") {};
+	public static final IClientConfigKey<Integer> RETRY_MAX_BACKOFF = new CommonClientConfigKey<Integer>("RetryMaxBackoff") {};
+
+	private final RetryBudget retryBudget;
+	//重试退避的初始时间以及最长时间（毫秒）
+	private final long backoffMillis;
+	private final long maxBackoffMillis;
 
 	@Deprecated
 	//TODO remove in 2.0.x
 	public RetryableFeignLoadBalancerExt(ILoadBalancer lb, IClientConfig clientConfig,
 							 ServerIntrospector serverIntrospector, LoadBalancedRetryPolicyFactory loadBalancedRetryPolicyFactory) {
 		super(lb, clientConfig, serverIntrospector);
-		this.loadBalancedRetryPolicyFactory = loadBalancedRetryPolicyFactory;
 		this.setRetryHandler(new DefaultLoadBalancerRetryHandler(clientConfig));
-		this.loadBalancedBackOffPolicyFactory = new LoadBalancedBackOffPolicyFactory.NoBackOffPolicyFactory();
-		this.loadBalancedRetryListenerFactory = new LoadBalancedRetryListenerFactory.DefaultRetryListenerFactory();
+		this.retryBudget = new RetryBudget(clientConfig.getPropertyAsInteger(RETRY_BUDGET_PERCENT, 20));
+		this.backoffMillis = clientConfig.getPropertyAsInteger(RETRY_BACKOFF, 50);
+		this.maxBackoffMillis = clientConfig.getPropertyAsInteger(RETRY_MAX_BACKOFF, 1000);
 	}
 
 	@Deprecated
@@ -39,11 +71,10 @@ public class RetryableFeignLoadBalancerExt extends FeignLoadBalancerExt implemen
 									  ServerIntrospector serverIntrospector, LoadBalancedRetryPolicyFactory loadBalancedRetryPolicyFactory,
 									  LoadBalancedBackOffPolicyFactory loadBalancedBackOffPolicyFactory) {
 		super(lb, clientConfig, serverIntrospector);
-		this.loadBalancedRetryPolicyFactory = loadBalancedRetryPolicyFactory;
 		this.setRetryHandler(new DefaultLoadBalancerRetryHandler(clientConfig));
-		this.loadBalancedBackOffPolicyFactory = loadBalancedBackOffPolicyFactory == null ?
-			new LoadBalancedBackOffPolicyFactory.NoBackOffPolicyFactory() : loadBalancedBackOffPolicyFactory;
-		this.loadBalancedRetryListenerFactory = new LoadBalancedRetryListenerFactory.DefaultRetryListenerFactory();
+		this.retryBudget = new RetryBudget(clientConfig.getPropertyAsInteger(RETRY_BUDGET_PERCENT, 20));
+		this.backoffMillis = clientConfig.getPropertyAsInteger(RETRY_BACKOFF, 50);
+		this.maxBackoffMillis = clientConfig.getPropertyAsInteger(RETRY_MAX_BACKOFF, 1000);
 	}
 
 	public RetryableFeignLoadBalancerExt(ILoadBalancer lb, IClientConfig clientConfig, ServerIntrospector serverIntrospector,
@@ -51,69 +82,141 @@ public class RetryableFeignLoadBalancerExt extends FeignLoadBalancerExt implemen
 									  LoadBalancedBackOffPolicyFactory loadBalancedBackOffPolicyFactory,
 									  LoadBalancedRetryListenerFactory loadBalancedRetryListenerFactory) {
 		super(lb, clientConfig, serverIntrospector);
-		this.loadBalancedRetryPolicyFactory = loadBalancedRetryPolicyFactory;
 		this.setRetryHandler(new DefaultLoadBalancerRetryHandler(clientConfig));
-		this.loadBalancedBackOffPolicyFactory = loadBalancedBackOffPolicyFactory == null ?
-			new LoadBalancedBackOffPolicyFactory.NoBackOffPolicyFactory() : loadBalancedBackOffPolicyFactory;
-		this.loadBalancedRetryListenerFactory = loadBalancedRetryListenerFactory == null ?
-			new LoadBalancedRetryListenerFactory.DefaultRetryListenerFactory() : loadBalancedRetryListenerFactory;
+		this.retryBudget = new RetryBudget(clientConfig.getPropertyAsInteger(RETRY_BUDGET_PERCENT, 20));
+		this.backoffMillis = clientConfig.getPropertyAsInteger(RETRY_BACKOFF, 50);
+		this.maxBackoffMillis = clientConfig.getPropertyAsInteger(RETRY_MAX_BACKOFF, 1000);
+	}
+
+	//按照重试次数以及重试预算同步执行请求，重试之间按照带随机抖动的指数退避等待
+	@Override
+	public RibbonResponse executeWithLoadBalancer(RibbonRequest request, IClientConfig requestConfig) throws ClientException {
+		RetryState state = new RetryState(request, requestConfig);
+		state.server = getServerFromLoadBalancer(request.getUri(), request.getLoadBalancerKey());
+		for (;;) {
+			RibbonResponse response = null;
+			ClientException failure = null;
+			try {
+				response = executeOnServer(request, state.server, requestConfig);
+			} catch (ClientException e) {
+				failure = e;
+			}
+			//调用方线程被中断（例如：Hystrix超时）或者截止时间已经到期时不再重试
+			if (Thread.currentThread().isInterrupted() || !isRetriable(request, response, failure) || !state.prepareRetry()) {
+				if (failure != null) {
+					throw failure;
+				}
+				if (response.isSuccess()) {
+					this.retryBudget.deposit();
+				}
+				return response;
+			}
+			closeQuietly(response);
+			try {
+				Thread.sleep(state.backoffMillis());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ClientException(e);
+			}
+		}
 	}
 
+	//异步执行请求，重试的退避由定时器完成，到期之后在DISPATCHER中发送重试的请求，不阻塞调用方、I/O线程以及定时器线程
+	//取消返回的Future时，同时取消正在进行的请求，并且不再重试
 	@Override
-	public RibbonResponse execute(final RibbonRequest request, IClientConfig configOverride)
-			throws IOException {
-//		final Request.Options options;
-//		if (configOverride != null) {
-//			options = new Request.Options(
-//					configOverride.get(CommonClientConfigKey.ConnectTimeout,
-//							this.connectTimeout),
-//					(configOverride.get(CommonClientConfigKey.ReadTimeout,
-//							this.readTimeout)));
-//		}
-//		else {
-//			options = new Request.Options(this.connectTimeout, this.readTimeout);
-//		}
-//		final LoadBalancedRetryPolicy retryPolicy = loadBalancedRetryPolicyFactory.create(this.getClientName(), this);
-//		RetryTemplate retryTemplate = new RetryTemplate();
-//		BackOffPolicy backOffPolicy = loadBalancedBackOffPolicyFactory.createBackOffPolicy(this.getClientName());
-//		retryTemplate.setBackOffPolicy(backOffPolicy == null ? new NoBackOffPolicy() : backOffPolicy);
-//		RetryListener[] retryListeners = this.loadBalancedRetryListenerFactory.createRetryListeners(this.getClientName());
-//		if (retryListeners != null && retryListeners.length != 0) {
-//			retryTemplate.setListeners(retryListeners);
-//		}
-//		retryTemplate.setRetryPolicy(retryPolicy == null ? new NeverRetryPolicy()
-//				: new FeignRetryPolicy(request.toHttpRequest(), retryPolicy, this, this.getClientName()));
-//		return retryTemplate.execute(new RetryCallback<RibbonResponse, IOException>() {
-//			@Override
-//			public RibbonResponse doWithRetry(RetryContext retryContext) throws IOException {
-//				Request feignRequest = null;
-//				//on retries the policy will choose the server and set it in the context
-//				//extract the server and update the request being made
-//				if (retryContext instanceof LoadBalancedRetryContext) {
-//					ServiceInstance service = ((LoadBalancedRetryContext) retryContext).getServiceInstance();
-//					if (service != null) {
-//						feignRequest = ((RibbonRequest) request.replaceUri(reconstructURIWithServer(new Server(service.getHost(), service.getPort()), request.getUri()))).toRequest();
-//					}
-//				}
-//				if (feignRequest == null) {
-//					feignRequest = request.toRequest();
-//				}
-//				Response response = request.client().execute(feignRequest, options);
-//				if (retryPolicy.retryableStatusCode(response.status())) {
-//					byte[] byteArray = response.body() == null ? new byte[]{} : StreamUtils.copyToByteArray(response.body().asInputStream());
-//					response.close();
-//					throw new RibbonResponseStatusCodeException(RetryableFeignLoadBalancerExt.this.clientName, response,
-//							byteArray, request.getUri());
-//				}
-//				return new RibbonResponse(request.getUri(), response);
-//			}
-//		}, new RibbonRecoveryCallback<RibbonResponse, Response>() {
-//			@Override
-//			protected RibbonResponse createResponse(Response response, URI uri) {
-//				return new RibbonResponse(uri, response);
-//			}
-//		});
-		return null;
+	public CompletableFuture<RibbonResponse> executeAsync(RibbonRequest request, IClientConfig configOverride) {
+		CompletableFuture<RibbonResponse> result = new CompletableFuture<RibbonResponse>();
+		RetryState state = new RetryState(request, configOverride);
+		try {
+			state.server = getServerFromLoadBalancer(request.getUri(), request.getLoadBalancerKey());
+		} catch (ClientException e) {
+			result.completeExceptionally(e);
+			return result;
+		}
+		result.whenComplete((response, e) -> {
+			CompletableFuture<RibbonResponse> attempt = state.attempt;
+			if (result.isCancelled() && attempt != null) {
+				attempt.cancel(false);
+			}
+		});
+		attemptAsync(state, configOverride, result);
+		return result;
+	}
+
+	private void attemptAsync(RetryState state, IClientConfig configOverride, CompletableFuture<RibbonResponse> result) {
+		if (result.isDone()) {
+			return;
+		}
+		CompletableFuture<RibbonResponse> attempt = executeOnServerAsync(state.request, state.server, configOverride);
+		state.attempt = attempt;
+		//发出请求的同时结果被取消
+		if (result.isCancelled()) {
+			attempt.cancel(false);
+		}
+		attempt.whenComplete((response, e) -> {
+			Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+			if (!isRetriable(state.request, response, cause) || !state.prepareRetry()) {
+				if (cause != null) {
+					result.completeExceptionally(cause);
+					return;
+				}
+				if (response.isSuccess()) {
+					this.retryBudget.deposit();
+				}
+				result.complete(response);
+				return;
+			}
+			closeQuietly(response);
+			TIMER.schedule(() -> DISPATCHER.execute(() -> attemptAsync(state, configOverride, result)),
+					state.backoffMillis(), TimeUnit.MILLISECONDS);
+		});
+	}
+
+	//请求失败时是否可以重试：请求没有发出（建立连接失败）时总是可以重试，请求已经发出时只重试幂等的方法
+	//调用方取消的请求以及4xx响应不重试
+	private boolean isRetriable(RibbonRequest request, RibbonResponse response, Throwable e) {
+		if (e instanceof CancellationException) {
+			return false;
+		}
+		if (e == null && response.toResponse().status() < 500) {
+			return false;
+		}
+		RpcMethodDescriptor descriptor = RpcMethodDescriptor.get(request.headers());
+		boolean notSent = descriptor != null && descriptor.getProtocol() == ProtocolType.SOCKET
+				? response != null && response.toResponse().status() == SocketClient.NOT_SENT_STATUS
+				: findCause(e, ConnectException.class);
+		if (notSent) {
+			return true;
+		}
+		if (this.clientConfig.get(CommonClientConfigKey.OkToRetryOnAllOperations, false)) {
+			return true;
+		}
+		return descriptor != null ? descriptor.isIdempotent() : "GET".equals(request.method());
+	}
+
+	private static boolean findCause(Throwable t, Class<? extends Throwable> type) {
+		for (; t != null; t = t.getCause()) {
+			if (type.isInstance(t)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	//放弃失败的响应，释放响应的包体
+	private static void closeQuietly(RibbonResponse response) {
+		if (response == null) {
+			return;
+		}
+		try {
+			response.close();
+		} catch (IOException e) {
+			//ignore
+		}
+	}
+
+	public RetryBudget getRetryBudget() {
+		return this.retryBudget;
 	}
 
 	@Override
@@ -127,4 +230,67 @@ public class RetryableFeignLoadBalancerExt extends FeignLoadBalancerExt implemen
 		return new RibbonLoadBalancerClient.RibbonServer(serviceId,
 				this.getLoadBalancer().chooseServer(serviceId));
 	}
+
+	//一次请求的重试状态：先在同一个Server上重试MaxAutoRetries次，再换到其他的Server，最多换MaxAutoRetriesNextServer次
+	private class RetryState {
+
+		private final RibbonRequest request;
+		private final int maxRetriesOnSameServer;
+		private final int maxRetriesOnNextServer;
+		private volatile Server server;
+		//正在进行的请求，结果被取消时一起取消
+		private volatile CompletableFuture<RibbonResponse> attempt;
+		private int sameServerRetries;
+		private int nextServerRetries;
+		private int retries;
+
+		RetryState(RibbonRequest request, IClientConfig requestConfig) {
+			this.request = request;
+			this.maxRetriesOnSameServer = getMaxRetriesOnSameServer(requestConfig);
+			this.maxRetriesOnNextServer = getMaxRetriesOnNextServer(requestConfig);
+		}
+
+		//请求失败之后，截止时间没有到期，并且重试次数以及重试预算都允许时，选择重试的Server并返回true
+		boolean prepareRetry() {
+			if (this.request.isExpired()) {
+				return false;
+			}
+			boolean nextServer;
+			if (this.sameServerRetries < this.maxRetriesOnSameServer) {
+				nextServer = false;
+			} else if (this.nextServerRetries < this.maxRetriesOnNextServer) {
+				nextServer = true;
+			} else {
+				return false;
+			}
+			if (!RetryableFeignLoadBalancerExt.this.retryBudget.tryWithdraw()) {
+				LOGGER.debug("Retry budget of client " + getClientName() + " is exhausted, give up retrying " + this.request.getUri());
+				return false;
+			}
+			if (nextServer) {
+				this.nextServerRetries++;
+				this.sameServerRetries = 0;
+				Server other = chooseOtherServer(this.request, this.server);
+				if (other != null) {
+					this.server = other;
+				}
+			} else {
+				this.sameServerRetries++;
+			}
+			this.retries++;
+			return true;
+		}
+
+		//带随机抖动的指数退避（Full Jitter）：在[0, min(RetryMaxBackoff, RetryBackoff * 2^(重试次数 - 1))]中随机选择
+		//有截止时间时，退避的时间不超过剩余时间的一半，保证退避之后还有时间发送请求
+		long backoffMillis() {
+			long bound = Math.min(RetryableFeignLoadBalancerExt.this.maxBackoffMillis,
+					RetryableFeignLoadBalancerExt.this.backoffMillis << Math.min(this.retries - 1, 20));
+			RpcDeadline deadline = this.request.getDeadline();
+			if (deadline != null) {
+				bound = Math.min(bound, Math.max(deadline.remainingMillis(), 0) / 2);
+			}
+			return bound > 0 ? ThreadLocalRandom.current().nextLong(bound + 1) : 0;
+		}
+	}
 }
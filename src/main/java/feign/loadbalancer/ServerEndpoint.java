@@ -0,0 +1,96 @@
+package feign.loadbalancer;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.loadbalancer.Server;
+import com.netflix.niws.loadbalancer.DiscoveryEnabledServer;
+
+import feign.client.socket.SocketRoute;
+import feign.enumerate.ProtocolType;
+
+//Server的端点信息：各个协议的端口、路由以及重建之后的URI，由ServerEndpointCache创建
+//端口只在创建时从Eureka的MetaData中解析一次，Server的InstanceInfo变化时由ServerEndpointCache重新创建
+public final class ServerEndpoint {
+
+	//每个Server缓存的URI的最大个数，通常等于客户端的方法个数
+	private static final int MAX_CACHED_URIS = 256;
+
+	private final Server server;
+
+	//创建时Server的InstanceInfo，InstanceInfo变化时端点失效；不是DiscoveryEnabledServer时为null
+	private final InstanceInfo instanceInfo;
+
+	//各个协议的端口以及路由，按照ProtocolType的顺序保存
+	private final int[] ports;
+	private final SocketRoute[] routes;
+
+	//重建之后的URI，key是去掉服务名之后的URI
+	private final Map<URI, URI> uris = new ConcurrentHashMap<URI, URI>();
+
+	ServerEndpoint(Server server) {
+		this.server = server;
+		this.instanceInfo = server instanceof DiscoveryEnabledServer ? ((DiscoveryEnabledServer) server).getInstanceInfo() : null;
+		ProtocolType[] protocols = ProtocolType.values();
+		this.ports = new int[protocols.length];
+		this.routes = new SocketRoute[protocols.length];
+		if (this.instanceInfo != null) {
+			for (ProtocolType protocol : protocols) {
+				//MetaData中端口的格式错误时记为-1，只在使用该协议时抛出异常
+				try {
+					this.ports[protocol.ordinal()] = FeignLoadBalancerExt.getProtocolPort(server, protocol);
+					this.routes[protocol.ordinal()] = new SocketRoute(server.getHost(), this.ports[protocol.ordinal()]);
+				} catch (NumberFormatException e) {
+					this.ports[protocol.ordinal()] = -1;
+				}
+			}
+		}
+	}
+
+	//端点是否仍然与Server一致：Server的InstanceInfo没有变化
+	boolean matches(Server server) {
+		return server == this.server
+				|| (this.instanceInfo != null && server instanceof DiscoveryEnabledServer
+						&& ((DiscoveryEnabledServer) server).getInstanceInfo() == this.instanceInfo);
+	}
+
+	public Server getServer() {
+		return server;
+	}
+
+	//获取指定协议的端口，Server没有MetaData时抛出异常
+	public int getPort(ProtocolType protocol) {
+		if (this.instanceInfo == null) {
+			throw new RuntimeException("Can not get " + protocol.getName() + " port from server " + this.server + " without MetaData");
+		}
+		int port = this.ports[protocol.ordinal()];
+		if (port < 0) {
+			throw new RuntimeException("Invalid " + protocol.getName() + "-port in MetaData of server " + this.server);
+		}
+		return port;
+	}
+
+	//获取指定协议的路由（host:port）
+	public SocketRoute getRoute(ProtocolType protocol) {
+		getPort(protocol);
+		return this.routes[protocol.ordinal()];
+	}
+
+	//获取指定协议的路由，Server没有MetaData或者端口格式错误时返回null
+	SocketRoute findRoute(ProtocolType protocol) {
+		return this.instanceInfo != null ? this.routes[protocol.ordinal()] : null;
+	}
+
+	URI getUri(URI original) {
+		return this.uris.get(original);
+	}
+
+	void putUri(URI original, URI uri) {
+		if (this.uris.size() < MAX_CACHED_URIS) {
+			this.uris.put(original, uri);
+		}
+	}
+
+}
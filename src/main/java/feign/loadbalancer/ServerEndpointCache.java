@@ -0,0 +1,39 @@
+package feign.loadbalancer;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.netflix.loadbalancer.BaseLoadBalancer;
+import com.netflix.loadbalancer.ILoadBalancer;
+import com.netflix.loadbalancer.Server;
+
+//按照Server缓存ServerEndpoint，每次调用不再读取Eureka的MetaData、解析端口以及重建URI
+//失效的时机：
+//1、Ribbon的Server列表变化时，移除已经不在列表中的Server
+//2、Server的InstanceInfo变化时（Eureka中实例的MetaData更新之后，Server列表刷新得到新的InstanceInfo），重新创建端点
+public class ServerEndpointCache {
+
+	private final Map<Server, ServerEndpoint> endpoints = new ConcurrentHashMap<Server, ServerEndpoint>();
+
+	public ServerEndpointCache(ILoadBalancer lb) {
+		if (lb instanceof BaseLoadBalancer) {
+			((BaseLoadBalancer) lb).addServerListChangeListener((oldList, newList) -> serverListChanged(newList));
+		}
+	}
+
+	public ServerEndpoint get(Server server) {
+		ServerEndpoint endpoint = this.endpoints.get(server);
+		if (endpoint == null || !endpoint.matches(server)) {
+			endpoint = new ServerEndpoint(server);
+			this.endpoints.put(server, endpoint);
+		}
+		return endpoint;
+	}
+
+	private void serverListChanged(List<Server> servers) {
+		this.endpoints.keySet().retainAll(new HashSet<Server>(servers));
+	}
+
+}
@@ -0,0 +1,58 @@
+package feign.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+//RetryBudget以及HedgePolicy共用的令牌桶：每次存入固定比例的令牌，每次取出一个令牌，令牌最多累积maxTokens个
+//令牌按照TOKEN_UNIT的精度保存，每次存入的令牌可以是小数，例如：每个请求存入0.1个令牌
+final class TokenBucket {
+
+	//令牌的精度：一个令牌 = TOKEN_UNIT
+	static final long TOKEN_UNIT = 1000;
+
+	//每次存入的令牌（按照TOKEN_UNIT的精度）
+	private final long tokensPerDeposit;
+
+	private final long maxTokens;
+
+	private final AtomicLong tokens;
+
+	TokenBucket(double tokensPerDeposit, long initialTokens, long maxTokens) {
+		this.tokensPerDeposit = Math.round(tokensPerDeposit * TOKEN_UNIT);
+		this.maxTokens = maxTokens * TOKEN_UNIT;
+		this.tokens = new AtomicLong(Math.min(initialTokens, maxTokens) * TOKEN_UNIT);
+	}
+
+	//存入tokensPerDeposit个令牌，已经达到上限时不再增加
+	void deposit() {
+		long current;
+		do {
+			current = this.tokens.get();
+			if (current >= this.maxTokens) {
+				return;
+			}
+		} while (!this.tokens.compareAndSet(current, Math.min(current + this.tokensPerDeposit, this.maxTokens)));
+	}
+
+	//尝试取出一个令牌
+	boolean tryWithdraw() {
+		long current;
+		do {
+			current = this.tokens.get();
+			if (current < TOKEN_UNIT) {
+				return false;
+			}
+		} while (!this.tokens.compareAndSet(current, current - TOKEN_UNIT));
+		return true;
+	}
+
+	//当前可以取出的令牌个数
+	long getAvailable() {
+		return this.tokens.get() / TOKEN_UNIT;
+	}
+
+	//每次存入的令牌个数
+	double getTokensPerDeposit() {
+		return (double) this.tokensPerDeposit / TOKEN_UNIT;
+	}
+
+}
@@ -0,0 +1,98 @@
+package feign.packet;
+
+import java.util.concurrent.TimeUnit;
+
+//RPC请求的截止时间，按照请求包中的timeout在服务端收到请求时计算
+//SocketServer在执行方法时将截止时间绑定到业务线程上，方法中通过feign-x发起的嵌套调用只使用剩余的时间，
+//调用链上各层的超时不会超过最外层调用方的超时
+//客户端发送FLAG_CANCEL取消请求之后，截止时间立即到期，方法可以通过RpcDeadline.current().isExpired()提前结束，
+//嵌套调用也不会再发出
+public final class RpcDeadline {
+
+	//当前线程上正在处理的请求的截止时间
+	private static final ThreadLocal<RpcDeadline> CURRENT = new ThreadLocal<RpcDeadline>();
+
+	//截止时间（System.nanoTime）
+	private final long deadlineNanos;
+
+	//是否有截止时间，请求包中没有timeout时只能被取消
+	private final boolean bounded;
+
+	//请求是否已经被客户端取消
+	private volatile boolean cancelled = false;
+
+	private RpcDeadline(long deadlineNanos, boolean bounded) {
+		this.deadlineNanos = deadlineNanos;
+		this.bounded = bounded;
+	}
+
+	//从现在开始，经过timeout毫秒之后的截止时间
+	public static RpcDeadline after(long timeoutMillis) {
+		return new RpcDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis), true);
+	}
+
+	//没有截止时间，只在被取消时到期
+	public static RpcDeadline unbounded() {
+		return new RpcDeadline(0, false);
+	}
+
+	//当前线程上的截止时间，没有时返回null
+	public static RpcDeadline current() {
+		return CURRENT.get();
+	}
+
+	//将截止时间绑定到当前线程上，返回之前的截止时间，调用方在finally中通过restore恢复
+	public static RpcDeadline attach(RpcDeadline deadline) {
+		RpcDeadline previous = CURRENT.get();
+		if (deadline != null) {
+			CURRENT.set(deadline);
+		} else {
+			CURRENT.remove();
+		}
+		return previous;
+	}
+
+	public static void restore(RpcDeadline previous) {
+		attach(previous);
+	}
+
+	//发起调用时使用的超时时间：readTimeout与当前线程截止时间的剩余时间中较小的一个，已经超过截止时间时返回0
+	public static int timeout(int readTimeout) {
+		RpcDeadline deadline = CURRENT.get();
+		if (deadline == null) {
+			return readTimeout;
+		}
+		long remaining = deadline.remainingMillis();
+		if (remaining <= 0) {
+			return 0;
+		}
+		return readTimeout > 0 ? (int) Math.min(readTimeout, remaining) : (int) Math.min(Integer.MAX_VALUE, remaining);
+	}
+
+	//剩余的时间（毫秒），已经超过截止时间或者被取消时小于等于0，没有截止时间时为Long.MAX_VALUE
+	public long remainingMillis() {
+		if (this.cancelled) {
+			return 0;
+		}
+		return this.bounded ? TimeUnit.NANOSECONDS.toMillis(this.deadlineNanos - System.nanoTime()) : Long.MAX_VALUE;
+	}
+
+	public boolean isExpired() {
+		return this.cancelled || (this.bounded && this.deadlineNanos - System.nanoTime() <= 0);
+	}
+
+	//客户端取消了请求，截止时间立即到期
+	public void cancel() {
+		this.cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return this.cancelled;
+	}
+
+	@Override
+	public String toString() {
+		return this.bounded || this.cancelled ? "RpcDeadline{remaining=" + remainingMillis() + "ms}" : "RpcDeadline{unbounded}";
+	}
+
+}
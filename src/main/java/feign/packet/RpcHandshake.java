@@ -0,0 +1,148 @@
+package feign.packet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//连接建立之后，客户端与服务端之间的握手信息，通过设置了RpcPacketCodec.FLAG_HANDSHAKE的帧传输
+//1、客户端发送协议版本、支持的序列化器以及压缩算法
+//2、服务端返回自己的协议版本、双方都支持的序列化器和压缩算法、方法签名与方法ID的对应关系以及头信息的字符串字典
+//3、协议版本不一致时，客户端在发送任何请求之前关闭连接；版本一致时，双方按照协商结果生成相同的RpcSession
+public class RpcHandshake {
+
+	//握手协议的版本，不兼容的修改需要增加版本号
+	public static final int PROTOCOL_VERSION = 1;
+
+	private final int version;
+
+	//支持的序列化器
+	private final List<String> serializers;
+
+	//支持的压缩算法
+	private final List<String> compressions;
+
+	//方法签名与方法ID的对应关系，只在服务端的响应中
+	private final Map<String, Integer> methodIds;
+
+	//头信息的字符串字典，字典ID是下标 + 1，只在服务端的响应中
+	private final List<String> dictionary;
+
+	public RpcHandshake(int version, Collection<String> serializers, Collection<String> compressions,
+			Map<String, Integer> methodIds, List<String> dictionary) {
+		this.version = version;
+		this.serializers = serializers != null ? new ArrayList<String>(serializers) : Collections.<String>emptyList();
+		this.compressions = compressions != null ? new ArrayList<String>(compressions) : Collections.<String>emptyList();
+		this.methodIds = methodIds != null ? methodIds : Collections.<String, Integer>emptyMap();
+		this.dictionary = dictionary != null ? dictionary : Collections.<String>emptyList();
+	}
+
+	//客户端发送的握手请求
+	public static RpcHandshake request(Collection<String> serializers, Collection<String> compressions) {
+		return new RpcHandshake(PROTOCOL_VERSION, serializers, compressions, null, null);
+	}
+
+	//服务端根据客户端的握手请求生成握手响应，版本不一致时只返回服务端的版本
+	public static RpcHandshake accept(RpcHandshake request, Collection<String> serializers, Collection<String> compressions,
+			Map<String, Integer> methodIds, List<String> dictionary) {
+		if (request.getVersion() != PROTOCOL_VERSION) {
+			return new RpcHandshake(PROTOCOL_VERSION, null, null, null, null);
+		}
+		List<String> acceptedSerializers = new ArrayList<String>(serializers);
+		acceptedSerializers.retainAll(request.getSerializers());
+		List<String> acceptedCompressions = new ArrayList<String>(compressions);
+		acceptedCompressions.retainAll(request.getCompressions());
+		return new RpcHandshake(PROTOCOL_VERSION, acceptedSerializers, acceptedCompressions, methodIds, dictionary);
+	}
+
+	//按照握手响应生成连接上使用的RpcSession
+	public RpcSession toSession() {
+		return new RpcSession(this.dictionary, this.compressions.contains(RpcPacketCodec.COMPRESSION_DEFLATE), this.serializers);
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public List<String> getSerializers() {
+		return serializers;
+	}
+
+	public List<String> getCompressions() {
+		return compressions;
+	}
+
+	public Map<String, Integer> getMethodIds() {
+		return methodIds;
+	}
+
+	public List<String> getDictionary() {
+		return dictionary;
+	}
+
+	//格式为：版本 + 序列化器列表 + 压缩算法列表 + 方法个数以及每个方法的ID和签名 + 字典
+	public byte[] encode() throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream(64 + this.methodIds.size() * 64 + this.dictionary.size() * 16);
+		DataOutputStream out = new DataOutputStream(bos);
+		out.writeInt(this.version);
+		writeList(out, this.serializers);
+		writeList(out, this.compressions);
+		out.writeInt(this.methodIds.size());
+		for (Map.Entry<String, Integer> entry : this.methodIds.entrySet()) {
+			out.writeInt(entry.getValue());
+			out.writeUTF(entry.getKey());
+		}
+		writeList(out, this.dictionary);
+		out.flush();
+		return bos.toByteArray();
+	}
+
+	public static RpcHandshake decode(byte[] bytes) throws IOException {
+		if (bytes == null || bytes.length < 4) {
+			throw new IOException("Invalid rpc handshake, length " + (bytes != null ? bytes.length : 0));
+		}
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		int version = in.readInt();
+		if (version != PROTOCOL_VERSION) {
+			//不同版本的握手格式可能不同，只解析版本号
+			return new RpcHandshake(version, null, null, null, null);
+		}
+		List<String> serializers = readList(in);
+		List<String> compressions = readList(in);
+		int count = in.readInt();
+		if (count < 0 || count > bytes.length) {
+			throw new IOException("Invalid rpc handshake, method count " + count);
+		}
+		Map<String, Integer> methodIds = new HashMap<String, Integer>(count * 2);
+		for (int i = 0; i < count; i++) {
+			int id = in.readInt();
+			methodIds.put(in.readUTF(), id);
+		}
+		List<String> dictionary = readList(in);
+		return new RpcHandshake(version, serializers, compressions, Collections.unmodifiableMap(methodIds), dictionary);
+	}
+
+	private static void writeList(DataOutputStream out, List<String> values) throws IOException {
+		out.writeShort(values.size());
+		for (String value : values) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static List<String> readList(DataInputStream in) throws IOException {
+		int count = in.readUnsignedShort();
+		List<String> values = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++) {
+			values.add(in.readUTF());
+		}
+		return values;
+	}
+
+}
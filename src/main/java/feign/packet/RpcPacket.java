@@ -9,31 +9,77 @@ public class RpcPacket implements IPacket,Serializable {
 	 * 
 	 */
 	private static final long serialVersionUID = 6023499201608468129L;
+	//请求的ID，同一条连接上的多个请求通过requestId对应各自的响应
+	private long requestId;
+	//帧的标志位，例如：RpcPacketCodec.FLAG_RESPONSE
+	private byte flags;
+	//方法的ID，为0时按照invokeMethod路由
+	private int methodId;
 	//需要请求的方法名称，以全限定名的方式
 	private String invokeMethod = "";
 	//请求的头信息
 	private Map<String, Collection<String>> headers;
-	//需要请求方法的返回类型
+	//请求的剩余时间（毫秒），由RpcPacketCodec写入X-RPC-TIMEOUT头信息，0表示没有限制
+	private int timeout;
+	//需要请求方法的返回类型，只在本地使用，不会写入帧中
 	private Class<?> returnType = null;
-	//请求方法中包体内容
-	private PpcPacketBody packetBody = null;
+	//包体内容：请求包中是序列化后的方法参数，响应包中是序列化后的方法返回值，序列化方式由X-RPC-SERIALIZER头信息指定
+	//包体在调用方编码一次之后原样传输，由RpcPacketCodec直接写入帧中
+	private transient byte[] payload = null;
 
 	public RpcPacket(String invokeMethod,Map<String, Collection<String>> headers) {
 		this.invokeMethod = invokeMethod;
 		this.headers = headers;
 	}
 	
-	public RpcPacket(String invokeMethod,Map<String, Collection<String>> headers,PpcPacketBody packetBody) {
+	public RpcPacket(String invokeMethod,Map<String, Collection<String>> headers,byte[] payload) {
 		this.invokeMethod = invokeMethod;
 		this.headers = headers;
-		this.setPacketBody(packetBody);
+		this.setPayload(payload);
 	}
 	
-	public RpcPacket(String invokeMethod,Map<String, Collection<String>> headers,Class<?> returnType,PpcPacketBody packetBody) {
+	public RpcPacket(String invokeMethod,Map<String, Collection<String>> headers,Class<?> returnType,byte[] payload) {
 		this.invokeMethod = invokeMethod;
 		this.headers = headers;
 		this.returnType = returnType;
-		this.setPacketBody(packetBody);
+		this.setPayload(payload);
+	}
+
+	public long getRequestId() {
+		return requestId;
+	}
+
+	public void setRequestId(long requestId) {
+		this.requestId = requestId;
+	}
+
+	public byte getFlags() {
+		return flags;
+	}
+
+	public void setFlags(byte flags) {
+		this.flags = flags;
+	}
+
+	//判断是否设置了指定的标志位
+	public boolean hasFlag(byte flag) {
+		return (this.flags & flag) != 0;
+	}
+
+	public int getMethodId() {
+		return methodId;
+	}
+
+	public void setMethodId(int methodId) {
+		this.methodId = methodId;
+	}
+
+	public int getTimeout() {
+		return timeout;
+	}
+
+	public void setTimeout(int timeout) {
+		this.timeout = timeout;
 	}
 
 	public String getInvokeMethod() {
@@ -45,12 +91,12 @@ public class RpcPacket implements IPacket,Serializable {
 		this.invokeMethod = invokeMethod;
 	}
 
-	public PpcPacketBody getPacketBody() {
-		return packetBody;
+	public byte[] getPayload() {
+		return payload;
 	}
 
-	public void setPacketBody(PpcPacketBody packetBody) {
-		this.packetBody = packetBody;
+	public void setPayload(byte[] payload) {
+		this.payload = payload;
 	}
 
 	public Class getReturnType() {
@@ -0,0 +1,363 @@
+package feign.packet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+//RpcPacket与网络上传输的帧之间的编解码
+//帧的格式为：4个字节的长度前缀 + 固定长度的包头 + 头信息块 + 包体
+//1、固定包头（24个字节）：
+//   magic(2) + version(1) + flags(1) + requestId(8) + methodId(4) + 头信息块长度(4) + 包体长度(4)
+//2、头信息块：方法名 + 头信息的个数 + 每个头信息的名称、值的个数以及各个值，字符串都是2个字节的长度 + UTF-8编码
+//   methodId不为0时，不再写入方法名
+//   请求包的timeout大于0时，写入X-RPC-TIMEOUT头信息，解码时还原成timeout，不放入头信息的Map中
+//   握手之后，RpcSession字典中的字符串只写入2个字节：最高位为1，其余15位是字典ID
+//3、包体（payload）已经由调用方通过Serializer编码，直接写入帧中
+//   握手时双方都支持压缩，并且包体超过COMPRESSION_THRESHOLD时，写入4个字节的原始长度 + deflate压缩后的包体，并设置FLAG_COMPRESSED
+//服务端读取固定包头之后，就可以校验帧的合法性，并在不解析包体的情况下进行路由
+public class RpcPacketCodec {
+
+	//默认的单个帧的最大长度：16MB
+	public static final int DEFAULT_MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+	//帧的魔数，用来快速识别非法的连接
+	public static final short MAGIC = (short) 0xFE1F;
+
+	//帧格式的版本号
+	public static final byte VERSION = 1;
+
+	//固定包头的长度
+	public static final int FIXED_HEADER_LENGTH = 24;
+
+	//flags：响应包
+	public static final byte FLAG_RESPONSE = 0x01;
+
+	//flags：握手包，包体是RpcHandshake
+	public static final byte FLAG_HANDSHAKE = 0x02;
+
+	//flags：包体经过了压缩
+	public static final byte FLAG_COMPRESSED = 0x04;
+
+	//flags：服务端过载，拒绝执行该请求的响应包，没有头信息以及包体，客户端可以立即在其他Server上重试
+	public static final byte FLAG_BUSY = 0x08;
+
+	//flags：客户端已经放弃等待的请求（读取超时、调用方取消），没有头信息以及包体，requestId是被取消的请求
+	//服务端丢弃还在排队的请求，不再写回正在执行的请求的响应
+	public static final byte FLAG_CANCEL = 0x10;
+
+	//flags：服务端执行请求失败的响应包，包体是按照X-RPC-SERIALIZER序列化后的错误信息（String）
+	public static final byte FLAG_ERROR = 0x20;
+
+	//支持的压缩算法
+	public static final String COMPRESSION_DEFLATE = "deflate";
+
+	//包体超过该长度时才压缩
+	public static final int COMPRESSION_THRESHOLD = 1024;
+
+	//请求剩余时间（毫秒）的头信息名称，服务端据此丢弃调用方已经放弃的请求
+	public static final String TIMEOUT_HEADER = "X-RPC-TIMEOUT";
+
+	//只在本地使用的头信息名称的前缀，这些头信息不会写入帧中
+	public static final String LOCAL_HEADER_PREFIX = "X-RPC-LOCAL-";
+
+	//字典的最大长度，字典ID只有15位
+	public static final int MAX_DICTIONARY_SIZE = 0x7FFF;
+
+	//字符串的最大长度，长度的最高位用来标识字典ID
+	private static final int MAX_STRING_LENGTH = 0x7FFF;
+
+	private static final int DICTIONARY_REFERENCE = 0x8000;
+
+	private static final byte[] EMPTY_BYTES = new byte[0];
+
+	private RpcPacketCodec() {
+	}
+
+	//将RpcPacket编码成包含长度前缀的帧，不使用字典和压缩
+	public static ByteBuffer encode(RpcPacket packet) throws IOException {
+		return encode(packet, RpcSession.NONE);
+	}
+
+	//按照连接握手时协商的RpcSession，将RpcPacket编码成包含长度前缀的帧
+	public static ByteBuffer encode(RpcPacket packet, RpcSession session) throws IOException {
+		byte[] method = packet.getMethodId() != 0 ? EMPTY_BYTES : toBytes(packet.getInvokeMethod());
+		Map<String, Collection<String>> headers = packet.getHeaders();
+		//先将头信息中不在字典中的字符串编码，以便计算头信息块的长度
+		List<byte[]> headerBytes = new ArrayList<byte[]>();
+		int headerLength = 2 + method.length + 2;
+		int headerCount = 0;
+		String timeout = packet.getTimeout() > 0 ? Integer.toString(packet.getTimeout()) : null;
+		if (timeout != null) {
+			headerCount++;
+			headerLength += encodedLength(TIMEOUT_HEADER, session, headerBytes) + 2 + encodedLength(timeout, session, headerBytes);
+		}
+		if (headers != null) {
+			if (headers.size() > MAX_STRING_LENGTH) {
+				throw new IOException("Too many headers in rpc packet: " + headers.size());
+			}
+			for (Map.Entry<String, Collection<String>> header : headers.entrySet()) {
+				if (isSkippedHeader(header.getKey(), timeout)) {
+					continue;
+				}
+				headerCount++;
+				Collection<String> values = header.getValue();
+				int valueCount = values != null ? values.size() : 0;
+				if (valueCount > MAX_STRING_LENGTH) {
+					throw new IOException("Too many values of header " + header.getKey() + ": " + valueCount);
+				}
+				headerLength += encodedLength(header.getKey(), session, headerBytes) + 2;
+				if (values != null) {
+					for (String value : values) {
+						headerLength += encodedLength(value, session, headerBytes);
+					}
+				}
+			}
+		}
+		byte flags = packet.getFlags();
+		byte[] payload = packet.getPayload();
+		if (payload != null && session.isCompression() && payload.length >= COMPRESSION_THRESHOLD) {
+			byte[] compressed = compress(payload);
+			if (compressed != null) {
+				payload = compressed;
+				flags |= FLAG_COMPRESSED;
+			}
+		}
+		int payloadLength = payload != null ? payload.length : 0;
+
+		ByteBuffer frame = ByteBuffer.allocate(4 + FIXED_HEADER_LENGTH + headerLength + payloadLength);
+		frame.putInt(FIXED_HEADER_LENGTH + headerLength + payloadLength);
+		frame.putShort(MAGIC);
+		frame.put(VERSION);
+		frame.put(flags);
+		frame.putLong(packet.getRequestId());
+		frame.putInt(packet.getMethodId());
+		frame.putInt(headerLength);
+		frame.putInt(payloadLength);
+
+		putString(frame, method);
+		frame.putShort((short) headerCount);
+		int index = 0;
+		if (timeout != null) {
+			index = putString(frame, TIMEOUT_HEADER, session, headerBytes, index);
+			frame.putShort((short) 1);
+			index = putString(frame, timeout, session, headerBytes, index);
+		}
+		if (headers != null) {
+			for (Map.Entry<String, Collection<String>> header : headers.entrySet()) {
+				if (isSkippedHeader(header.getKey(), timeout)) {
+					continue;
+				}
+				Collection<String> values = header.getValue();
+				index = putString(frame, header.getKey(), session, headerBytes, index);
+				frame.putShort((short) (values != null ? values.size() : 0));
+				if (values != null) {
+					for (String value : values) {
+						index = putString(frame, value, session, headerBytes, index);
+					}
+				}
+			}
+		}
+		if (payload != null) {
+			frame.put(payload);
+		}
+		frame.flip();
+		return frame;
+	}
+
+	//将不包含长度前缀的帧解码成RpcPacket，不使用字典和压缩
+	public static RpcPacket decode(ByteBuffer frame) throws IOException {
+		return decode(frame, RpcSession.NONE);
+	}
+
+	//按照连接握手时协商的RpcSession，将不包含长度前缀的帧解码成RpcPacket
+	public static RpcPacket decode(ByteBuffer frame, RpcSession session) throws IOException {
+		if (frame.remaining() < FIXED_HEADER_LENGTH) {
+			throw new IOException("Invalid rpc packet, frame length " + frame.remaining() + " is less than the fixed header");
+		}
+		short magic = frame.getShort();
+		if (magic != MAGIC) {
+			throw new IOException("Invalid rpc packet magic 0x" + Integer.toHexString(magic & 0xFFFF));
+		}
+		byte version = frame.get();
+		if (version != VERSION) {
+			throw new IOException("Unsupported rpc packet version " + version);
+		}
+		byte flags = frame.get();
+		long requestId = frame.getLong();
+		int methodId = frame.getInt();
+		int headerLength = frame.getInt();
+		int payloadLength = frame.getInt();
+		if (headerLength < 0 || payloadLength < 0 || (long) headerLength + payloadLength != frame.remaining()) {
+			throw new IOException("Invalid rpc packet, header length " + headerLength + ", payload length "
+					+ payloadLength + ", remaining " + frame.remaining());
+		}
+		int payloadStart = frame.position() + headerLength;
+		String method;
+		Map<String, Collection<String>> headers;
+		int timeout = 0;
+		try {
+			method = getString(frame, session);
+			int headerCount = frame.getShort() & 0xFFFF;
+			headers = new HashMap<String, Collection<String>>(headerCount * 2);
+			for (int i = 0; i < headerCount; i++) {
+				String name = getString(frame, session);
+				int valueCount = frame.getShort() & 0xFFFF;
+				List<String> values = new ArrayList<String>(valueCount);
+				for (int j = 0; j < valueCount; j++) {
+					values.add(getString(frame, session));
+				}
+				if (TIMEOUT_HEADER.equals(name) && valueCount == 1) {
+					timeout = Integer.parseInt(values.get(0));
+					continue;
+				}
+				headers.put(name, values);
+			}
+		} catch (RuntimeException e) {
+			throw new IOException("Invalid rpc packet header block! " + e.getMessage(), e);
+		}
+		if (frame.position() != payloadStart) {
+			throw new IOException("Invalid rpc packet, header block length mismatch " + headerLength);
+		}
+		byte[] payload = new byte[payloadLength];
+		frame.get(payload);
+		if ((flags & FLAG_COMPRESSED) != 0) {
+			payload = decompress(payload);
+			flags &= ~FLAG_COMPRESSED;
+		}
+
+		RpcPacket packet = new RpcPacket(method, headers, payload);
+		packet.setRequestId(requestId);
+		packet.setMethodId(methodId);
+		packet.setFlags(flags);
+		packet.setTimeout(timeout);
+		return packet;
+	}
+
+	public static RpcPacket decode(byte[] bytes) throws IOException {
+		return decode(ByteBuffer.wrap(bytes));
+	}
+
+	private static boolean isLocalHeader(String name) {
+		return name != null && name.startsWith(LOCAL_HEADER_PREFIX);
+	}
+
+	//本地头信息不写入帧中，已经按照timeout写入的X-RPC-TIMEOUT不重复写入
+	private static boolean isSkippedHeader(String name, String timeout) {
+		return isLocalHeader(name) || (timeout != null && TIMEOUT_HEADER.equals(name));
+	}
+
+	private static byte[] toBytes(String value) throws IOException {
+		byte[] bytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : EMPTY_BYTES;
+		if (bytes.length > MAX_STRING_LENGTH) {
+			throw new IOException("String in rpc packet header is too long: " + bytes.length);
+		}
+		return bytes;
+	}
+
+	//字符串在头信息块中的长度，不在字典中的字符串编码后放入literals
+	private static int encodedLength(String value, RpcSession session, List<byte[]> literals) throws IOException {
+		if (session.getDictionaryId(value) != 0) {
+			return 2;
+		}
+		byte[] bytes = toBytes(value);
+		literals.add(bytes);
+		return 2 + bytes.length;
+	}
+
+	//写入字典ID或者编码后的字符串，返回下一个字符串在literals中的下标
+	private static int putString(ByteBuffer buffer, String value, RpcSession session, List<byte[]> literals, int index) {
+		int id = session.getDictionaryId(value);
+		if (id != 0) {
+			buffer.putShort((short) (DICTIONARY_REFERENCE | id));
+			return index;
+		}
+		putString(buffer, literals.get(index));
+		return index + 1;
+	}
+
+	private static void putString(ByteBuffer buffer, byte[] bytes) {
+		buffer.putShort((short) bytes.length);
+		buffer.put(bytes);
+	}
+
+	private static String getString(ByteBuffer buffer, RpcSession session) {
+		int length = buffer.getShort() & 0xFFFF;
+		if ((length & DICTIONARY_REFERENCE) != 0) {
+			String value = session.getDictionaryValue(length & MAX_DICTIONARY_SIZE);
+			if (value == null) {
+				throw new IllegalArgumentException("unknown dictionary id " + (length & MAX_DICTIONARY_SIZE));
+			}
+			return value;
+		}
+		if (length > buffer.remaining()) {
+			throw new IllegalArgumentException("string length " + length + " exceeds the frame");
+		}
+		if (!buffer.hasArray()) {
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+		String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+		buffer.position(buffer.position() + length);
+		return value;
+	}
+
+	//压缩包体，压缩后没有变小时返回null
+	private static byte[] compress(byte[] payload) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(payload);
+			deflater.finish();
+			byte[] buffer = new byte[4 + payload.length];
+			ByteBuffer.wrap(buffer).putInt(payload.length);
+			int length = 4;
+			while (!deflater.finished() && length < buffer.length) {
+				length += deflater.deflate(buffer, length, buffer.length - length);
+			}
+			return deflater.finished() && length < payload.length ? Arrays.copyOf(buffer, length) : null;
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static byte[] decompress(byte[] payload) throws IOException {
+		if (payload.length < 4) {
+			throw new IOException("Invalid compressed rpc packet payload, length " + payload.length);
+		}
+		int length = ByteBuffer.wrap(payload).getInt();
+		if (length < 0 || length > DEFAULT_MAX_FRAME_LENGTH) {
+			throw new IOException("Invalid compressed rpc packet payload, original length " + length);
+		}
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(payload, 4, payload.length - 4);
+			byte[] bytes = new byte[length];
+			int read = 0;
+			while (read < length && !inflater.finished()) {
+				int count = inflater.inflate(bytes, read, length - read);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				read += count;
+			}
+			if (read != length || !inflater.finished()) {
+				throw new IOException("Invalid compressed rpc packet payload, expect " + length + " bytes but got " + read);
+			}
+			return bytes;
+		} catch (DataFormatException e) {
+			throw new IOException("Invalid compressed rpc packet payload! " + e.getMessage(), e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+}
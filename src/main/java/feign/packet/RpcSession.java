@@ -0,0 +1,63 @@
+package feign.packet;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//连接握手之后协商出的帧编码参数，由RpcPacketCodec在编解码时使用，连接上的两端各持有一份相同的RpcSession
+//1、字符串字典：头信息的名称以及常用的值（例如序列化器的名称），在帧中只写入2个字节的字典ID
+//2、压缩：双方都支持时，超过阈值的包体压缩之后传输
+//3、序列化器：服务端支持的序列化器，客户端在发送请求之前检查
+public class RpcSession {
+
+	//握手之前使用的RpcSession，不使用字典和压缩
+	public static final RpcSession NONE = new RpcSession(null, false, null);
+
+	//按照字典ID索引的字符串，下标0不使用
+	private final String[] dictionary;
+
+	private final Map<String, Integer> dictionaryIds;
+
+	private final boolean compression;
+
+	//对端支持的序列化器，为null表示未知，不做检查
+	private final Set<String> serializers;
+
+	public RpcSession(List<String> dictionary, boolean compression, Collection<String> serializers) {
+		int size = dictionary != null ? Math.min(dictionary.size(), RpcPacketCodec.MAX_DICTIONARY_SIZE) : 0;
+		this.dictionary = new String[size + 1];
+		Map<String, Integer> dictionaryIds = new HashMap<String, Integer>(size * 2);
+		for (int i = 0; i < size; i++) {
+			this.dictionary[i + 1] = dictionary.get(i);
+			dictionaryIds.put(dictionary.get(i), i + 1);
+		}
+		this.dictionaryIds = Collections.unmodifiableMap(dictionaryIds);
+		this.compression = compression;
+		this.serializers = serializers != null ? Collections.unmodifiableSet(new HashSet<String>(serializers)) : null;
+	}
+
+	//字符串的字典ID，不在字典中时返回0
+	public int getDictionaryId(String value) {
+		Integer id = this.dictionaryIds.get(value);
+		return id != null ? id : 0;
+	}
+
+	//根据字典ID获取字符串，不存在时返回null
+	public String getDictionaryValue(int id) {
+		return id > 0 && id < this.dictionary.length ? this.dictionary[id] : null;
+	}
+
+	public boolean isCompression() {
+		return compression;
+	}
+
+	//对端是否支持指定的序列化器，名称为空表示使用默认的序列化器
+	public boolean supportsSerializer(String serializer) {
+		return this.serializers == null || serializer == null || this.serializers.contains(serializer);
+	}
+
+}
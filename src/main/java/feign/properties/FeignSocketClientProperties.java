@@ -9,6 +9,9 @@ public class FeignSocketClientProperties {
 	public static final boolean DEFAULT_DISABLE_SSL_VALIDATION = false;
 	public static final int DEFAULT_MAX_CONNECTIONS = 200;
 	public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 50;
+	public static final int DEFAULT_MIN_IDLE_PER_ROUTE = 0;
+	public static final int DEFAULT_MAX_REQUESTS_PER_CONNECTION = 100;
+	public static final int DEFAULT_IO_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
 	public static final long DEFAULT_TIME_TO_LIVE = 900L;
 	public static final TimeUnit DEFAULT_TIME_TO_LIVE_UNIT = TimeUnit.SECONDS;
 	public static final boolean DEFAULT_FOLLOW_REDIRECTS = true;
@@ -19,6 +22,12 @@ public class FeignSocketClientProperties {
 	private boolean disableSslValidation = DEFAULT_DISABLE_SSL_VALIDATION;
 	private int maxConnections = DEFAULT_MAX_CONNECTIONS;
 	private int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+	//每个路由上保持的预热空闲连接数
+	private int minIdlePerRoute = DEFAULT_MIN_IDLE_PER_ROUTE;
+	//每条连接上同时进行的请求数，大于1时多个请求复用同一条连接，设置为1时每条连接同时只处理一个请求
+	private int maxRequestsPerConnection = DEFAULT_MAX_REQUESTS_PER_CONNECTION;
+	//连接池中负责网络读写的I/O线程数，所有连接平均分配到这些I/O线程上
+	private int ioThreads = DEFAULT_IO_THREADS;
 	private long timeToLive = DEFAULT_TIME_TO_LIVE;
 	private TimeUnit timeToLiveUnit = DEFAULT_TIME_TO_LIVE_UNIT;
 	private boolean followRedirects = DEFAULT_FOLLOW_REDIRECTS;
@@ -58,6 +67,30 @@ public class FeignSocketClientProperties {
 		this.maxConnectionsPerRoute = maxConnectionsPerRoute;
 	}
 
+	public int getMinIdlePerRoute() {
+		return minIdlePerRoute;
+	}
+
+	public void setMinIdlePerRoute(int minIdlePerRoute) {
+		this.minIdlePerRoute = minIdlePerRoute;
+	}
+
+	public int getMaxRequestsPerConnection() {
+		return maxRequestsPerConnection;
+	}
+
+	public void setMaxRequestsPerConnection(int maxRequestsPerConnection) {
+		this.maxRequestsPerConnection = maxRequestsPerConnection;
+	}
+
+	public int getIoThreads() {
+		return ioThreads;
+	}
+
+	public void setIoThreads(int ioThreads) {
+		this.ioThreads = ioThreads;
+	}
+
 	public long getTimeToLive() {
 		return timeToLive;
 	}
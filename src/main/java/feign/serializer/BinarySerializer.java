@@ -0,0 +1,750 @@
+package feign.serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+//紧凑的无Schema二进制序列化器
+//1、每个值以1个字节的类型标记开头，整数使用ZigZag + 变长编码，字符串使用UTF-8
+//2、对象只写入类名以及非static、非transient的字段值，同一个包中重复出现的类名只写入一次，之后使用编号引用
+//3、对象需要提供无参构造函数；java.*包中无法通过字段还原的类型，如果实现了Serializable，那么退化为Java序列化
+//4、反序列化时只解析目标类型（方法的参数类型或者返回类型）的字段图中出现的类及其子类、java.util中的集合、JDK的值类型，
+//   以及通过allowPackage允许的包中的类，其他类名直接报错，不会加载、实例化对端指定的任意类
+//5、数组、集合以及Map的长度按照剩余的字节数校验，集合不按照对端发送的长度预先分配
+//说明：不支持对象之间的循环引用
+public class BinarySerializer implements Serializer {
+
+	public static final String NAME = "binary";
+
+	//对象嵌套的最大深度，避免循环引用导致栈溢出
+	private static final int MAX_DEPTH = 256;
+
+	private static final byte NULL = 0;
+	private static final byte TRUE = 1;
+	private static final byte FALSE = 2;
+	private static final byte BYTE = 3;
+	private static final byte SHORT = 4;
+	private static final byte INT = 5;
+	private static final byte LONG = 6;
+	private static final byte FLOAT = 7;
+	private static final byte DOUBLE = 8;
+	private static final byte CHAR = 9;
+	private static final byte STRING = 10;
+	private static final byte BYTES = 11;
+	private static final byte ARRAY = 12;
+	private static final byte COLLECTION = 13;
+	private static final byte MAP = 14;
+	private static final byte ENUM = 15;
+	private static final byte OBJECT = 16;
+	private static final byte BIG_DECIMAL = 17;
+	private static final byte BIG_INTEGER = 18;
+	private static final byte DATE = 19;
+	private static final byte SERIALIZABLE = 20;
+
+	private static final Map<String, Class<?>> PRIMITIVE_TYPES = new HashMap<String, Class<?>>();
+
+	static {
+		for (Class<?> type : Arrays.asList(boolean.class, byte.class, short.class, int.class, long.class,
+				float.class, double.class, char.class)) {
+			PRIMITIVE_TYPES.put(type.getName(), type);
+		}
+	}
+
+	//类的可序列化字段，按照字段名排序，保证客户端与服务端的字段顺序一致
+	private final Map<Class<?>, Field[]> fieldCache = new ConcurrentHashMap<Class<?>, Field[]>();
+
+	//类名到Class的缓存，只缓存允许反序列化的类
+	private final Map<String, Class<?>> classCache = new ConcurrentHashMap<String, Class<?>>();
+
+	//目标类型的字段图中出现的类，按照目标类型缓存
+	private final Map<Type, Set<Class<?>>> graphCache = new ConcurrentHashMap<Type, Set<Class<?>>>();
+
+	//允许反序列化的包名前缀，用于字段声明为Object、接口等无法从目标类型推导出实际类型的情况
+	private final List<String> allowedPackages = new CopyOnWriteArrayList<String>();
+
+	private final JavaSerializer fallback = new JavaSerializer();
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public byte[] serialize(Object obj) throws IOException {
+		Output output = new Output();
+		write(output, obj, 0);
+		return output.toByteArray();
+	}
+
+	@Override
+	public Object deserialize(byte[] bytes, Type type) throws IOException {
+		return read(bytes, graph(type));
+	}
+
+	//按照方法的参数类型限制允许反序列化的类
+	@Override
+	public Object[] deserializeArgs(byte[] bytes, Type[] parameterTypes) throws IOException {
+		Set<Class<?>> trusted = new HashSet<Class<?>>(graph(Object[].class));
+		for (Type parameterType : parameterTypes) {
+			trusted.addAll(graph(parameterType));
+		}
+		Object args = read(bytes, trusted);
+		if (!(args instanceof Object[])) {
+			throw new IOException("Payload is not an argument array");
+		}
+		return (Object[]) args;
+	}
+
+	//允许反序列化指定包（包名前缀）中的类，例如：字段声明为Object或者接口，实际的值是该包中的类
+	public void allowPackage(String packagePrefix) {
+		this.allowedPackages.add(packagePrefix);
+	}
+
+	private Object read(byte[] bytes, Set<Class<?>> trusted) throws IOException {
+		Input input = new Input(bytes, trusted);
+		try {
+			return read(input, 0);
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("Unexpected end of binary payload", e);
+		} catch (RuntimeException e) {
+			throw new IOException("Malformed binary payload! " + e.getMessage(), e);
+		}
+	}
+
+	private void write(Output output, Object value, int depth) throws IOException {
+		if (depth > MAX_DEPTH) {
+			throw new IOException("Object graph is too deep, circular reference is not supported");
+		}
+		if (value == null) {
+			output.writeByte(NULL);
+		} else if (value instanceof String) {
+			output.writeByte(STRING);
+			output.writeString((String) value);
+		} else if (value instanceof Integer) {
+			output.writeByte(INT);
+			output.writeVarLong((Integer) value);
+		} else if (value instanceof Long) {
+			output.writeByte(LONG);
+			output.writeVarLong((Long) value);
+		} else if (value instanceof Boolean) {
+			output.writeByte((Boolean) value ? TRUE : FALSE);
+		} else if (value instanceof Double) {
+			output.writeByte(DOUBLE);
+			output.writeLong(Double.doubleToLongBits((Double) value));
+		} else if (value instanceof Float) {
+			output.writeByte(FLOAT);
+			output.writeInt(Float.floatToIntBits((Float) value));
+		} else if (value instanceof Short) {
+			output.writeByte(SHORT);
+			output.writeVarLong((Short) value);
+		} else if (value instanceof Byte) {
+			output.writeByte(BYTE);
+			output.writeByte((Byte) value);
+		} else if (value instanceof Character) {
+			output.writeByte(CHAR);
+			output.writeVarLong((Character) value);
+		} else if (value instanceof byte[]) {
+			output.writeByte(BYTES);
+			output.writeBytes((byte[]) value);
+		} else if (value.getClass().isArray()) {
+			output.writeByte(ARRAY);
+			output.writeClass(value.getClass().getComponentType());
+			int length = Array.getLength(value);
+			output.writeVarInt(length);
+			for (int i = 0; i < length; i++) {
+				write(output, Array.get(value, i), depth + 1);
+			}
+		} else if (value instanceof Collection) {
+			output.writeByte(COLLECTION);
+			output.writeClass(value.getClass());
+			Collection<?> collection = (Collection<?>) value;
+			output.writeVarInt(collection.size());
+			for (Object element : collection) {
+				write(output, element, depth + 1);
+			}
+		} else if (value instanceof Map) {
+			output.writeByte(MAP);
+			output.writeClass(value.getClass());
+			Map<?, ?> map = (Map<?, ?>) value;
+			output.writeVarInt(map.size());
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				write(output, entry.getKey(), depth + 1);
+				write(output, entry.getValue(), depth + 1);
+			}
+		} else if (value instanceof Enum) {
+			output.writeByte(ENUM);
+			output.writeClass(((Enum<?>) value).getDeclaringClass());
+			output.writeString(((Enum<?>) value).name());
+		} else if (value instanceof BigDecimal) {
+			output.writeByte(BIG_DECIMAL);
+			output.writeString(value.toString());
+		} else if (value instanceof BigInteger) {
+			output.writeByte(BIG_INTEGER);
+			output.writeString(value.toString());
+		} else if (value.getClass() == Date.class) {
+			output.writeByte(DATE);
+			output.writeVarLong(((Date) value).getTime());
+		} else if (isJdkType(value.getClass())) {
+			//JDK中的其他类型，无法保证能够通过字段还原，退化为Java序列化
+			if (!(value instanceof Serializable)) {
+				throw new IOException("Can not serialize " + value.getClass().getName());
+			}
+			output.writeByte(SERIALIZABLE);
+			output.writeBytes(this.fallback.serialize(value));
+		} else {
+			output.writeByte(OBJECT);
+			output.writeClass(value.getClass());
+			for (Field field : fields(value.getClass())) {
+				try {
+					write(output, field.get(value), depth + 1);
+				} catch (IllegalAccessException e) {
+					throw new IOException("Can not read field " + field, e);
+				}
+			}
+		}
+	}
+
+	private Object read(Input input, int depth) throws IOException {
+		if (depth > MAX_DEPTH) {
+			throw new IOException("Object graph is too deep");
+		}
+		byte tag = input.readByte();
+		switch (tag) {
+		case NULL:
+			return null;
+		case TRUE:
+			return Boolean.TRUE;
+		case FALSE:
+			return Boolean.FALSE;
+		case BYTE:
+			return input.readByte();
+		case SHORT:
+			return (short) input.readVarLong();
+		case INT:
+			return (int) input.readVarLong();
+		case LONG:
+			return input.readVarLong();
+		case FLOAT:
+			return Float.intBitsToFloat(input.readInt());
+		case DOUBLE:
+			return Double.longBitsToDouble(input.readLong());
+		case CHAR:
+			return (char) input.readVarLong();
+		case STRING:
+			return input.readString();
+		case BYTES:
+			return input.readBytes();
+		case ARRAY: {
+			Class<?> componentType = readClass(input);
+			int length = input.readLength(1);
+			Object array = Array.newInstance(componentType, length);
+			for (int i = 0; i < length; i++) {
+				Array.set(array, i, read(input, depth + 1));
+			}
+			return array;
+		}
+		case COLLECTION: {
+			Class<?> type = readClass(input);
+			int size = input.readLength(1);
+			Collection<Object> collection = newCollection(type);
+			for (int i = 0; i < size; i++) {
+				collection.add(read(input, depth + 1));
+			}
+			return collection;
+		}
+		case MAP: {
+			Class<?> type = readClass(input);
+			int size = input.readLength(2);
+			Map<Object, Object> map = newMap(type);
+			for (int i = 0; i < size; i++) {
+				Object key = read(input, depth + 1);
+				map.put(key, read(input, depth + 1));
+			}
+			return map;
+		}
+		case ENUM:
+			return toEnum(readClass(input), input.readString());
+		case BIG_DECIMAL:
+			return new BigDecimal(input.readString());
+		case BIG_INTEGER:
+			return new BigInteger(input.readString());
+		case DATE:
+			return new Date(input.readVarLong());
+		case SERIALIZABLE:
+			return readSerializable(input.readBytes(), input.trusted);
+		case OBJECT: {
+			Class<?> type = readClass(input);
+			if (isJdkType(type) || type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+				throw new IOException("Can not instantiate " + type.getName() + " for binary serializer");
+			}
+			Object obj = newInstance(type);
+			for (Field field : fields(type)) {
+				try {
+					field.set(obj, read(input, depth + 1));
+				} catch (IllegalAccessException | IllegalArgumentException e) {
+					throw new IOException("Can not set field " + field, e);
+				}
+			}
+			return obj;
+		}
+		default:
+			throw new IOException("Unknown binary tag " + tag);
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object toEnum(Class<?> type, String name) throws IOException {
+		try {
+			return Enum.valueOf((Class) type, name);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Unknown enum constant " + type.getName() + "." + name, e);
+		}
+	}
+
+	private static boolean isJdkType(Class<?> type) {
+		return isJdkType(type.getName());
+	}
+
+	private static boolean isJdkType(String name) {
+		return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.");
+	}
+
+	//可以直接创建的集合类型使用原类型，否则（例如Arrays.asList、Collections.unmodifiableList）使用对应的通用实现
+	@SuppressWarnings("unchecked")
+	private Collection<Object> newCollection(Class<?> type) {
+		Object collection = tryNewInstance(type);
+		if (collection instanceof Collection) {
+			return (Collection<Object>) collection;
+		}
+		if (SortedSet.class.isAssignableFrom(type)) {
+			return new TreeSet<Object>();
+		}
+		if (Set.class.isAssignableFrom(type)) {
+			return new LinkedHashSet<Object>();
+		}
+		return new ArrayList<Object>();
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<Object, Object> newMap(Class<?> type) {
+		Object map = tryNewInstance(type);
+		if (map instanceof Map) {
+			return (Map<Object, Object>) map;
+		}
+		if (SortedMap.class.isAssignableFrom(type)) {
+			return new TreeMap<Object, Object>();
+		}
+		return new LinkedHashMap<Object, Object>();
+	}
+
+	private static Object tryNewInstance(Class<?> type) {
+		if (!Modifier.isPublic(type.getModifiers())) {
+			return null;
+		}
+		try {
+			return type.getConstructor().newInstance();
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	private static Object newInstance(Class<?> type) throws IOException {
+		try {
+			Constructor<?> constructor = type.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			return constructor.newInstance();
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			throw new IOException("Class " + type.getName() + " requires a no-arg constructor for binary serializer", e);
+		}
+	}
+
+	private Field[] fields(Class<?> type) {
+		Field[] fields = this.fieldCache.get(type);
+		if (fields == null) {
+			List<Field> list = new ArrayList<Field>();
+			for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+				for (Field field : current.getDeclaredFields()) {
+					int modifiers = field.getModifiers();
+					if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+						continue;
+					}
+					field.setAccessible(true);
+					list.add(field);
+				}
+			}
+			list.sort(Comparator.comparing((Field field) -> field.getDeclaringClass().getName()).thenComparing(Field::getName));
+			fields = list.toArray(new Field[list.size()]);
+			this.fieldCache.put(type, fields);
+		}
+		return fields;
+	}
+
+	private Class<?> readClass(Input input) throws IOException {
+		int ref = input.readVarInt();
+		if (ref > 0) {
+			return input.classRef(ref - 1);
+		}
+		String name = input.readString();
+		Class<?> type = PRIMITIVE_TYPES.get(name);
+		if (type == null) {
+			type = this.classCache.get(name);
+		}
+		if (type == null) {
+			//非JDK的类必须是目标类型字段图中的类或者允许的包中的类，否则不加载，子类在加载之后再校验
+			if (!isJdkType(name) && !isTrustedName(name, input.trusted) && !isAllowedPackage(name)
+					&& !hasTrustedSubtypes(input.trusted)) {
+				throw new IOException("Class " + name + " is not allowed by binary serializer");
+			}
+			//只加载类，不执行静态初始化
+			try {
+				ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+				type = Class.forName(name, false, classLoader != null ? classLoader : BinarySerializer.class.getClassLoader());
+			} catch (ClassNotFoundException e) {
+				throw new IOException("Can not resolve class " + name, e);
+			}
+		}
+		if (!isAllowed(type, input.trusted)) {
+			throw new IOException("Class " + name + " is not allowed by binary serializer");
+		}
+		this.classCache.put(name, type);
+		input.addClass(type);
+		return type;
+	}
+
+	//类是否允许反序列化：JDK的值类型以及java.util中的集合、目标类型的字段图中的类及其子类、允许的包中的类
+	private boolean isAllowed(Class<?> type, Set<Class<?>> trusted) {
+		while (type.isArray()) {
+			type = type.getComponentType();
+		}
+		if (type.isPrimitive() || isJdkValueType(type) || trusted.contains(type) || isAllowedPackage(type.getName())) {
+			return true;
+		}
+		if (isJdkType(type)) {
+			return false;
+		}
+		for (Class<?> trustedType : trusted) {
+			if (!isJdkType(trustedType) && trustedType.isAssignableFrom(type)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	//可以安全地按照类名还原的JDK类型
+	private static boolean isJdkValueType(Class<?> type) {
+		String name = type.getName();
+		if (type == Object.class || type == String.class || type == Boolean.class || type == Character.class
+				|| type == Date.class || type == Enum.class || Number.class.isAssignableFrom(type) && name.startsWith("java.")) {
+			return true;
+		}
+		if (type.isEnum()) {
+			return isJdkType(name);
+		}
+		return name.startsWith("java.util.") && (Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type));
+	}
+
+	private static boolean isTrustedName(String name, Set<Class<?>> trusted) {
+		//数组的类名形如[Lcom.xxx.User;
+		String elementName = name;
+		if (elementName.startsWith("[")) {
+			int index = elementName.lastIndexOf('[');
+			elementName = elementName.endsWith(";") ? elementName.substring(index + 2, elementName.length() - 1) : "";
+		}
+		for (Class<?> type : trusted) {
+			if (type.getName().equals(elementName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	//目标类型的字段图中是否有可能被子类替换的非JDK类（非final的类或者接口）
+	private static boolean hasTrustedSubtypes(Set<Class<?>> trusted) {
+		for (Class<?> type : trusted) {
+			if (!isJdkType(type) && !type.isPrimitive() && !Modifier.isFinal(type.getModifiers())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isAllowedPackage(String name) {
+		for (String packagePrefix : this.allowedPackages) {
+			if (name.startsWith(packagePrefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	//目标类型的字段图：目标类型、泛型参数、数组的元素类型，以及其中非JDK类的所有字段类型和父类，递归收集
+	private Set<Class<?>> graph(Type type) {
+		Set<Class<?>> graph = this.graphCache.get(type);
+		if (graph == null) {
+			Set<Class<?>> classes = new HashSet<Class<?>>();
+			collect(type, classes);
+			graph = Collections.unmodifiableSet(classes);
+			this.graphCache.put(type, graph);
+		}
+		return graph;
+	}
+
+	private void collect(Type type, Set<Class<?>> classes) {
+		if (type instanceof Class) {
+			Class<?> clazz = (Class<?>) type;
+			if (clazz.isArray()) {
+				collect(clazz.getComponentType(), classes);
+				return;
+			}
+			//枚举按照名称还原，不需要收集字段
+			if (!classes.add(clazz) || isJdkType(clazz) || clazz.isEnum()) {
+				return;
+			}
+			collect(clazz.getGenericSuperclass(), classes);
+			for (Field field : fields(clazz)) {
+				collect(field.getGenericType(), classes);
+			}
+		} else if (type instanceof ParameterizedType) {
+			collect(((ParameterizedType) type).getRawType(), classes);
+			for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+				collect(argument, classes);
+			}
+		} else if (type instanceof GenericArrayType) {
+			collect(((GenericArrayType) type).getGenericComponentType(), classes);
+		} else if (type instanceof WildcardType) {
+			for (Type bound : ((WildcardType) type).getUpperBounds()) {
+				collect(bound, classes);
+			}
+		} else if (type instanceof TypeVariable) {
+			//只收集类型变量上界的原始类型，避免T extends Comparable<T>这样的递归
+			for (Type bound : ((TypeVariable<?>) type).getBounds()) {
+				collect(bound instanceof ParameterizedType ? ((ParameterizedType) bound).getRawType() : bound, classes);
+			}
+		}
+	}
+
+	//Java序列化的回退只用于JDK中的类型，解析的类同样按照目标类型的字段图校验
+	private Object readSerializable(byte[] bytes, final Set<Class<?>> trusted) throws IOException {
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes)) {
+			@Override
+			protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+				Class<?> type = super.resolveClass(desc);
+				Class<?> elementType = type;
+				while (elementType.isArray()) {
+					elementType = elementType.getComponentType();
+				}
+				if (!elementType.isPrimitive() && (!isJdkType(elementType)
+						|| !isAllowed(elementType, trusted) && !elementType.getName().startsWith("java.time."))) {
+					throw new InvalidClassException(desc.getName(), "Class is not allowed by binary serializer");
+				}
+				return type;
+			}
+		}) {
+			return ois.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Can not resolve class " + e.getMessage(), e);
+		}
+	}
+
+	//写入缓冲区，类名第一次出现时写入完整的类名，之后写入编号
+	private static final class Output {
+		private byte[] buffer = new byte[256];
+		private int position = 0;
+		private final Map<Class<?>, Integer> classRefs = new HashMap<Class<?>, Integer>();
+
+		void writeClass(Class<?> type) {
+			Integer ref = this.classRefs.get(type);
+			if (ref != null) {
+				writeVarInt(ref + 1);
+				return;
+			}
+			this.classRefs.put(type, this.classRefs.size());
+			writeVarInt(0);
+			writeString(type.getName());
+		}
+
+		void writeByte(int value) {
+			ensureCapacity(1);
+			this.buffer[this.position++] = (byte) value;
+		}
+
+		void writeInt(int value) {
+			ensureCapacity(4);
+			this.buffer[this.position++] = (byte) (value >>> 24);
+			this.buffer[this.position++] = (byte) (value >>> 16);
+			this.buffer[this.position++] = (byte) (value >>> 8);
+			this.buffer[this.position++] = (byte) value;
+		}
+
+		void writeLong(long value) {
+			writeInt((int) (value >>> 32));
+			writeInt((int) value);
+		}
+
+		void writeVarInt(int value) {
+			ensureCapacity(5);
+			while ((value & ~0x7F) != 0) {
+				this.buffer[this.position++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			this.buffer[this.position++] = (byte) value;
+		}
+
+		//ZigZag编码，绝对值较小的负数也只占用较少的字节
+		void writeVarLong(long value) {
+			long zigzag = (value << 1) ^ (value >> 63);
+			ensureCapacity(10);
+			while ((zigzag & ~0x7FL) != 0) {
+				this.buffer[this.position++] = (byte) ((zigzag & 0x7F) | 0x80);
+				zigzag >>>= 7;
+			}
+			this.buffer[this.position++] = (byte) zigzag;
+		}
+
+		void writeBytes(byte[] bytes) {
+			writeVarInt(bytes.length);
+			ensureCapacity(bytes.length);
+			System.arraycopy(bytes, 0, this.buffer, this.position, bytes.length);
+			this.position += bytes.length;
+		}
+
+		void writeString(String value) {
+			writeBytes(value.getBytes(StandardCharsets.UTF_8));
+		}
+
+		private void ensureCapacity(int required) {
+			if (this.position + required > this.buffer.length) {
+				this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.position + required));
+			}
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(this.buffer, this.position);
+		}
+	}
+
+	private static final class Input {
+		private final byte[] buffer;
+		private int position = 0;
+		private final List<Class<?>> classRefs = new ArrayList<Class<?>>();
+		//目标类型的字段图中的类
+		private final Set<Class<?>> trusted;
+
+		Input(byte[] buffer, Set<Class<?>> trusted) {
+			this.buffer = buffer;
+			this.trusted = trusted;
+		}
+
+		//读取数组、集合以及Map的长度，每个元素至少占用minBytes个字节，长度不能超过剩余的字节数
+		int readLength(int minBytes) throws IOException {
+			int length = readVarInt();
+			if (length < 0 || length > (this.buffer.length - this.position) / minBytes) {
+				throw new IOException("Invalid length " + length);
+			}
+			return length;
+		}
+
+		Class<?> classRef(int index) throws IOException {
+			if (index >= this.classRefs.size()) {
+				throw new IOException("Invalid class reference " + index);
+			}
+			return this.classRefs.get(index);
+		}
+
+		void addClass(Class<?> type) {
+			this.classRefs.add(type);
+		}
+
+		byte readByte() {
+			return this.buffer[this.position++];
+		}
+
+		int readInt() {
+			return ((this.buffer[this.position++] & 0xFF) << 24) | ((this.buffer[this.position++] & 0xFF) << 16)
+					| ((this.buffer[this.position++] & 0xFF) << 8) | (this.buffer[this.position++] & 0xFF);
+		}
+
+		long readLong() {
+			return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+		}
+
+		int readVarInt() throws IOException {
+			int result = 0;
+			for (int shift = 0; shift < 32; shift += 7) {
+				byte b = readByte();
+				result |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return result;
+				}
+			}
+			throw new IOException("Malformed varint");
+		}
+
+		long readVarLong() throws IOException {
+			long zigzag = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				byte b = readByte();
+				zigzag |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return (zigzag >>> 1) ^ -(zigzag & 1);
+				}
+			}
+			throw new IOException("Malformed varlong");
+		}
+
+		byte[] readBytes() throws IOException {
+			int length = readVarInt();
+			if (length < 0 || length > this.buffer.length - this.position) {
+				throw new IOException("Invalid length " + length);
+			}
+			byte[] bytes = Arrays.copyOfRange(this.buffer, this.position, this.position + length);
+			this.position += length;
+			return bytes;
+		}
+
+		String readString() throws IOException {
+			int length = readVarInt();
+			if (length < 0 || length > this.buffer.length - this.position) {
+				throw new IOException("Invalid length " + length);
+			}
+			String value = new String(this.buffer, this.position, length, StandardCharsets.UTF_8);
+			this.position += length;
+			return value;
+		}
+	}
+
+}
@@ -0,0 +1,56 @@
+package feign.serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Type;
+
+import feign.packet.PpcPacketBody;
+
+//基于ObjectOutputStream/ObjectInputStream的序列化器，要求参数以及返回值都实现Serializable
+//方法参数仍然使用PpcPacketBody包装，与之前的包体格式保持一致
+public class JavaSerializer implements Serializer {
+
+	public static final String NAME = "java";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public byte[] serialize(Object obj) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+		ObjectOutputStream oos = new ObjectOutputStream(bos);
+		oos.writeObject(obj);
+		oos.flush();
+		return bos.toByteArray();
+	}
+
+	@Override
+	public Object deserialize(byte[] bytes, Type type) throws IOException {
+		try {
+			ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+			return ois.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Can not resolve class " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public byte[] serializeArgs(Object[] args) throws IOException {
+		return serialize(new PpcPacketBody(args));
+	}
+
+	@Override
+	public Object[] deserializeArgs(byte[] bytes, Type[] parameterTypes) throws IOException {
+		Object packetBody = deserialize(bytes, PpcPacketBody.class);
+		if (!(packetBody instanceof PpcPacketBody)) {
+			throw new IOException("Payload is not a PpcPacketBody");
+		}
+		return ((PpcPacketBody) packetBody).getMethodArgs();
+	}
+
+}
@@ -0,0 +1,59 @@
+package feign.serializer;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+//基于Jackson的JSON序列化器，参数以及返回值不需要实现Serializable
+//JSON中不包含类型信息，反序列化时使用方法声明的参数类型以及返回类型
+public class JsonSerializer implements Serializer {
+
+	public static final String NAME = "json";
+
+	private final ObjectMapper mapper;
+
+	public JsonSerializer() {
+		this(new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+	}
+
+	public JsonSerializer(ObjectMapper mapper) {
+		this.mapper = mapper;
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public byte[] serialize(Object obj) throws IOException {
+		return this.mapper.writeValueAsBytes(obj);
+	}
+
+	@Override
+	public Object deserialize(byte[] bytes, Type type) throws IOException {
+		return this.mapper.readValue(bytes, this.mapper.getTypeFactory().constructType(type));
+	}
+
+	//参数序列化成JSON数组，反序列化时按照位置转换成对应的参数类型
+	@Override
+	public Object[] deserializeArgs(byte[] bytes, Type[] parameterTypes) throws IOException {
+		if (parameterTypes.length == 0) {
+			return new Object[0];
+		}
+		JsonNode node = this.mapper.readTree(bytes);
+		if (node == null || !node.isArray() || node.size() != parameterTypes.length) {
+			throw new IOException("Expect " + parameterTypes.length + " arguments in json array");
+		}
+		Object[] args = new Object[parameterTypes.length];
+		for (int i = 0; i < parameterTypes.length; i++) {
+			args[i] = this.mapper.readerFor(this.mapper.getTypeFactory().constructType(parameterTypes[i]))
+					.readValue(node.get(i));
+		}
+		return args;
+	}
+
+}
@@ -0,0 +1,29 @@
+package feign.serializer;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+//SOCKET协议中方法参数以及返回值的序列化器
+//通过SerializerFactory按照名称获取，客户端在@FeignClientExt中选择，服务端在@RpcController中声明支持的序列化器
+//自定义的序列化器可以通过META-INF/services/feign.serializer.Serializer注册
+public interface Serializer {
+
+	//序列化器的名称，通过X-RPC-SERIALIZER头信息在客户端与服务端之间协商
+	String getName();
+
+	byte[] serialize(Object obj) throws IOException;
+
+	//将字节数组反序列化成指定的类型
+	Object deserialize(byte[] bytes, Type type) throws IOException;
+
+	//序列化请求方法的参数
+	default byte[] serializeArgs(Object[] args) throws IOException {
+		return serialize(args);
+	}
+
+	//按照方法的参数类型，反序列化请求方法的参数
+	default Object[] deserializeArgs(byte[] bytes, Type[] parameterTypes) throws IOException {
+		return (Object[]) deserialize(bytes, Object[].class);
+	}
+
+}
@@ -0,0 +1,78 @@
+package feign.serializer;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//序列化器的注册表
+//内置java、json、binary三种序列化器，并通过ServiceLoader加载自定义的序列化器
+public class SerializerFactory {
+	private static final Logger LOGGER = LoggerFactory.getLogger(SerializerFactory.class);
+
+	//请求包以及响应包中，用来标识包体序列化方式的头信息
+	public static final String SERIALIZER_HEADER = "X-RPC-SERIALIZER";
+
+	//默认的序列化器
+	public static final String DEFAULT_SERIALIZER = JavaSerializer.NAME;
+
+	private static final Map<String, Serializer> SERIALIZERS = new ConcurrentHashMap<String, Serializer>();
+
+	static {
+		register(new JavaSerializer());
+		register(new JsonSerializer());
+		register(new BinarySerializer());
+		for (Serializer serializer : ServiceLoader.load(Serializer.class)) {
+			LOGGER.info("Registered rpc serializer [" + serializer.getName() + "] " + serializer.getClass().getName());
+			register(serializer);
+		}
+	}
+
+	private SerializerFactory() {
+	}
+
+	//注册序列化器，同名的序列化器会被替换
+	public static void register(Serializer serializer) {
+		SERIALIZERS.put(serializer.getName(), serializer);
+	}
+
+	public static boolean contains(String name) {
+		return name != null && SERIALIZERS.containsKey(name);
+	}
+
+	//所有已注册的序列化器名称，在连接握手时与对端协商
+	public static Set<String> getSerializerNames() {
+		return Collections.unmodifiableSet(SERIALIZERS.keySet());
+	}
+
+	//根据名称获取序列化器，名称为空时返回默认的序列化器
+	public static Serializer getSerializer(String name) {
+		if (name == null || name.isEmpty()) {
+			name = DEFAULT_SERIALIZER;
+		}
+		Serializer serializer = SERIALIZERS.get(name);
+		if (serializer == null) {
+			throw new IllegalArgumentException("Unknown rpc serializer: " + name);
+		}
+		return serializer;
+	}
+
+	//根据包中的X-RPC-SERIALIZER头信息获取序列化器
+	public static Serializer getSerializer(Map<String, Collection<String>> headers) {
+		return getSerializer(getSerializerName(headers));
+	}
+
+	public static String getSerializerName(Map<String, Collection<String>> headers) {
+		if (headers == null) {
+			return null;
+		}
+		Collection<String> values = headers.get(SERIALIZER_HEADER);
+		return values == null || values.isEmpty() ? null : values.iterator().next();
+	}
+
+}
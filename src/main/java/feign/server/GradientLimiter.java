@@ -0,0 +1,120 @@
+package feign.server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//自适应的并发限制（Gradient算法），按照观察到的延迟调整允许同时处理的请求数
+//1、shortRtt：最近一个采样窗口的平均延迟；longRtt：没有排队时的基准延迟，延迟降低时很快跟随，升高时按照长期EWMA缓慢上升
+//2、gradient = RTT_TOLERANCE * longRtt / shortRtt，限制在[0.5, 1]之间：出现排队、下游变慢时延迟升高，gradient < 1，限制随之减小
+//3、newLimit = limit * gradient + sqrt(limit)：延迟正常时按照sqrt(limit)逐渐增大，探测更高的并发
+//4、采样窗口内正在处理的请求数从未超过限制的一半时不增大限制，避免低负载时限制无限增长
+//超过限制的请求直接拒绝，由SocketServer响应FLAG_BUSY，客户端可以在其他Server上重试
+public final class GradientLimiter {
+
+	//允许的延迟升高比例，延迟在基准的1.5倍以内时不减小限制
+	private static final double RTT_TOLERANCE = 1.5;
+
+	//新的限制所占的权重
+	private static final double SMOOTHING = 0.2;
+
+	//longRtt的EWMA窗口（采样窗口的个数）
+	private static final int LONG_WINDOW = 600;
+
+	//采样窗口的最短时间以及最少样本数
+	private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	private static final int MIN_WINDOW_SAMPLES = 10;
+
+	private static final int MIN_LIMIT = 2;
+
+	private final int maxLimit;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	//当前的限制
+	private volatile int limit;
+
+	//以下字段只在synchronized中访问
+	private double estimatedLimit;
+	private double longRtt;
+	private long windowStart = System.nanoTime();
+	private long windowRttSum;
+	private int windowSamples;
+	private int windowMaxInFlight;
+
+	public GradientLimiter(int initialLimit, int maxLimit) {
+		this.maxLimit = Math.max(maxLimit, MIN_LIMIT);
+		this.estimatedLimit = Math.min(Math.max(initialLimit, MIN_LIMIT), this.maxLimit);
+		this.limit = (int) this.estimatedLimit;
+	}
+
+	//尝试开始处理一个请求，超过限制时返回false
+	public boolean tryAcquire() {
+		for (;;) {
+			int current = this.inFlight.get();
+			if (current >= this.limit) {
+				return false;
+			}
+			if (this.inFlight.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	//请求处理完成，记录从开始到完成的延迟（包括在业务线程池中排队的时间）
+	public void release(long rttNanos) {
+		int inFlight = this.inFlight.getAndDecrement();
+		synchronized (this) {
+			sample(rttNanos, inFlight);
+		}
+	}
+
+	//请求没有被处理（例如：业务线程池拒绝），不记录延迟
+	public void cancel() {
+		this.inFlight.decrementAndGet();
+	}
+
+	public int getLimit() {
+		return this.limit;
+	}
+
+	public int getInFlight() {
+		return this.inFlight.get();
+	}
+
+	private void sample(long rttNanos, int inFlight) {
+		this.windowRttSum += rttNanos;
+		this.windowSamples++;
+		this.windowMaxInFlight = Math.max(this.windowMaxInFlight, inFlight);
+		long now = System.nanoTime();
+		if (this.windowSamples < MIN_WINDOW_SAMPLES || now - this.windowStart < WINDOW_NANOS) {
+			return;
+		}
+		double shortRtt = (double) this.windowRttSum / this.windowSamples;
+		//延迟低于基准（例如：预热结束、下游恢复）时，基准延迟很快向当前延迟靠拢；延迟升高时基准只缓慢上升
+		if (this.longRtt == 0) {
+			this.longRtt = shortRtt;
+		} else if (shortRtt < this.longRtt) {
+			this.longRtt = (this.longRtt + shortRtt) / 2;
+		} else {
+			this.longRtt += (shortRtt - this.longRtt) * 2 / (LONG_WINDOW + 1);
+		}
+		double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * this.longRtt / shortRtt));
+		double newLimit = this.estimatedLimit * gradient + Math.sqrt(this.estimatedLimit);
+		if (this.windowMaxInFlight < this.estimatedLimit / 2) {
+			newLimit = Math.min(newLimit, this.estimatedLimit);
+		}
+		newLimit = this.estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+		this.estimatedLimit = Math.max(MIN_LIMIT, Math.min(this.maxLimit, newLimit));
+		this.limit = (int) this.estimatedLimit;
+		this.windowStart = now;
+		this.windowRttSum = 0;
+		this.windowSamples = 0;
+		this.windowMaxInFlight = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "GradientLimiter{limit=" + this.limit + ", inFlight=" + this.inFlight.get() + "}";
+	}
+
+}
@@ -0,0 +1,126 @@
+package feign.server;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import feign.annotation.Bulkhead;
+
+//方法（或者Controller）的隔离舱，按照@Bulkhead的设置在SocketServer分发请求时生效
+//1、信号量：限制同时执行的请求数，拿不到许可的请求直接响应FLAG_BUSY，不占用业务线程
+//2、专用线程池：隔离舱中的方法在自己的线程中执行，慢方法占满的只是自己的线程和队列，其他方法仍然使用SocketServer的业务线程池
+//每个隔离舱单独统计正在执行、已完成以及被拒绝的请求数
+public final class MethodBulkhead {
+
+	//隔离舱的名称，方法签名或者Controller的类名
+	private final String name;
+
+	private final int maxConcurrent;
+
+	//maxConcurrent小于等于0时为null，不限制并发
+	private final Semaphore permits;
+
+	//没有设置专用线程时为null，使用SocketServer的业务线程池
+	private final ThreadPoolExecutor executor;
+
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+
+	MethodBulkhead(String name, Bulkhead config) {
+		this.name = name;
+		this.maxConcurrent = config.maxConcurrent();
+		this.permits = this.maxConcurrent > 0 ? new Semaphore(this.maxConcurrent) : null;
+		if (config.threads() > 0) {
+			AtomicInteger threadCount = new AtomicInteger();
+			BlockingQueue<Runnable> queue = config.queueCapacity() > 0
+					? new ArrayBlockingQueue<Runnable>(config.queueCapacity()) : new SynchronousQueue<Runnable>();
+			this.executor = new ThreadPoolExecutor(config.threads(), config.threads(), 0L, TimeUnit.MILLISECONDS, queue, runnable -> {
+				Thread thread = new Thread(runnable, "SocketServer-Bulkhead-" + name + "-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		} else {
+			this.executor = null;
+		}
+	}
+
+	//尝试开始执行一个请求，超过并发限制时返回false
+	boolean tryAcquire() {
+		if (this.permits != null && !this.permits.tryAcquire()) {
+			this.rejected.incrementAndGet();
+			return false;
+		}
+		this.active.incrementAndGet();
+		return true;
+	}
+
+	//请求执行完成
+	void release() {
+		this.active.decrementAndGet();
+		this.completed.incrementAndGet();
+		if (this.permits != null) {
+			this.permits.release();
+		}
+	}
+
+	//请求已经拿到许可，但是没有被执行（线程池已满或者已经关闭）
+	void cancel() {
+		this.active.decrementAndGet();
+		this.rejected.incrementAndGet();
+		if (this.permits != null) {
+			this.permits.release();
+		}
+	}
+
+	//执行请求的线程池，没有专用线程时使用SocketServer的业务线程池
+	Executor executor(Executor shared) {
+		return this.executor != null ? this.executor : shared;
+	}
+
+	boolean isShutdown() {
+		return this.executor != null && this.executor.isShutdown();
+	}
+
+	void shutdown() {
+		if (this.executor != null) {
+			this.executor.shutdown();
+		}
+	}
+
+	void awaitTermination(long timeout) throws InterruptedException {
+		if (this.executor != null) {
+			this.executor.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public int getActive() {
+		return this.active.get();
+	}
+
+	public long getCompleted() {
+		return this.completed.get();
+	}
+
+	public long getRejected() {
+		return this.rejected.get();
+	}
+
+	@Override
+	public String toString() {
+		return "MethodBulkhead{name=" + this.name + ", maxConcurrent=" + this.maxConcurrent
+				+ ", threads=" + (this.executor != null ? this.executor.getCorePoolSize() : 0)
+				+ ", active=" + this.active.get() + ", completed=" + this.completed.get() + ", rejected=" + this.rejected.get() + "}";
+	}
+
+}
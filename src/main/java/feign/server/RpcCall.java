@@ -0,0 +1,60 @@
+package feign.server;
+
+import feign.packet.RpcDeadline;
+
+//SocketServer连接上正在排队或者执行的一个请求，客户端发送FLAG_CANCEL的帧时取消
+//1、还在排队时取消：业务线程取出请求后直接丢弃，不调用方法
+//2、正在执行时取消：请求的截止时间立即到期，开启interruptOnCancel时同时中断执行线程，方法结束之后不写回响应
+final class RpcCall {
+
+	private final RpcDeadline deadline;
+
+	//正在执行请求的线程，以下字段只在synchronized中访问
+	private Thread thread;
+
+	//是否由cancel中断了执行线程
+	private boolean interrupted;
+
+	RpcCall(RpcDeadline deadline) {
+		this.deadline = deadline;
+	}
+
+	RpcDeadline getDeadline() {
+		return this.deadline;
+	}
+
+	//在业务线程中开始执行，请求已经被取消时返回false
+	synchronized boolean start() {
+		if (this.deadline.isCancelled()) {
+			return false;
+		}
+		this.thread = Thread.currentThread();
+		return true;
+	}
+
+	//执行结束，清除cancel设置的中断状态，避免影响业务线程执行下一个请求
+	void finish() {
+		boolean interrupted;
+		synchronized (this) {
+			this.thread = null;
+			interrupted = this.interrupted;
+		}
+		if (interrupted) {
+			Thread.interrupted();
+		}
+	}
+
+	//取消请求，正在执行时按照需要中断执行线程
+	synchronized void cancel(boolean interrupt) {
+		this.deadline.cancel();
+		if (interrupt && this.thread != null) {
+			this.interrupted = true;
+			this.thread.interrupt();
+		}
+	}
+
+	boolean isCancelled() {
+		return this.deadline.isCancelled();
+	}
+
+}
@@ -1,159 +1,743 @@
 package feign.server;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.lang.reflect.Method;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.http.MediaType;
 
+import feign.annotation.Bulkhead;
 import feign.enumerate.ProtocolType;
-import feign.packet.PpcPacketBody;
+import feign.packet.RpcDeadline;
+import feign.packet.RpcHandshake;
 import feign.packet.RpcPacket;
+import feign.packet.RpcPacketCodec;
+import feign.packet.RpcSession;
+import feign.serializer.Serializer;
+import feign.serializer.SerializerFactory;
+import feign.server.context.RpcMethodRegistry;
 import feign.server.context.RpcServerContext;
 import feign.server.method.RpcMethodWrapper;
+import feign.transport.EventLoop;
+import feign.transport.EventLoopGroup;
+import feign.transport.NioChannel;
 
-
+//基于Reactor模型的SocketServer
+//1、Boss EventLoop：负责accept新的连接，并将连接按照轮询的方式分配给I/O EventLoop
+//2、I/O EventLoop：负责连接上的读写，在I/O线程中拆分并解码请求帧
+//3、Worker线程池：执行RpcMethodWrapper的业务调用，生成的响应帧交回连接所在的I/O线程写出
+//   线程池的队列是有界的，队列满时按照RejectionPolicy处理，默认立即响应FLAG_BUSY的帧，客户端可以马上换到其他Server
+//4、开启自适应并发限制时，请求在提交到线程池之前，先经过整个Server以及所调用方法的GradientLimiter，超过限制的请求响应FLAG_BUSY
+//5、请求包带有客户端的剩余时间（X-RPC-TIMEOUT）时，在线程池中排队超过该时间的请求直接丢弃，不再调用方法，
+//   方法执行时截止时间绑定在业务线程上，方法中发起的feign-x嵌套调用只使用剩余的时间
+//6、客户端放弃等待的请求会发送FLAG_CANCEL的帧：还在排队的请求直接丢弃，正在执行的请求截止时间立即到期，并且不写回响应
+//7、设置了@Bulkhead的方法按照各自的MethodBulkhead限制并发，并可以在专用的线程池中执行，慢方法不会占满其他方法使用的业务线程
+//连接是持久化的，一直处理请求帧，直到客户端关闭连接、连接空闲超时或者服务器停止
 public class SocketServer implements IServer {
 	private static final Logger LOGGER = LoggerFactory.getLogger(SocketServer.class);
+
+	//默认的I/O线程数
+	public static final int DEFAULT_IO_THREADS = Runtime.getRuntime().availableProcessors();
+	//默认的业务线程数
+	public static final int DEFAULT_WORKER_THREADS = Runtime.getRuntime().availableProcessors() * 2;
+	//默认的业务线程池队列长度
+	public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+	//默认的连接空闲超时时间（毫秒）
+	public static final long DEFAULT_IDLE_TIMEOUT = 5 * 60 * 1000;
+	//停止时等待正在处理的请求完成的最长时间（毫秒）
+	private static final long DRAIN_TIMEOUT = 5000;
+	//握手时下发给客户端的头信息字典中，固定的常用字符串，序列化器的名称在启动时追加
+	private static final List<String> COMMON_HEADERS = Arrays.asList("X-RPC-CALL", SerializerFactory.SERIALIZER_HEADER, RpcPacketCodec.TIMEOUT_HEADER,
+			ProtocolType.SOCKET.getName(), "Accept", "Content-Type", "Content-Length", "Content-Encoding",
+			"application/json", "text/plain", "gzip", "deflate");
+	//服务端支持的压缩算法
+	private static final List<String> COMPRESSIONS = Arrays.asList(RpcPacketCodec.COMPRESSION_DEFLATE);
+
 	int port = 0;
-	//SocketServer
-	ServerSocket server = null;
-	//SockerServer的acceptor的线程
-	Thread acceptor = null;
-	//执行Socket的Worker线程池
-	ExecutorService executor = Executors.newSingleThreadExecutor();
+	//监听端口的ServerSocketChannel
+	ServerSocketChannel server = null;
+	//负责accept连接的EventLoop
+	EventLoop boss = null;
+	//负责连接读写的EventLoop
+	EventLoopGroup ioGroup = null;
+	//执行RPC方法调用的线程池
+	ExecutorService executor = null;
+	//I/O线程数
+	int ioThreads = DEFAULT_IO_THREADS;
+	//业务线程数
+	int workerThreads = DEFAULT_WORKER_THREADS;
+	//业务线程池的队列长度，小于等于0表示不排队，没有空闲的业务线程时直接拒绝
+	int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+	//业务线程池满时的处理方式
+	RejectionPolicy rejectionPolicy = RejectionPolicy.BUSY;
+	//拒绝的请求数
+	final AtomicLong rejected = new AtomicLong();
+	//超过客户端截止时间，没有执行就丢弃的请求数
+	final AtomicLong expired = new AtomicLong();
+	//被客户端取消的请求数
+	final AtomicLong cancelled = new AtomicLong();
+	//客户端取消正在执行的请求时，是否中断执行线程，默认只标记截止时间到期，由方法自行检查
+	boolean interruptOnCancel = false;
+	//自适应并发限制的初始值以及最大值，初始值小于等于0表示不开启
+	int initialConcurrencyLimit = 0;
+	int maxConcurrencyLimit = 0;
+	//整个Server的并发限制，以及每个方法的并发限制
+	GradientLimiter serverLimiter = null;
+	final Map<RpcMethodWrapper, GradientLimiter> methodLimiters = new ConcurrentHashMap<RpcMethodWrapper, GradientLimiter>();
+	//方法对应的隔离舱，启动时按照@Bulkhead创建，之后只读
+	final Map<RpcMethodWrapper, MethodBulkhead> bulkheads = new HashMap<RpcMethodWrapper, MethodBulkhead>();
+	//连接空闲超时时间（毫秒），小于等于0表示不关闭空闲连接
+	long idleTimeout = DEFAULT_IDLE_TIMEOUT;
 	//Server的Context信息，包括了所有需要支持处理的方法
 	RpcServerContext context = null;
-	
+	//不可变的方法注册表，请求帧按照方法ID或者方法签名路由
+	RpcMethodRegistry registry = null;
+	//握手时下发给客户端的头信息字典，启动时生成一次
+	List<String> dictionary = null;
+	//当前所有的客户端连接
+	final Set<Worker> workers = ConcurrentHashMap.newKeySet();
+	//检查空闲连接的定时器
+	ScheduledExecutorService idleChecker = null;
+	//服务器是否正在停止，停止时不再接受新的连接，处理完请求的连接直接关闭
+	volatile boolean draining = false;
+
 	public SocketServer(int port,RpcServerContext context) throws IOException {
+		this(port, context, DEFAULT_IO_THREADS, DEFAULT_WORKER_THREADS);
+	}
+
+	public SocketServer(int port,RpcServerContext context, int ioThreads, int workerThreads) throws IOException {
+		this(port, context, ioThreads, workerThreads, DEFAULT_IDLE_TIMEOUT);
+	}
+
+	public SocketServer(int port,RpcServerContext context, int ioThreads, int workerThreads, long idleTimeout) throws IOException {
+		this(port, context, ioThreads, workerThreads, idleTimeout, DEFAULT_QUEUE_CAPACITY, RejectionPolicy.BUSY);
+	}
+
+	public SocketServer(int port,RpcServerContext context, int ioThreads, int workerThreads, long idleTimeout,
+			int queueCapacity, RejectionPolicy rejectionPolicy) throws IOException {
 		this.port = port;
+		this.queueCapacity = queueCapacity;
+		this.rejectionPolicy = rejectionPolicy != null ? rejectionPolicy : RejectionPolicy.BUSY;
+		this.idleTimeout = idleTimeout;
 		this.context = context;
-		this.server = new ServerSocket(port);
+		this.registry = context.getRegistry();
+		this.dictionary = new ArrayList<String>(COMMON_HEADERS);
+		for (String serializer : SerializerFactory.getSerializerNames()) {
+			if (!this.dictionary.contains(serializer)) {
+				this.dictionary.add(serializer);
+			}
+		}
+		this.ioThreads = ioThreads > 0 ? ioThreads : DEFAULT_IO_THREADS;
+		this.workerThreads = workerThreads > 0 ? workerThreads : DEFAULT_WORKER_THREADS;
+		this.server = ServerSocketChannel.open();
+		this.server.socket().setReuseAddress(true);
+		this.server.bind(new InetSocketAddress(port));
+		this.server.configureBlocking(false);
+	}
+
+	//开启自适应并发限制，需要在start之前调用
+	public void setAdaptiveConcurrencyLimit(int initialLimit, int maxLimit) {
+		this.initialConcurrencyLimit = initialLimit;
+		this.maxConcurrencyLimit = maxLimit;
+	}
+
+	//客户端取消正在执行的请求时中断执行线程，方法中的阻塞操作（例如Thread.sleep、Object.wait）会提前结束
+	public void setInterruptOnCancel(boolean interruptOnCancel) {
+		this.interruptOnCancel = interruptOnCancel;
 	}
-	
+
 	@Override
 	public boolean start() {
-		//创建SocketServer的Acceptor线程
-		this.acceptor = new Thread(()->{
-			//如果acceptor线程的状态为中断状态，那么不执行accept请求
-			while(!Thread.currentThread().isInterrupted()) {
-				try {
-					executor.execute(new Worker(server.accept(),this.context));
-				} catch (IOException e) {
-					LOGGER.error("Executor execute worker failed! " + e.getMessage());
-				}
-			}
-			LOGGER.info("Thread " + this.acceptor.getName() + "stoped!");
+		try {
+			this.ioGroup = new EventLoopGroup("SocketServer-IO", this.ioThreads);
+			this.boss = new EventLoop("SocketServer-Boss");
+		} catch (IOException e) {
+			LOGGER.error("Create event loops of socket server failed! " + e.getMessage());
+			return false;
+		}
+		AtomicInteger workerCount = new AtomicInteger();
+		//队列满时抛出RejectedExecutionException，由Worker按照RejectionPolicy处理
+		BlockingQueue<Runnable> queue = this.queueCapacity > 0
+				? new ArrayBlockingQueue<Runnable>(this.queueCapacity) : new SynchronousQueue<Runnable>();
+		this.executor = new ThreadPoolExecutor(this.workerThreads, this.workerThreads, 0L, TimeUnit.MILLISECONDS, queue, runnable -> {
+			Thread thread = new Thread(runnable, "SocketServer-Worker-" + workerCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (this.initialConcurrencyLimit > 0) {
+			this.serverLimiter = new GradientLimiter(this.initialConcurrencyLimit, this.maxConcurrencyLimit);
+		}
+		this.createBulkheads();
+		this.idleChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "SocketServer-IdleChecker");
+			thread.setDaemon(true);
+			return thread;
 		});
-		this.acceptor.setName("SocketServer-Acceptor");
-		this.acceptor.setDaemon(true);
-		this.acceptor.start();
-		LOGGER.info("Socket server started on port(s):" + this.port + " (TCP)");
+		if (this.idleTimeout > 0) {
+			long period = Math.max(100, Math.min(1000, this.idleTimeout / 2));
+			this.idleChecker.scheduleWithFixedDelay(this::closeIdleConnections, period, period, TimeUnit.MILLISECONDS);
+		}
+		this.boss.register(this.server, SelectionKey.OP_ACCEPT, new Acceptor());
+		LOGGER.info("Socket server started on port(s):" + this.port + " (TCP), io threads: " + this.ioThreads
+				+ ", worker threads: " + this.workerThreads + ", queue capacity: " + this.queueCapacity
+				+ ", rejection policy: " + this.rejectionPolicy + ", idle timeout: " + this.idleTimeout + "ms"
+				+ (this.serverLimiter != null ? ", adaptive concurrency limit: " + this.initialConcurrencyLimit + "~" + this.maxConcurrencyLimit : ""));
+		for (MethodBulkhead bulkhead : getBulkheads()) {
+			LOGGER.info("Socket server bulkhead: " + bulkhead);
+		}
 		return true;
 	}
 
+	//按照方法上的@Bulkhead创建隔离舱，设置在Controller上的隔离舱由Controller中没有单独设置隔离舱的方法共用
+	void createBulkheads() {
+		Map<String, MethodBulkhead> named = new HashMap<String, MethodBulkhead>();
+		for (int id = 1; id <= this.registry.size(); id++) {
+			RpcMethodWrapper wrapper = this.registry.get(id);
+			Bulkhead config = wrapper.getBulkhead();
+			if (config == null) {
+				continue;
+			}
+			Method method = wrapper.getMethod();
+			String name = method != null && method.isAnnotationPresent(Bulkhead.class) ? wrapper.getSignature() : wrapper.getClassName();
+			MethodBulkhead bulkhead = named.get(name);
+			if (bulkhead == null) {
+				bulkhead = new MethodBulkhead(name, config);
+				named.put(name, bulkhead);
+			}
+			this.bulkheads.put(wrapper, bulkhead);
+		}
+	}
+
+	//所有的隔离舱，包括各自的运行统计
+	public Collection<MethodBulkhead> getBulkheads() {
+		return new HashSet<MethodBulkhead>(this.bulkheads.values());
+	}
+
+	//关闭空闲的连接，停止时关闭所有没有正在处理的请求的连接
+	void closeIdleConnections() {
+		long now = System.currentTimeMillis();
+		for (Worker worker : this.workers) {
+			if (worker.isIdle(now)) {
+				worker.close();
+			}
+		}
+	}
+
+	//停止时先关闭监听端口，已有连接上新的请求都响应FLAG_BUSY，再等待连接上正在处理的请求完成并写回之后关闭连接，最长等待DRAIN_TIMEOUT
 	@Override
 	public boolean stop() {
-		if (this.acceptor != null) {
-			//将acceptor线程的状态设置为中断状态
-			this.acceptor.interrupt();
+		this.draining = true;
+		try {
+			this.server.close();
+		} catch (IOException e) {
+			LOGGER.error("Close socket server failed! " + e.getMessage());
+		}
+		if (this.boss != null) {
+			this.boss.shutdown();
+		}
+		long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT;
+		try {
+			while (!this.workers.isEmpty() && System.currentTimeMillis() < deadline) {
+				closeIdleConnections();
+				Thread.sleep(50);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (!this.workers.isEmpty()) {
+			LOGGER.warn("Socket server stopped with " + this.workers.size() + " connection(s) still busy");
+		}
+		if (this.idleChecker != null) {
+			this.idleChecker.shutdownNow();
+		}
+		if (this.executor != null) {
+			this.executor.shutdown();
+			try {
+				this.executor.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		for (MethodBulkhead bulkhead : getBulkheads()) {
+			bulkhead.shutdown();
+		}
+		try {
+			for (MethodBulkhead bulkhead : getBulkheads()) {
+				bulkhead.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (this.ioGroup != null) {
+			this.ioGroup.shutdown();
 		}
 		return true;
 	}
-	
-	class Worker implements Runnable {
-		//客户端Client
-		private Socket socket;
+
+	//获取方法的并发限制，没有开启自适应并发限制时返回null
+	GradientLimiter getMethodLimiter(RpcMethodWrapper wrapper) {
+		if (this.serverLimiter == null || wrapper == null) {
+			return null;
+		}
+		GradientLimiter limiter = this.methodLimiters.get(wrapper);
+		if (limiter == null) {
+			limiter = new GradientLimiter(this.initialConcurrencyLimit, this.maxConcurrencyLimit);
+			GradientLimiter existing = this.methodLimiters.putIfAbsent(wrapper, limiter);
+			if (existing != null) {
+				limiter = existing;
+			}
+		}
+		return limiter;
+	}
+
+	//在Boss线程中accept新的连接，并注册到I/O EventLoop上
+	class Acceptor implements EventLoop.IoHandler {
+
+		@Override
+		public void registered(SelectionKey key) {
+		}
+
+		@Override
+		public void ready(SelectionKey key) throws IOException {
+			for (;;) {
+				SocketChannel channel;
+				try {
+					channel = server.accept();
+				} catch (IOException e) {
+					//accept失败（例如文件句柄耗尽）不影响后续的accept
+					if (server.isOpen())
+						LOGGER.error("Accept connection failed! " + e.getMessage());
+					return;
+				}
+				if (channel == null) {
+					return;
+				}
+				if (draining) {
+					channel.close();
+					continue;
+				}
+				Worker worker = new Worker(context);
+				workers.add(worker);
+				try {
+					channel.socket().setTcpNoDelay(true);
+					worker.channel = new NioChannel(channel, ioGroup.next(), worker, RpcPacketCodec.DEFAULT_MAX_FRAME_LENGTH);
+				} catch (IOException e) {
+					LOGGER.error("Register connection " + channel.socket().getRemoteSocketAddress() + " failed! " + e.getMessage());
+					workers.remove(worker);
+					channel.close();
+				}
+			}
+		}
+
+		@Override
+		public void closed(Throwable cause) {
+			if (cause != null && server.isOpen()) {
+				LOGGER.error("Socket server acceptor stopped! " + cause.getMessage());
+			}
+		}
+	}
+
+	//处理一条客户端连接上的请求帧
+	//请求帧在I/O线程中解码，每个请求提交到executor中执行，响应帧按照执行完成的顺序写回，
+	//客户端通过响应包中的requestId区分各个请求的结果
+	class Worker implements NioChannel.FrameHandler {
 		//服务器上下文
 		private RpcServerContext context;
-		
-		Worker(Socket socket, RpcServerContext context){
-			this.socket = socket;
+		//Worker对应的连接
+		volatile NioChannel channel;
+		//连接上正在处理的请求数
+		private final AtomicInteger inFlight = new AtomicInteger();
+		//连接上最后一次收到请求或者写回响应的时间
+		private volatile long lastActiveTime = System.currentTimeMillis();
+		//握手时与客户端协商的帧编码参数
+		private volatile RpcSession session = RpcSession.NONE;
+		//连接上正在排队或者执行的请求，key是requestId
+		private final Map<Long, RpcCall> calls = new ConcurrentHashMap<Long, RpcCall>();
+
+		Worker(RpcServerContext context){
 			this.context = context;
 		}
-		
+
+		//连接上没有正在处理的请求以及等待写出的响应，并且已经空闲超时或者服务器正在停止
+		boolean isIdle(long now) {
+			NioChannel channel = this.channel;
+			if (channel == null || this.inFlight.get() > 0 || channel.hasPendingWrites()) {
+				return false;
+			}
+			return draining || (idleTimeout > 0 && now - this.lastActiveTime >= idleTimeout);
+		}
+
+		void close() {
+			NioChannel channel = this.channel;
+			if (channel != null) {
+				channel.close();
+			}
+		}
+
 		@Override
-		public void run() {
-			ObjectInputStream input = null;
-			ObjectOutputStream output = null;
+		public void frameReceived(NioChannel channel, ByteBuffer frame) {
+			RpcPacket requestPacket;
 			try {
-				//从上下文中获取所有，所有支持远程调用的方法
-				input = new ObjectInputStream(socket.getInputStream());
-				RpcPacket requestPacket = (RpcPacket) input.readObject();
-				String invokeMethodName = requestPacket.getInvokeMethod();			
-				Map<String,RpcMethodWrapper> methodMapping = context.getMethodMapping();
-
-		        //响应包体
-		        RpcPacket responsePacket  = null;
-		        //如果远程调用的方法，没有在rpc的methodMapping中
-				if(methodMapping==null || !methodMapping.containsKey(invokeMethodName)){
-					//在MethodMapping中找不到RPC的方法
-					//则返回无法找到对应Mapping的错误信息
-					Object result = "Can not find " + requestPacket.getInvokeMethod() + " in the RPC method mapping!";
-					//设置返回的头信息
-					Map<String, Collection<String>> headers = new HashMap<String, Collection<String>>();
-					ArrayList<String> headerValueList = new ArrayList<String>(Arrays.asList(ProtocolType.SOCKET.getName()));
-					headers.put("X-RPC-CALL", headerValueList);
-					//设置返回包体大小
-					//headers.put("Content-Length", new ArrayList<String>(Arrays.asList());
-					//生成返回的包
-					PpcPacketBody body = new PpcPacketBody(result);
-					responsePacket = new  RpcPacket(requestPacket.getInvokeMethod(),headers,null,body);
-					
-				}else {
-					//获取支持远程调用方法的Wrapper
-					RpcMethodWrapper wrapper = methodMapping.get(invokeMethodName);
-					Method method = wrapper.getMethod();
-					Class<?> returnType = wrapper.getReturnType();
-					Object[] args = requestPacket.getPacketBody().getMethodArgs();
-					Object result = method.invoke(wrapper.getTarget(), args);
-					//设置返回的头信息
-					Map<String, Collection<String>> headers = new HashMap<String, Collection<String>>();
-					ArrayList<String> headerValueList = new ArrayList<String>(Arrays.asList(ProtocolType.SOCKET.getName()));
-					headers.put("X-RPC-CALL", headerValueList);
-					//设置返回包体大小
-					//headers.put("Content-Length", new ArrayList<String>(Arrays.asList());
-					//生成返回的包
-					PpcPacketBody body = new PpcPacketBody(result);
-			        responsePacket = new  RpcPacket(requestPacket.getInvokeMethod(),headers,returnType,body);
+				requestPacket = RpcPacketCodec.decode(frame, this.session);
+			} catch (IOException e) {
+				LOGGER.error("Read request packet from " + channel.remoteAddress() + " failed! " + e.getMessage());
+				channel.close();
+				return;
+			}
+			this.lastActiveTime = System.currentTimeMillis();
+			//握手包直接在I/O线程中响应
+			if (requestPacket.hasFlag(RpcPacketCodec.FLAG_HANDSHAKE)) {
+				this.handshake(channel, requestPacket);
+				return;
+			}
+			//取消请求的帧同样直接在I/O线程中处理
+			if (requestPacket.hasFlag(RpcPacketCodec.FLAG_CANCEL)) {
+				this.cancel(requestPacket.getRequestId());
+				return;
+			}
+			//服务器正在停止时不再接收新的请求，响应FLAG_BUSY，客户端可以马上在其他Server上重试
+			if (draining) {
+				this.writeBusy(channel, requestPacket);
+				return;
+			}
+			RpcMethodWrapper wrapper = this.lookup(requestPacket);
+			//截止时间从收到请求时开始计算，不包括网络传输的时间，服务端总是比客户端晚放弃
+			RpcCall call = new RpcCall(requestPacket.getTimeout() > 0 ? RpcDeadline.after(requestPacket.getTimeout()) : RpcDeadline.unbounded());
+			//超过自适应并发限制的请求直接响应FLAG_BUSY，不进入线程池排队
+			GradientLimiter serverLimiter = SocketServer.this.serverLimiter;
+			GradientLimiter methodLimiter = getMethodLimiter(wrapper);
+			if (serverLimiter != null && !serverLimiter.tryAcquire()) {
+				this.shed(channel, requestPacket);
+				return;
+			}
+			if (methodLimiter != null && !methodLimiter.tryAcquire()) {
+				serverLimiter.cancel();
+				this.shed(channel, requestPacket);
+				return;
+			}
+			//隔离舱的并发已满时同样直接响应FLAG_BUSY
+			MethodBulkhead bulkhead = wrapper != null ? bulkheads.get(wrapper) : null;
+			if (bulkhead != null && !bulkhead.tryAcquire()) {
+				if (serverLimiter != null) {
+					serverLimiter.cancel();
+					if (methodLimiter != null) {
+						methodLimiter.cancel();
+					}
+				}
+				this.shedBulkhead(channel, requestPacket, bulkhead);
+				return;
+			}
+			Executor target = bulkhead != null ? bulkhead.executor(executor) : executor;
+			long start = System.nanoTime();
+			long requestId = requestPacket.getRequestId();
+			this.inFlight.incrementAndGet();
+			this.calls.put(requestId, call);
+			try {
+				target.execute(() -> {
+					try {
+						this.process(channel, requestPacket, wrapper, call);
+					} finally {
+						this.calls.remove(requestId);
+						this.lastActiveTime = System.currentTimeMillis();
+						this.inFlight.decrementAndGet();
+						if (bulkhead != null) {
+							bulkhead.release();
+						}
+						if (serverLimiter != null) {
+							long elapsed = System.nanoTime() - start;
+							serverLimiter.release(elapsed);
+							if (methodLimiter != null) {
+								methodLimiter.release(elapsed);
+							}
+						}
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				this.calls.remove(requestId);
+				this.inFlight.decrementAndGet();
+				if (bulkhead != null) {
+					bulkhead.cancel();
+				}
+				if (serverLimiter != null) {
+					serverLimiter.cancel();
+					if (methodLimiter != null) {
+						methodLimiter.cancel();
+					}
+				}
+				this.reject(channel, requestPacket, wrapper);
+			}
+		}
+
+		//超过自适应并发限制时，响应FLAG_BUSY
+		void shed(NioChannel channel, RpcPacket requestPacket) {
+			long count = rejected.incrementAndGet();
+			if ((count & 1023) == 1) {
+				LOGGER.warn("Socket server is overloaded, " + count + " request(s) rejected, concurrency limit: " + serverLimiter);
+			}
+			this.writeBusy(channel, requestPacket);
+		}
+
+		//执行请求，并写回响应包
+		//已经被取消或者超过截止时间的请求，客户端已经放弃等待，直接丢弃而不调用方法，也不写回响应
+		void process(NioChannel channel, RpcPacket requestPacket, RpcMethodWrapper wrapper, RpcCall call) {
+			if (!call.start()) {
+				return;
+			}
+			try {
+				RpcDeadline deadline = call.getDeadline();
+				if (deadline.isExpired()) {
+					long count = expired.incrementAndGet();
+					if ((count & 1023) == 1) {
+						LOGGER.warn("Socket server dropped " + count + " expired request(s), last one from " + channel.remoteAddress());
+					}
+					return;
+				}
+				RpcDeadline previous = RpcDeadline.attach(deadline);
+				try {
+					RpcPacket responsePacket = this.invoke(requestPacket, wrapper);
+					if (!call.isCancelled()) {
+						this.write(channel, responsePacket);
+					}
+				} finally {
+					RpcDeadline.restore(previous);
+				}
+			} finally {
+				call.finish();
+			}
+		}
+
+		//客户端取消请求，请求已经执行完成时忽略
+		void cancel(long requestId) {
+			RpcCall call = this.calls.get(requestId);
+			if (call != null) {
+				call.cancel(interruptOnCancel);
+				long count = cancelled.incrementAndGet();
+				if ((count & 1023) == 1) {
+					LOGGER.info("Socket server cancelled " + count + " request(s) abandoned by clients");
+				}
+			}
+		}
+
+		//隔离舱的并发已满时，响应FLAG_BUSY
+		void shedBulkhead(NioChannel channel, RpcPacket requestPacket, MethodBulkhead bulkhead) {
+			long count = rejected.incrementAndGet();
+			if ((bulkhead.getRejected() & 1023) == 1) {
+				LOGGER.warn("Socket server bulkhead is full, " + count + " request(s) rejected, " + bulkhead);
+			}
+			this.writeBusy(channel, requestPacket);
+		}
+
+		//业务线程池已满或者服务器正在停止时，按照RejectionPolicy处理请求
+		void reject(NioChannel channel, RpcPacket requestPacket, RpcMethodWrapper wrapper) {
+			MethodBulkhead bulkhead = wrapper != null ? bulkheads.get(wrapper) : null;
+			if (executor.isShutdown() || (bulkhead != null && bulkhead.isShutdown())) {
+				LOGGER.error("Socket server is stopping, reject request from " + channel.remoteAddress());
+				channel.close();
+				return;
+			}
+			long count = rejected.incrementAndGet();
+			if ((count & 1023) == 1) {
+				LOGGER.warn("Socket server is overloaded, " + count + " request(s) rejected with policy " + rejectionPolicy);
+			}
+			switch (rejectionPolicy) {
+			case CLOSE:
+				channel.close();
+				break;
+			default:
+				this.writeBusy(channel, requestPacket);
+				break;
+			}
+		}
+
+		//响应FLAG_BUSY的帧，只有固定包头
+		void writeBusy(NioChannel channel, RpcPacket requestPacket) {
+			RpcPacket busyPacket = new RpcPacket("", null, new byte[0]);
+			busyPacket.setRequestId(requestPacket.getRequestId());
+			busyPacket.setMethodId(requestPacket.getMethodId());
+			busyPacket.setFlags((byte) (RpcPacketCodec.FLAG_RESPONSE | RpcPacketCodec.FLAG_BUSY));
+			this.write(channel, busyPacket);
+		}
+
+		//响应客户端的握手请求，握手响应按照握手之前的格式编码，之后连接上的帧都按照协商的RpcSession编解码
+		void handshake(NioChannel channel, RpcPacket requestPacket) {
+			try {
+				RpcHandshake request = RpcHandshake.decode(requestPacket.getPayload());
+				RpcHandshake response = RpcHandshake.accept(request, SerializerFactory.getSerializerNames(), COMPRESSIONS,
+						registry.getMethodIds(), dictionary);
+				if (request.getVersion() != response.getVersion()) {
+					LOGGER.warn("Client " + channel.remoteAddress() + " uses rpc protocol version " + request.getVersion()
+							+ ", but the server uses " + response.getVersion());
 				}
-				
-		        output = new ObjectOutputStream(socket.getOutputStream());
-		        output.writeObject(responsePacket);
-		        output.flush();
-		        output.close();
-		        socket.close();
-			} catch (Exception e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}finally {
+				RpcPacket responsePacket = new RpcPacket("", null, response.encode());
+				responsePacket.setRequestId(requestPacket.getRequestId());
+				responsePacket.setFlags((byte) (RpcPacketCodec.FLAG_RESPONSE | RpcPacketCodec.FLAG_HANDSHAKE));
+				ByteBuffer responseFrame = RpcPacketCodec.encode(responsePacket);
+				this.session = response.toSession();
+				channel.write(responseFrame);
+			} catch (IOException e) {
+				LOGGER.error("Handshake with " + channel.remoteAddress() + " failed! " + e.getMessage());
+				channel.close();
+			}
+		}
+
+		@Override
+		public void channelClosed(NioChannel channel, Throwable cause) {
+			workers.remove(this);
+			if (cause != null) {
+				LOGGER.debug("Connection " + channel + " closed: " + cause.getMessage());
+			}
+		}
+
+		//查找请求调用的方法：握手之后的请求帧只携带方法ID，否则按照方法签名查找
+		RpcMethodWrapper lookup(RpcPacket requestPacket) {
+			return requestPacket.getMethodId() != 0
+					? registry.get(requestPacket.getMethodId()) : registry.get(requestPacket.getInvokeMethod());
+		}
+
+		//执行请求包中的远程调用，并生成响应包
+		//方法抛出异常、参数无法反序列化、找不到方法等失败时，包体是序列化后的错误信息，并设置FLAG_ERROR
+		RpcPacket invoke(RpcPacket requestPacket, RpcMethodWrapper wrapper) {
+			String invokeMethodName = wrapper != null ? wrapper.getSignature()
+					: requestPacket.getMethodId() != 0 ? "method#" + requestPacket.getMethodId() : requestPacket.getInvokeMethod();
+
+			//设置返回的头信息
+			Map<String, Collection<String>> headers = new HashMap<String, Collection<String>>();
+			ArrayList<String> headerValueList = new ArrayList<String>(Arrays.asList(ProtocolType.SOCKET.getName()));
+			headers.put("X-RPC-CALL", headerValueList);
+			//设置返回包体大小
+			//headers.put("Content-Length", new ArrayList<String>(Arrays.asList());
+			//请求包体使用的序列化器，由客户端通过X-RPC-SERIALIZER头信息指定
+			String serializerName = SerializerFactory.getSerializerName(requestPacket.getHeaders());
+			Serializer serializer = null;
+			Object result;
+			Class<?> returnType = null;
+			boolean failed = true;
+			if (serializerName != null && !SerializerFactory.contains(serializerName)) {
+				//客户端使用了服务端未注册的序列化器，则使用默认的序列化器返回错误信息
+				serializer = SerializerFactory.getSerializer(SerializerFactory.DEFAULT_SERIALIZER);
+				result = "Unsupported serializer " + serializerName + " of " + invokeMethodName + "!";
+			}else if(wrapper == null){
+				//如果远程调用的方法，没有在rpc的methodMapping中
+				//则返回无法找到对应Mapping的错误信息
+				serializer = SerializerFactory.getSerializer(serializerName);
+				result = "Can not find " + invokeMethodName + " in the RPC method mapping!";
+			}else {
+				Method method = wrapper.getMethod();
+				serializer = SerializerFactory.getSerializer(serializerName);
+				//请求包的包体是客户端序列化后的方法参数，只在这里按照方法的参数类型反序列化一次
+				Object[] args = null;
+				try {
+					args = serializer.deserializeArgs(requestPacket.getPayload(), method.getGenericParameterTypes());
+				} catch (Exception e) {
+					LOGGER.error("Resolve the arguments of " + invokeMethodName + " with " + serializer.getName() + " failed! " + e.getMessage());
+				}
+				if (args != null) {
 					try {
-						if (output != null)
-							output.close();
-						if (input != null)
-							input.close();
-						if (socket != null)
-							socket.close();
-					} catch (IOException e) {
-						// TODO Auto-generated catch block
-						e.printStackTrace();
+						result = wrapper.invoke(args);
+						returnType = wrapper.getReturnType();
+						failed = false;
+					} catch (Throwable e) {
+						LOGGER.error("Invoke RPC method " + invokeMethodName + " failed! " + e);
+						result = "Invoke " + invokeMethodName + " failed! " + e;
 					}
+				}else {
+					result = "Can not resolve the arguments of " + invokeMethodName + "!";
+				}
+				//如果@RpcController不支持客户端使用的序列化器，那么使用其首选的序列化器编码返回值
+				serializer = this.responseSerializer(wrapper, serializer);
+			}
+			headers.put(SerializerFactory.SERIALIZER_HEADER, new ArrayList<String>(Arrays.asList(serializer.getName())));
+			//生成返回的包，方法返回值只在这里序列化一次
+			byte[] payload;
+			try {
+				payload = serializer.serialize(result);
+			} catch (IOException e) {
+				LOGGER.error("Serialize the result of " + invokeMethodName + " with " + serializer.getName() + " failed! " + e.getMessage());
+				returnType = null;
+				failed = true;
+				payload = this.serializeError(serializer, "Serialize the result of " + invokeMethodName + " failed! " + e.getMessage());
+			}
+			RpcPacket responsePacket = new RpcPacket(invokeMethodName, headers, returnType, payload);
+			responsePacket.setRequestId(requestPacket.getRequestId());
+			responsePacket.setMethodId(wrapper != null ? wrapper.getId() : requestPacket.getMethodId());
+			responsePacket.setFlags(failed ? (byte) (RpcPacketCodec.FLAG_RESPONSE | RpcPacketCodec.FLAG_ERROR) : RpcPacketCodec.FLAG_RESPONSE);
+			return responsePacket;
+		}
+
+		//获取编码返回值的序列化器
+		Serializer responseSerializer(RpcMethodWrapper wrapper, Serializer requestSerializer) {
+			String[] serializers = wrapper.getSerializers();
+			if (serializers == null || serializers.length == 0
+					|| Arrays.asList(serializers).contains(requestSerializer.getName())) {
+				return requestSerializer;
+			}
+			return SerializerFactory.getSerializer(serializers[0]);
+		}
+
+		byte[] serializeError(Serializer serializer, String message) {
+			try {
+				return serializer.serialize(message);
+			} catch (IOException e) {
+				return new byte[0];
+			}
+		}
+
+		//将响应包编码成帧，交给连接所在的I/O线程写回客户端
+		void write(NioChannel channel, RpcPacket responsePacket) {
+			try {
+				channel.write(RpcPacketCodec.encode(responsePacket, this.session));
+			} catch (IOException e) {
+				LOGGER.error("Write response packet to " + channel.remoteAddress() + " failed! " + e.getMessage());
+				channel.close();
+			}
+		}
+	}
+
+	//业务线程池满时的处理方式
+	public enum RejectionPolicy {
+		//立即响应FLAG_BUSY的帧，客户端收到之后可以马上在其他Server上重试
+		BUSY,
+		//关闭连接，连接上所有正在等待的请求都失败
+		CLOSE;
+
+		//按照配置的名称获取，例如：busy、close
+		//不支持在I/O线程中直接执行（caller-runs）：会阻塞同一个EventLoop上的所有连接，并且绕过并发限制，按照busy处理
+		public static RejectionPolicy of(String name) {
+			if (name == null || name.trim().isEmpty()) {
+				return BUSY;
+			}
+			String policy = name.trim().toUpperCase().replace('-', '_');
+			if ("CALLER_RUNS".equals(policy)) {
+				LOGGER.warn("Socket server rejection policy caller-runs is not supported, use busy instead");
+				return BUSY;
 			}
-			
-			
+			return valueOf(policy);
 		}
 	}
 
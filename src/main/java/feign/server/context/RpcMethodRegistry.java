@@ -0,0 +1,93 @@
+package feign.server.context;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import feign.server.method.RpcMethodWrapper;
+
+//不可变的RPC方法注册表
+//1、按照方法签名（类名.方法名(参数类型,...)）区分重载的方法，参数类型使用简单类名，与Feign的configKey一致
+//2、每个方法按照签名排序后分配从1开始的整数ID，客户端在握手时获取签名与ID的对应关系，之后的请求帧只携带ID
+//3、兼容只使用"类名.方法名"调用的客户端，但是只有在方法没有重载时才能找到
+public class RpcMethodRegistry {
+
+	//按照ID索引的方法，下标0不使用
+	private final RpcMethodWrapper[] methods;
+
+	private final Map<String, RpcMethodWrapper> signatureToMethod;
+
+	//没有重载的方法，key是类名.方法名
+	private final Map<String, RpcMethodWrapper> nameToMethod;
+
+	private final Map<String, Integer> methodIds;
+
+	RpcMethodRegistry(Collection<RpcMethodWrapper> wrappers) {
+		List<RpcMethodWrapper> sorted = new ArrayList<RpcMethodWrapper>(wrappers);
+		sorted.sort((w1, w2) -> w1.getSignature().compareTo(w2.getSignature()));
+		this.methods = new RpcMethodWrapper[sorted.size() + 1];
+		Map<String, RpcMethodWrapper> signatureToMethod = new HashMap<String, RpcMethodWrapper>();
+		Map<String, RpcMethodWrapper> nameToMethod = new HashMap<String, RpcMethodWrapper>();
+		Set<String> overloaded = new HashSet<String>();
+		Map<String, Integer> methodIds = new LinkedHashMap<String, Integer>();
+		for (int i = 0; i < sorted.size(); i++) {
+			RpcMethodWrapper wrapper = sorted.get(i);
+			wrapper.setId(i + 1);
+			this.methods[i + 1] = wrapper;
+			signatureToMethod.put(wrapper.getSignature(), wrapper);
+			methodIds.put(wrapper.getSignature(), wrapper.getId());
+			String name = wrapper.getClassName() + "." + wrapper.getMethodName();
+			if (nameToMethod.put(name, wrapper) != null) {
+				overloaded.add(name);
+			}
+		}
+		nameToMethod.keySet().removeAll(overloaded);
+		this.signatureToMethod = Collections.unmodifiableMap(signatureToMethod);
+		this.nameToMethod = Collections.unmodifiableMap(nameToMethod);
+		this.methodIds = Collections.unmodifiableMap(methodIds);
+	}
+
+	//根据方法ID获取方法，不存在时返回null
+	public RpcMethodWrapper get(int id) {
+		return id > 0 && id < this.methods.length ? this.methods[id] : null;
+	}
+
+	//根据方法签名或者类名.方法名获取方法，不存在时返回null
+	public RpcMethodWrapper get(String invokeMethod) {
+		if (invokeMethod == null) {
+			return null;
+		}
+		RpcMethodWrapper wrapper = this.signatureToMethod.get(invokeMethod);
+		return wrapper != null ? wrapper : this.nameToMethod.get(invokeMethod);
+	}
+
+	//方法签名与方法ID的对应关系
+	public Map<String, Integer> getMethodIds() {
+		return this.methodIds;
+	}
+
+	public int size() {
+		return this.methods.length - 1;
+	}
+
+	//生成方法的签名，例如：com.migu.Controller2.rpcHelloWorldWithParams(String,int)
+	public static String signatureOf(String className, Method method) {
+		StringBuilder signature = new StringBuilder(className).append('.').append(method.getName()).append('(');
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		for (int i = 0; i < parameterTypes.length; i++) {
+			if (i > 0) {
+				signature.append(',');
+			}
+			signature.append(parameterTypes[i].getSimpleName());
+		}
+		return signature.append(')').toString();
+	}
+
+}
@@ -1,5 +1,6 @@
 package feign.server.context;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -8,21 +9,42 @@ import feign.server.method.RpcMethodWrapper;
 
 public class RpcServerContext {
 
+	//key是方法的签名，例如：com.migu.Controller2.rpcHelloWorldWithParams(String)
 	private Map<String,RpcMethodWrapper> methodMapping;
 
+	//根据methodMapping生成的不可变注册表
+	private volatile RpcMethodRegistry registry;
+
 	public RpcServerContext() {
 	}
-	
+
 	public Map<String,RpcMethodWrapper> getMethodMapping() {
 		return this.methodMapping;
 	}
 
-	//往MethodMapping中新增wrapper对象
-	public void appendMethodMapping(RpcMethodWrapper wrapper) {
+	//往MethodMapping中新增wrapper对象，重载的方法通过签名区分，不会互相覆盖
+	public synchronized void appendMethodMapping(RpcMethodWrapper wrapper) {
 		if (methodMapping == null)
 			methodMapping = new HashMap<String,RpcMethodWrapper>();
-		methodMapping.put(wrapper.getClassName()+"."+wrapper.getMethodName(), wrapper);
-		
+		if (wrapper.getSignature() == null)
+			wrapper.setSignature(RpcMethodRegistry.signatureOf(wrapper.getClassName(), wrapper.getMethod()));
+		methodMapping.put(wrapper.getSignature(), wrapper);
+		this.registry = null;
 	}
-	
+
+	//获取方法注册表，在所有方法添加完成之后生成，并分配方法ID
+	public RpcMethodRegistry getRegistry() {
+		RpcMethodRegistry registry = this.registry;
+		if (registry == null) {
+			synchronized (this) {
+				if (this.registry == null) {
+					this.registry = new RpcMethodRegistry(methodMapping != null
+							? methodMapping.values() : Collections.<RpcMethodWrapper>emptyList());
+				}
+				registry = this.registry;
+			}
+		}
+		return registry;
+	}
+
 }
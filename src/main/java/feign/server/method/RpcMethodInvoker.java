@@ -0,0 +1,58 @@
+package feign.server.method;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//RPC方法的调用器，在注册RpcMethodWrapper时创建一次，之后每次请求直接调用
+//1、默认为每个方法生成一个调用器类，在invoke中直接调用目标Bean的方法（invokevirtual），
+//   调用点是单态的，JIT可以内联，没有Method.invoke的访问检查以及参数校验
+//2、方法或者类不是public等无法生成调用器类的情况下，退回到反射调用
+//invoke抛出的是业务方法自身的异常，不会被包装成InvocationTargetException
+public abstract class RpcMethodInvoker {
+	private static final Logger LOGGER = LoggerFactory.getLogger(RpcMethodInvoker.class);
+
+	//生成的调用器类需要继承RpcMethodInvoker
+	protected RpcMethodInvoker() {
+	}
+
+	public abstract Object invoke(Object[] args) throws Throwable;
+
+	//创建绑定到target上的method的调用器
+	public static RpcMethodInvoker create(Object target, Method method) {
+		if (RpcMethodInvokerGenerator.canGenerate(method)) {
+			try {
+				return RpcMethodInvokerGenerator.generate(target, method);
+			} catch (Throwable e) {
+				LOGGER.warn("Generate invoker of " + method + " failed, fallback to reflection! " + e);
+			}
+		}
+		return new ReflectiveInvoker(target, method);
+	}
+
+	//基于反射的调用器
+	static final class ReflectiveInvoker extends RpcMethodInvoker {
+
+		private final Object target;
+
+		private final Method method;
+
+		ReflectiveInvoker(Object target, Method method) {
+			this.target = target;
+			this.method = method;
+			this.method.setAccessible(true);
+		}
+
+		@Override
+		public Object invoke(Object[] args) throws Throwable {
+			try {
+				return this.method.invoke(this.target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause() != null ? e.getCause() : e;
+			}
+		}
+	}
+
+}
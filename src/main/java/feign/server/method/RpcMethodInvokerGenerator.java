@@ -0,0 +1,190 @@
+package feign.server.method;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+
+//使用ASM为RPC方法生成RpcMethodInvoker的子类，生成的invoke方法相当于：
+//	public Object invoke(Object[] args) {
+//		return this.target.method((P0) args[0], ((Number) args[1]).intValue(), ...);
+//	}
+//基本类型的参数按照Number拆箱，允许反序列化得到的Integer、Long等数值类型之间的转换
+final class RpcMethodInvokerGenerator implements Opcodes {
+
+	private static final String SUPER_NAME = Type.getInternalName(RpcMethodInvoker.class);
+
+	private static final String INVOKE_DESCRIPTOR = Type.getMethodDescriptor(Type.getType(Object.class), Type.getType(Object[].class));
+
+	private static final AtomicInteger COUNTER = new AtomicInteger();
+
+	private RpcMethodInvokerGenerator() {
+	}
+
+	//生成的类与目标类不在同一个包中，所以只能调用public类上的public方法
+	static boolean canGenerate(Method method) {
+		if (!Modifier.isPublic(method.getModifiers())) {
+			return false;
+		}
+		for (Class<?> clazz = method.getDeclaringClass(); clazz != null; clazz = clazz.getEnclosingClass()) {
+			if (!Modifier.isPublic(clazz.getModifiers())) {
+				return false;
+			}
+		}
+		for (Class<?> parameterType : method.getParameterTypes()) {
+			if (!isAccessible(parameterType)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	static RpcMethodInvoker generate(Object target, Method method) throws Exception {
+		Class<?> declaringClass = method.getDeclaringClass();
+		boolean isStatic = Modifier.isStatic(method.getModifiers());
+		String className = SUPER_NAME + "$$" + declaringClass.getSimpleName() + "$$" + method.getName()
+				+ "$$" + COUNTER.incrementAndGet();
+		String owner = Type.getInternalName(declaringClass);
+		String targetDescriptor = Type.getDescriptor(declaringClass);
+
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(V1_6, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, className, null, SUPER_NAME, null);
+		if (!isStatic) {
+			cw.visitField(ACC_PRIVATE | ACC_FINAL, "target", targetDescriptor, null, null).visitEnd();
+		}
+
+		//构造方法：public Invoker(Object target)
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "(Ljava/lang/Object;)V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, SUPER_NAME, "<init>", "()V", false);
+		if (!isStatic) {
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitVarInsn(ALOAD, 1);
+			mv.visitTypeInsn(CHECKCAST, owner);
+			mv.visitFieldInsn(PUTFIELD, className, "target", targetDescriptor);
+		}
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		//public Object invoke(Object[] args) throws Throwable
+		mv = cw.visitMethod(ACC_PUBLIC, "invoke", INVOKE_DESCRIPTOR, null, new String[] { "java/lang/Throwable" });
+		mv.visitCode();
+		if (!isStatic) {
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitFieldInsn(GETFIELD, className, "target", targetDescriptor);
+		}
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		for (int i = 0; i < parameterTypes.length; i++) {
+			mv.visitVarInsn(ALOAD, 1);
+			pushInt(mv, i);
+			mv.visitInsn(AALOAD);
+			unbox(mv, parameterTypes[i]);
+		}
+		int opcode = isStatic ? INVOKESTATIC : declaringClass.isInterface() ? INVOKEINTERFACE : INVOKEVIRTUAL;
+		mv.visitMethodInsn(opcode, owner, method.getName(), Type.getMethodDescriptor(method), declaringClass.isInterface());
+		box(mv, method.getReturnType());
+		mv.visitInsn(ARETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		cw.visitEnd();
+
+		Class<?> invokerClass = new InvokerClassLoader(classLoader(declaringClass)).define(className.replace('/', '.'), cw.toByteArray());
+		return (RpcMethodInvoker) invokerClass.getConstructor(Object.class).newInstance(target);
+	}
+
+	private static boolean isAccessible(Class<?> clazz) {
+		while (clazz.isArray()) {
+			clazz = clazz.getComponentType();
+		}
+		for (; clazz != null; clazz = clazz.getEnclosingClass()) {
+			if (!clazz.isPrimitive() && !Modifier.isPublic(clazz.getModifiers())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void pushInt(MethodVisitor mv, int value) {
+		if (value <= 5) {
+			mv.visitInsn(ICONST_0 + value);
+		} else if (value <= Byte.MAX_VALUE) {
+			mv.visitIntInsn(BIPUSH, value);
+		} else {
+			mv.visitIntInsn(SIPUSH, value);
+		}
+	}
+
+	//将Object转换成参数的类型
+	private static void unbox(MethodVisitor mv, Class<?> type) {
+		if (!type.isPrimitive()) {
+			if (type != Object.class) {
+				mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+			}
+		} else if (type == boolean.class) {
+			mv.visitTypeInsn(CHECKCAST, "java/lang/Boolean");
+			mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Boolean", "booleanValue", "()Z", false);
+		} else if (type == char.class) {
+			mv.visitTypeInsn(CHECKCAST, "java/lang/Character");
+			mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Character", "charValue", "()C", false);
+		} else {
+			String descriptor = Type.getDescriptor(type);
+			mv.visitTypeInsn(CHECKCAST, "java/lang/Number");
+			mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Number", type.getName() + "Value", "()" + descriptor, false);
+		}
+	}
+
+	//将方法的返回值转换成Object，void方法返回null
+	private static void box(MethodVisitor mv, Class<?> type) {
+		if (type == void.class) {
+			mv.visitInsn(ACONST_NULL);
+		} else if (type.isPrimitive()) {
+			Type wrapper = Type.getType(wrapperOf(type));
+			mv.visitMethodInsn(INVOKESTATIC, wrapper.getInternalName(), "valueOf",
+					Type.getMethodDescriptor(wrapper, Type.getType(type)), false);
+		}
+	}
+
+	private static Class<?> wrapperOf(Class<?> type) {
+		if (type == boolean.class) {
+			return Boolean.class;
+		} else if (type == char.class) {
+			return Character.class;
+		} else if (type == byte.class) {
+			return Byte.class;
+		} else if (type == short.class) {
+			return Short.class;
+		} else if (type == int.class) {
+			return Integer.class;
+		} else if (type == long.class) {
+			return Long.class;
+		} else if (type == float.class) {
+			return Float.class;
+		}
+		return Double.class;
+	}
+
+	private static ClassLoader classLoader(Class<?> declaringClass) {
+		ClassLoader classLoader = declaringClass.getClassLoader();
+		return classLoader != null ? classLoader : RpcMethodInvoker.class.getClassLoader();
+	}
+
+	//定义调用器类的ClassLoader，每个调用器类使用单独的ClassLoader，目标类被卸载时调用器类也可以被卸载
+	//父ClassLoader是目标类的ClassLoader，因此可以访问目标类以及RpcMethodInvoker
+	static final class InvokerClassLoader extends ClassLoader {
+
+		InvokerClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		Class<?> define(String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+
+}
@@ -2,11 +2,18 @@ package feign.server.method;
 
 import java.lang.reflect.Method;
 
+import feign.annotation.Bulkhead;
 import feign.enumerate.ProtocolType;
 
 
 public class RpcMethodWrapper {
 
+	//方法ID，由RpcMethodRegistry分配
+	private int id;
+	
+	//方法签名，例如：com.migu.Controller2.rpcHelloWorldWithParams(String)
+	private String signature;
+
 	private Object target;
 	
 	private String className;
@@ -22,6 +29,31 @@ public class RpcMethodWrapper {
 	private Class<?> returnType;
 	
 	private ProtocolType[] protocol;
+	
+	//支持的序列化器，为空时支持所有已注册的序列化器
+	private String[] serializers;
+	
+	//注册时创建的方法调用器，避免每次请求都通过Method.invoke反射调用
+	private RpcMethodInvoker invoker;
+
+	//方法或者所在的Controller上设置的隔离舱，没有设置时为null
+	private Bulkhead bulkhead;
+
+	public int getId() {
+		return id;
+	}
+
+	public void setId(int id) {
+		this.id = id;
+	}
+
+	public String getSignature() {
+		return signature;
+	}
+
+	public void setSignature(String signature) {
+		this.signature = signature;
+	}
 
 	public Object getTarget() {
 		return target;
@@ -87,5 +119,37 @@ public class RpcMethodWrapper {
 		this.protocol = protocols;
 	}
 
+	//调用RPC方法，抛出的是方法自身的异常
+	public Object invoke(Object[] args) throws Throwable {
+		if (this.invoker == null) {
+			this.invoker = RpcMethodInvoker.create(this.target, this.method);
+		}
+		return this.invoker.invoke(args);
+	}
+
+	public RpcMethodInvoker getInvoker() {
+		return invoker;
+	}
+
+	public void setInvoker(RpcMethodInvoker invoker) {
+		this.invoker = invoker;
+	}
+
+	public String[] getSerializers() {
+		return serializers;
+	}
+
+	public void setSerializers(String[] serializers) {
+		this.serializers = serializers;
+	}
+
+	public Bulkhead getBulkhead() {
+		return bulkhead;
+	}
+
+	public void setBulkhead(Bulkhead bulkhead) {
+		this.bulkhead = bulkhead;
+	}
+
 	
 }
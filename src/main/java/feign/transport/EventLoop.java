@@ -0,0 +1,137 @@
+package feign.transport;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//基于Selector的I/O事件循环，一个EventLoop对应一个I/O线程
+//注册到EventLoop上的Channel，其所有的读写事件都在该I/O线程中处理
+public class EventLoop implements Runnable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(EventLoop.class);
+
+	private final Selector selector;
+
+	private final Thread thread;
+
+	//需要在I/O线程中执行的任务
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+	//是否已经唤醒了selector，避免重复调用wakeup
+	private final AtomicBoolean wakenUp = new AtomicBoolean();
+
+	private volatile boolean running = true;
+
+	public EventLoop(String name) throws IOException {
+		this.selector = Selector.open();
+		this.thread = new Thread(this, name);
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	//将Channel注册到当前EventLoop，handler负责处理Channel上就绪的事件
+	public void register(final SelectableChannel channel, final int interestOps, final IoHandler handler) {
+		execute(() -> {
+			try {
+				handler.registered(channel.register(this.selector, interestOps, handler));
+			} catch (ClosedChannelException e) {
+				handler.closed(e);
+			}
+		});
+	}
+
+	//在I/O线程中执行任务，如果当前线程就是I/O线程，那么直接执行
+	public void execute(Runnable task) {
+		if (inEventLoop()) {
+			task.run();
+			return;
+		}
+		this.tasks.offer(task);
+		if (this.wakenUp.compareAndSet(false, true)) {
+			this.selector.wakeup();
+		}
+	}
+
+	public boolean inEventLoop() {
+		return Thread.currentThread() == this.thread;
+	}
+
+	@Override
+	public void run() {
+		while (this.running) {
+			try {
+				this.selector.select(1000);
+				this.wakenUp.set(false);
+				processSelectedKeys();
+				runTasks();
+			} catch (Throwable e) {
+				LOGGER.error("Event loop " + this.thread.getName() + " failed! " + e.getMessage(), e);
+			}
+		}
+		for (SelectionKey key : this.selector.keys()) {
+			((IoHandler) key.attachment()).closed(new IOException("Event loop has been shutdown"));
+		}
+		try {
+			this.selector.close();
+		} catch (IOException e) {
+			//关闭selector时的异常可以忽略
+		}
+	}
+
+	private void processSelectedKeys() {
+		Iterator<SelectionKey> iterator = this.selector.selectedKeys().iterator();
+		while (iterator.hasNext()) {
+			SelectionKey key = iterator.next();
+			iterator.remove();
+			IoHandler handler = (IoHandler) key.attachment();
+			if (!key.isValid()) {
+				handler.closed(null);
+				continue;
+			}
+			try {
+				handler.ready(key);
+			} catch (Throwable e) {
+				key.cancel();
+				handler.closed(e);
+			}
+		}
+	}
+
+	private void runTasks() {
+		Runnable task;
+		while ((task = this.tasks.poll()) != null) {
+			try {
+				task.run();
+			} catch (Throwable e) {
+				LOGGER.error("Run task in event loop " + this.thread.getName() + " failed! " + e.getMessage(), e);
+			}
+		}
+	}
+
+	public void shutdown() {
+		this.running = false;
+		this.selector.wakeup();
+	}
+
+	//EventLoop上注册的Channel的事件处理器
+	public interface IoHandler {
+
+		//Channel注册到selector之后调用
+		void registered(SelectionKey key);
+
+		//Channel上有就绪的事件时调用
+		void ready(SelectionKey key) throws IOException;
+
+		//Channel被关闭或者处理事件失败时调用，cause可能为null
+		void closed(Throwable cause);
+	}
+
+}
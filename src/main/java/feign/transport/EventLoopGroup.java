@@ -0,0 +1,35 @@
+package feign.transport;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//一组EventLoop，新的Channel按照轮询的方式分配到各个EventLoop上
+public class EventLoopGroup {
+
+	private final EventLoop[] eventLoops;
+
+	private final AtomicInteger index = new AtomicInteger();
+
+	public EventLoopGroup(String name, int threads) throws IOException {
+		this.eventLoops = new EventLoop[Math.max(1, threads)];
+		for (int i = 0; i < this.eventLoops.length; i++) {
+			this.eventLoops[i] = new EventLoop(name + "-" + (i + 1));
+		}
+	}
+
+	//选择下一个EventLoop
+	public EventLoop next() {
+		return this.eventLoops[(this.index.getAndIncrement() & Integer.MAX_VALUE) % this.eventLoops.length];
+	}
+
+	public int size() {
+		return this.eventLoops.length;
+	}
+
+	public void shutdown() {
+		for (EventLoop eventLoop : this.eventLoops) {
+			eventLoop.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,211 @@
+package feign.transport;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+//注册在EventLoop上的非阻塞SocketChannel
+//1、读：在I/O线程中读取数据，按照4个字节的长度前缀拆分出完整的帧，交给FrameHandler处理
+//2、写：任意线程都可以调用write方法，帧先放入发送队列，再由I/O线程依次写出
+public class NioChannel implements EventLoop.IoHandler {
+
+	//读缓冲区的初始大小
+	private static final int INITIAL_READ_BUFFER_SIZE = 8 * 1024;
+
+	private final SocketChannel channel;
+
+	private final EventLoop eventLoop;
+
+	private final FrameHandler handler;
+
+	//单个帧的最大长度，超过该长度的帧直接关闭连接
+	private final int maxFrameLength;
+
+	//等待写出的帧
+	private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<ByteBuffer>();
+
+	//是否已经安排了I/O线程写出发送队列中的帧
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+	private final AtomicBoolean closed = new AtomicBoolean();
+
+	private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+
+	private SelectionKey key;
+
+	private final Runnable flushTask = this::flush;
+
+	public NioChannel(SocketChannel channel, EventLoop eventLoop, FrameHandler handler, int maxFrameLength) throws IOException {
+		this.channel = channel;
+		this.eventLoop = eventLoop;
+		this.handler = handler;
+		this.maxFrameLength = maxFrameLength;
+		this.channel.configureBlocking(false);
+		this.eventLoop.register(channel, SelectionKey.OP_READ, this);
+	}
+
+	//发送一个完整的帧（包含长度前缀），可以在任意线程中调用
+	public void write(ByteBuffer frame) throws IOException {
+		if (this.closed.get()) {
+			throw new IOException("Channel " + this + " has been closed");
+		}
+		this.outbound.offer(frame);
+		if (this.flushScheduled.compareAndSet(false, true)) {
+			this.eventLoop.execute(this.flushTask);
+		}
+	}
+
+	@Override
+	public void registered(SelectionKey key) {
+		this.key = key;
+		if (this.closed.get()) {
+			key.cancel();
+		} else if (!this.outbound.isEmpty()) {
+			flush();
+		}
+	}
+
+	@Override
+	public void ready(SelectionKey key) throws IOException {
+		if (key.isReadable()) {
+			read();
+		}
+		if (key.isValid() && key.isWritable()) {
+			flush();
+		}
+	}
+
+	//读取数据，并拆分出完整的帧
+	private void read() throws IOException {
+		int read = this.channel.read(this.readBuffer);
+		if (read < 0) {
+			close(null);
+			return;
+		}
+		this.readBuffer.flip();
+		while (!this.closed.get() && this.readBuffer.remaining() >= 4) {
+			int position = this.readBuffer.position();
+			int frameLength = this.readBuffer.getInt(position);
+			if (frameLength < 0 || frameLength > this.maxFrameLength) {
+				throw new IOException("Frame length " + frameLength + " exceeds the limit " + this.maxFrameLength);
+			}
+			if (this.readBuffer.remaining() < 4 + frameLength) {
+				break;
+			}
+			ByteBuffer frame = this.readBuffer.duplicate();
+			frame.position(position + 4).limit(position + 4 + frameLength);
+			this.readBuffer.position(position + 4 + frameLength);
+			this.handler.frameReceived(this, frame.slice());
+		}
+		if (!this.closed.get()) {
+			ensureReadCapacity();
+		}
+	}
+
+	//整理读缓冲区，如果剩余空间不足以容纳下一个帧，那么扩容
+	private void ensureReadCapacity() {
+		int required = INITIAL_READ_BUFFER_SIZE;
+		if (this.readBuffer.remaining() >= 4) {
+			required = Math.max(required, 4 + this.readBuffer.getInt(this.readBuffer.position()));
+		}
+		if (required > this.readBuffer.capacity()) {
+			ByteBuffer enlarged = ByteBuffer.allocate(required);
+			enlarged.put(this.readBuffer);
+			this.readBuffer = enlarged;
+		} else {
+			this.readBuffer.compact();
+		}
+	}
+
+	//在I/O线程中写出发送队列中的帧，如果Socket的发送缓冲区已满，那么等待OP_WRITE事件
+	private void flush() {
+		//Channel尚未注册完成时，由registered方法触发写出
+		if (this.key == null || !this.key.isValid()) {
+			return;
+		}
+		try {
+			for (;;) {
+				ByteBuffer frame;
+				while ((frame = this.outbound.peek()) != null) {
+					this.channel.write(frame);
+					if (frame.hasRemaining()) {
+						this.key.interestOps(this.key.interestOps() | SelectionKey.OP_WRITE);
+						return;
+					}
+					this.outbound.poll();
+				}
+				this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_WRITE);
+				this.flushScheduled.set(false);
+				//在清除标记之后又有新的帧进入队列，并且没有其他线程安排写出时，继续写出
+				if (this.outbound.isEmpty() || !this.flushScheduled.compareAndSet(false, true)) {
+					return;
+				}
+			}
+		} catch (IOException e) {
+			close(e);
+		}
+	}
+
+	@Override
+	public void closed(Throwable cause) {
+		close(cause);
+	}
+
+	public void close() {
+		close(null);
+	}
+
+	private void close(Throwable cause) {
+		if (!this.closed.compareAndSet(false, true)) {
+			return;
+		}
+		if (this.key != null) {
+			this.key.cancel();
+		}
+		try {
+			this.channel.close();
+		} catch (IOException e) {
+			//关闭连接时的异常可以忽略
+		}
+		this.outbound.clear();
+		this.handler.channelClosed(this, cause);
+	}
+
+	public boolean isOpen() {
+		return !this.closed.get() && this.channel.isOpen();
+	}
+
+	//发送队列中是否还有没有完全写出的帧
+	public boolean hasPendingWrites() {
+		return !this.outbound.isEmpty();
+	}
+
+	public EventLoop eventLoop() {
+		return this.eventLoop;
+	}
+
+	public SocketAddress remoteAddress() {
+		return this.channel.socket().getRemoteSocketAddress();
+	}
+
+	@Override
+	public String toString() {
+		return "NioChannel{local=" + this.channel.socket().getLocalSocketAddress() + ", remote=" + remoteAddress() + "}";
+	}
+
+	//帧的处理器
+	public interface FrameHandler {
+
+		//在I/O线程中调用，frame只在调用期间有效
+		void frameReceived(NioChannel channel, ByteBuffer frame);
+
+		//连接关闭时调用，cause可能为null
+		void channelClosed(NioChannel channel, Throwable cause);
+	}
+
+}
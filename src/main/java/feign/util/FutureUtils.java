@@ -0,0 +1,20 @@
+package feign.util;
+
+import java.util.concurrent.CompletableFuture;
+
+public class FutureUtils {
+
+	//取消derived（例如：source经过thenApply、handle之后的Future）时，同时取消source
+	//CompletableFuture的取消不会向上传递，调用方取消返回的Future时，需要通过该方法取消正在进行的请求
+	public static <T> CompletableFuture<T> propagateCancel(CompletableFuture<T> derived, CompletableFuture<?> source) {
+		if (!source.isDone()) {
+			derived.whenComplete((result, e) -> {
+				if (derived.isCancelled()) {
+					source.cancel(false);
+				}
+			});
+		}
+		return derived;
+	}
+
+}
@@ -2,25 +2,33 @@ package feign.util;
 
 import java.util.Arrays;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import org.springframework.util.StringUtils;
 
 public class URLUtils {
-	//解析出URL中指定参数的值
+	//解析出URL中指定参数的值，不存在时返回空字符串
+	//参数值可能是URL编码后的方法签名，例如：com.migu.Controller2.hello%28String%29
+	//只查找分隔符，不在每次调用时编译正则表达式
 	public static String resolveParam(String url,String paramKey) {
-		//定义正则表达式
-		String pattern = "(\\?|&){1}#{0,1}" + paramKey + "=[a-zA-Z0-9.]*(&{0,1})";
-	    Pattern r = Pattern.compile(pattern);
-	    Matcher m = r.matcher(url);
-	    //如果匹配到相应字段
-	    if (m.find( )) {
-	        return m.group(0).split("=")[1].replace("&", "");
-	    } else {
-	        return "";
-	    }
+		int from = url.indexOf('?');
+		while (from >= 0 && from < url.length()) {
+			int start = from + 1;
+			//兼容参数名之前的#
+			if (start < url.length() && url.charAt(start) == '#') {
+				start++;
+			}
+			int end = url.indexOf('&', start);
+			if (end < 0) {
+				end = url.length();
+			}
+			if (url.startsWith(paramKey, start) && start + paramKey.length() < end
+					&& url.charAt(start + paramKey.length()) == '=') {
+				return url.substring(start + paramKey.length() + 1, end);
+			}
+			from = end < url.length() ? end : -1;
+		}
+		return "";
 	}
 	
 	//解析出URL中的所有参数
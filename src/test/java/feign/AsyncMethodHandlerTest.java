@@ -0,0 +1,128 @@
+package feign;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+import feign.InvocationHandlerFactory.MethodHandler;
+import feign.client.AsyncClient;
+import feign.codec.ErrorDecoder;
+import rx.Observable;
+import rx.Single;
+import rx.Subscription;
+
+//AsyncMethodHandler在响应返回时完成Future，以及调用方取消时取消正在进行的请求
+public class AsyncMethodHandlerTest extends TestCase {
+
+	interface Api {
+		CompletableFuture<String> future();
+
+		Observable<String> observable();
+
+		Single<String> single();
+	}
+
+	//由测试控制完成时机的AsyncClient
+	static class PendingClient implements AsyncClient {
+		final AtomicReference<CompletableFuture<Response>> sent = new AtomicReference<CompletableFuture<Response>>();
+
+		@Override
+		public CompletableFuture<Response> executeAsync(Request request, Request.Options options) {
+			CompletableFuture<Response> future = new CompletableFuture<Response>();
+			this.sent.set(future);
+			return future;
+		}
+
+		@Override
+		public Response execute(Request request, Request.Options options) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		void respond(int status, String body) {
+			this.sent.get().complete(Response.builder().status(status).reason("reason " + status)
+					.headers(Collections.<String, Collection<String>>emptyMap()).body(body, StandardCharsets.UTF_8).build());
+		}
+	}
+
+	private final PendingClient client = new PendingClient();
+
+	public void testFutureCompletion() throws Throwable {
+		@SuppressWarnings("unchecked")
+		CompletableFuture<String> future = (CompletableFuture<String>) handler("future").invoke(new Object[0]);
+		assertFalse(future.isDone());
+		this.client.respond(200, "ok");
+		assertEquals("ok", future.get());
+	}
+
+	//状态码不是2xx时由ErrorDecoder转换成异常
+	public void testFutureError() throws Throwable {
+		@SuppressWarnings("unchecked")
+		CompletableFuture<String> future = (CompletableFuture<String>) handler("future").invoke(new Object[0]);
+		this.client.respond(500, "failed");
+		try {
+			future.get();
+			fail("A 500 response must fail the future");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof FeignException);
+			assertEquals(500, ((FeignException) e.getCause()).status());
+		}
+	}
+
+	//取消返回的Future时，同时取消Client中正在进行的请求
+	public void testFutureCancel() throws Throwable {
+		@SuppressWarnings("unchecked")
+		CompletableFuture<String> future = (CompletableFuture<String>) handler("future").invoke(new Object[0]);
+		future.cancel(false);
+		assertTrue(this.client.sent.get().isCancelled());
+	}
+
+	//Observable在订阅时才发起调用，取消订阅时取消请求
+	public void testObservable() throws Throwable {
+		MethodHandler handler = handler("observable");
+		@SuppressWarnings("unchecked")
+		Observable<String> observable = (Observable<String>) handler.invoke(new Object[0]);
+		assertNull(this.client.sent.get());
+		AtomicReference<String> result = new AtomicReference<String>();
+		observable.subscribe(result::set);
+		this.client.respond(200, "ok");
+		assertEquals("ok", result.get());
+
+		@SuppressWarnings("unchecked")
+		Observable<String> another = (Observable<String>) handler.invoke(new Object[0]);
+		Subscription subscription = another.subscribe(result::set);
+		subscription.unsubscribe();
+		assertTrue(this.client.sent.get().isCancelled());
+	}
+
+	public void testSingle() throws Throwable {
+		@SuppressWarnings("unchecked")
+		Single<String> single = (Single<String>) handler("single").invoke(new Object[0]);
+		AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		single.subscribe(value -> fail("A 500 response must not succeed"), error::set);
+		this.client.respond(500, "failed");
+		assertTrue(error.get() instanceof FeignException);
+	}
+
+	private MethodHandler handler(String methodName) throws NoSuchMethodException {
+		Type returnType = Api.class.getMethod(methodName).getGenericReturnType();
+		MethodMetadata metadata = new MethodMetadata();
+		metadata.returnType(returnType);
+		metadata.configKey("Api#" + methodName + "()");
+		metadata.template().method("GET");
+		metadata.template().append("/" + methodName);
+		assertTrue(AsyncMethodHandler.isAsync(metadata));
+		RequestTemplate.Factory templates = argv -> new RequestTemplate(metadata.template());
+		return new AsyncMethodHandler.Factory(this.client, Collections.<RequestInterceptor>emptyList(), new Logger.NoOpLogger(),
+				Logger.Level.NONE, false).create(new Target.HardCodedTarget<Api>(Api.class, "http://localhost"), metadata,
+						templates, new Request.Options(), (response, type) -> Util.toString(response.body().asReader()),
+						new ErrorDecoder.Default());
+	}
+
+}
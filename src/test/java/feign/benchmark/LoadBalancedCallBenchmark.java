@@ -0,0 +1,142 @@
+package feign.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.cloud.netflix.ribbon.DefaultServerIntrospector;
+import org.springframework.cloud.netflix.ribbon.SpringClientFactory;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.client.config.DefaultClientConfigImpl;
+import com.netflix.loadbalancer.BaseLoadBalancer;
+import com.netflix.niws.loadbalancer.DiscoveryEnabledServer;
+
+import feign.Request;
+import feign.Response;
+import feign.client.AsyncClient;
+import feign.client.LoadBalancerFeignClientExt;
+import feign.client.RpcMethodDescriptor;
+import feign.enumerate.ProtocolType;
+import feign.loadbalancer.CachingSpringLoadBalancerFactoryExt;
+import feign.loadbalancer.FeignLoadBalancerExt;
+import feign.serializer.SerializerFactory;
+
+//SOCKET调用经过LoadBalancerFeignClientExt、FeignLoadBalancerExt的客户端调用路径的基准测试
+//delegate直接返回已经完成的Response，只测量负载均衡以及请求转换的开销，通过GCProfiler的gc.alloc.rate.norm观察每次调用分配的字节数
+//运行方式：在IDE中执行main方法，或者 mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=feign.benchmark.LoadBalancedCallBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadBalancedCallBenchmark {
+
+	private static final String SERVICE = "demo-service";
+
+	private static final String METHOD = "demo.HelloController.hello(String)";
+
+	//直接返回同一个Response的AsyncClient
+	static class CompletedClient implements AsyncClient {
+
+		private final CompletableFuture<Response> response;
+
+		CompletedClient(Response response) {
+			this.response = CompletableFuture.completedFuture(response);
+		}
+
+		@Override
+		public Response execute(Request request, Request.Options options) {
+			return this.response.join();
+		}
+
+		@Override
+		public CompletableFuture<Response> executeAsync(Request request, Request.Options options) {
+			return this.response;
+		}
+	}
+
+	private LoadBalancerFeignClientExt client;
+
+	private Request request;
+
+	private Request.Options options;
+
+	@Setup
+	public void setup() {
+		DefaultClientConfigImpl config = new DefaultClientConfigImpl();
+		config.loadDefaultValues();
+		config.setClientName(SERVICE);
+		InstanceInfo instance = InstanceInfo.Builder.newBuilder()
+				.setAppName(SERVICE)
+				.setHostName("127.0.0.1")
+				.setIPAddr("127.0.0.1")
+				.setPort(8080)
+				.add(ProtocolType.SOCKET.getName() + "-port", "12345")
+				.build();
+		BaseLoadBalancer balancer = new BaseLoadBalancer();
+		balancer.addServer(new DiscoveryEnabledServer(instance, false));
+		FeignLoadBalancerExt loadBalancer = new FeignLoadBalancerExt(balancer, config, new DefaultServerIntrospector());
+		CachingSpringLoadBalancerFactoryExt factory = new CachingSpringLoadBalancerFactoryExt(new SpringClientFactory()) {
+			@Override
+			public FeignLoadBalancerExt create(String clientName) {
+				return loadBalancer;
+			}
+		};
+		Response response = Response.builder()
+				.status(200)
+				.headers(Collections.<String, Collection<String>>emptyMap())
+				.body(new byte[] { 1, 2, 3, 4 })
+				.build();
+		this.client = new LoadBalancerFeignClientExt(new CompletedClient(response), factory, new SpringClientFactory());
+
+		//与ReflectiveFeignExt为SOCKET方法生成的请求相同
+		RpcMethodDescriptor descriptor = RpcMethodDescriptor.register(ProtocolType.SOCKET, SERVICE, METHOD);
+		Map<String, Collection<String>> headers = new LinkedHashMap<String, Collection<String>>();
+		headers.put(RpcMethodDescriptor.DESCRIPTOR_HEADER, Arrays.asList(descriptor.getKey()));
+		headers.put(SerializerFactory.SERIALIZER_HEADER, Arrays.asList(SerializerFactory.DEFAULT_SERIALIZER));
+		this.request = Request.create("POST", "socket://" + SERVICE + "?interface=demo.HelloController.hello%28String%29",
+				Collections.unmodifiableMap(headers), new byte[] { 5, 6, 7, 8 }, StandardCharsets.UTF_8);
+		this.options = new Request.Options(1000, 5000);
+	}
+
+	@Benchmark
+	public Response loadBalancedCall() {
+		return this.client.executeAsync(this.request, this.options).join();
+	}
+
+	//没有配置重试时，同步调用经过FeignLoadBalancerExt的直接执行路径，不创建LoadBalancerCommand
+	@Benchmark
+	public Response loadBalancedExecute() throws IOException {
+		return this.client.execute(this.request, this.options);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(LoadBalancedCallBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+
+}
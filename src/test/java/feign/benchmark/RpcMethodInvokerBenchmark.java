@@ -0,0 +1,69 @@
+package feign.benchmark;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import feign.server.method.RpcMethodInvoker;
+
+//SocketServer分发RPC方法调用的基准测试：Method.invoke反射调用 vs 注册时创建的RpcMethodInvoker
+//运行方式：在IDE中执行main方法，或者 mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=feign.benchmark.RpcMethodInvokerBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RpcMethodInvokerBenchmark {
+
+	public static class HelloController {
+
+		public String hello(String name, int times) {
+			return name;
+		}
+	}
+
+	private Object target;
+
+	private Method method;
+
+	private RpcMethodInvoker invoker;
+
+	private Object[] args;
+
+	@Setup
+	public void setup() throws Exception {
+		this.target = new HelloController();
+		this.method = HelloController.class.getMethod("hello", String.class, int.class);
+		this.invoker = RpcMethodInvoker.create(this.target, this.method);
+		this.args = new Object[] { "feign", 3 };
+	}
+
+	@Benchmark
+	public Object reflection() throws Exception {
+		return this.method.invoke(this.target, this.args);
+	}
+
+	@Benchmark
+	public Object generatedInvoker() throws Throwable {
+		return this.invoker.invoke(this.args);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(RpcMethodInvokerBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
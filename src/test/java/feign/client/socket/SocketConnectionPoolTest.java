@@ -0,0 +1,147 @@
+package feign.client.socket;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import feign.packet.RpcPacket;
+import feign.properties.FeignSocketClientProperties;
+import feign.serializer.Serializer;
+import feign.serializer.SerializerFactory;
+import feign.server.SocketServer;
+import feign.server.context.RpcServerContext;
+import feign.server.method.RpcMethodWrapper;
+
+//SocketConnectionPool借出、归还以及关闭连接，连接建立时需要与SocketServer握手
+public class SocketConnectionPoolTest extends TestCase {
+
+	public static class EchoController {
+		public String echo(String value) {
+			return value;
+		}
+	}
+
+	private SocketServer server;
+
+	private SocketRoute route;
+
+	private SocketConnectionPool pool;
+
+	@Override
+	protected void setUp() throws Exception {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		RpcServerContext context = new RpcServerContext();
+		RpcMethodWrapper wrapper = new RpcMethodWrapper();
+		wrapper.setClassName("EchoController");
+		wrapper.setMethodName("echo");
+		wrapper.setMethod(EchoController.class.getMethod("echo", String.class));
+		wrapper.setTarget(new EchoController());
+		wrapper.setReturnType(String.class);
+		context.appendMethodMapping(wrapper);
+		this.server = new SocketServer(port, context, 1, 2, 0);
+		assertTrue(this.server.start());
+		this.route = new SocketRoute("localhost", port);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (this.pool != null) {
+			this.pool.close();
+		}
+		this.server.stop();
+	}
+
+	//归还的连接被下一次借出复用
+	public void testReuseReleasedConnection() throws IOException {
+		this.pool = newPool(2, 1);
+		SocketConnection connection = this.pool.borrow(this.route, 1000);
+		assertEquals("hello", echo(connection, "hello"));
+		this.pool.release(connection, true);
+		SocketConnection reused = this.pool.borrow(this.route, 1000);
+		assertSame(connection, reused);
+		assertEquals(1, this.pool.getTotalConnections());
+		this.pool.release(reused, true);
+	}
+
+	//一条连接上可以同时借出maxRequestsPerConnection次
+	public void testMultiplexedLease() throws IOException {
+		this.pool = newPool(1, 2);
+		SocketConnection first = this.pool.borrow(this.route, 1000);
+		SocketConnection second = this.pool.borrow(this.route, 1000);
+		assertSame(first, second);
+		assertEquals(1, this.pool.getTotalConnections());
+		this.pool.release(first, true);
+		this.pool.release(second, true);
+	}
+
+	//连接数以及每条连接上的请求数都达到上限时，等待connectTimeout后超时
+	public void testBorrowTimeout() throws IOException {
+		this.pool = newPool(1, 1);
+		SocketConnection connection = this.pool.borrow(this.route, 1000);
+		long start = System.currentTimeMillis();
+		try {
+			this.pool.borrow(this.route, 200);
+			fail("Borrowing from an exhausted route must time out");
+		} catch (SocketTimeoutException e) {
+			//expected
+		}
+		assertTrue(System.currentTimeMillis() - start >= 150);
+		this.pool.release(connection, true);
+		assertSame(connection, this.pool.borrow(this.route, 200));
+		this.pool.release(connection, true);
+	}
+
+	//不可复用的连接归还时直接关闭
+	public void testReleaseBrokenConnection() throws IOException {
+		this.pool = newPool(2, 1);
+		SocketConnection connection = this.pool.borrow(this.route, 1000);
+		assertEquals(1, this.pool.getTotalConnections());
+		this.pool.release(connection, false);
+		assertEquals(0, this.pool.getTotalConnections());
+		assertFalse(connection.isOpen());
+		SocketConnection another = this.pool.borrow(this.route, 1000);
+		assertNotSame(connection, another);
+		this.pool.release(another, true);
+	}
+
+	public void testBorrowAfterClose() throws IOException {
+		this.pool = newPool(2, 1);
+		SocketConnection connection = this.pool.borrow(this.route, 1000);
+		this.pool.release(connection, true);
+		this.pool.close();
+		this.pool.close();
+		assertFalse(connection.isOpen());
+		try {
+			this.pool.borrow(this.route, 1000);
+			fail("Borrowing from a closed pool must fail");
+		} catch (IOException e) {
+			//expected
+		}
+	}
+
+	private static SocketConnectionPool newPool(int maxConnectionsPerRoute, int maxRequestsPerConnection) {
+		FeignSocketClientProperties properties = new FeignSocketClientProperties();
+		properties.setMaxConnectionsPerRoute(maxConnectionsPerRoute);
+		properties.setMaxRequestsPerConnection(maxRequestsPerConnection);
+		properties.setMinIdlePerRoute(0);
+		properties.setIoThreads(1);
+		return new SocketConnectionPool(properties);
+	}
+
+	private static String echo(SocketConnection connection, String value) throws IOException {
+		Serializer serializer = SerializerFactory.getSerializer("java");
+		Map<String, Collection<String>> headers = new HashMap<String, Collection<String>>();
+		RpcPacket request = new RpcPacket("EchoController.echo(String)", headers, serializer.serializeArgs(new Object[] { value }));
+		RpcPacket response = connection.exchange(request, 3000);
+		return (String) serializer.deserialize(response.getPayload(), String.class);
+	}
+
+}
@@ -0,0 +1,58 @@
+package feign.client.socket;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+//SocketRouteStats的Peak EWMA延迟、成本，以及路由上的连接全部关闭之后移除统计
+public class SocketRouteStatsTest extends TestCase {
+
+	private final SocketRoute route = new SocketRoute("stats-test", 1);
+
+	@Override
+	protected void tearDown() throws Exception {
+		while (SocketRouteStats.get(this.route) != null) {
+			SocketRouteStats.release(this.route);
+		}
+	}
+
+	//延迟变大时立即取新的值，变小时逐渐衰减
+	public void testPeakLatency() {
+		SocketRouteStats stats = SocketRouteStats.acquire(this.route);
+		stats.requestStarted();
+		stats.requestCompleted(TimeUnit.MILLISECONDS.toNanos(50));
+		assertEquals(50.0, stats.getLatency(), 0.1);
+		stats.requestStarted();
+		stats.requestCompleted(TimeUnit.MILLISECONDS.toNanos(10));
+		assertTrue(stats.getLatency() > 49);
+		stats.requestStarted();
+		stats.requestCompleted(TimeUnit.MILLISECONDS.toNanos(200));
+		assertEquals(200.0, stats.getLatency(), 0.1);
+	}
+
+	//成本 = 延迟 * (正在等待响应的请求数 + 1)，没有延迟样本时有请求在等待的路由成本很高
+	public void testCost() {
+		SocketRouteStats stats = SocketRouteStats.acquire(this.route);
+		assertEquals(0.0, stats.getCost());
+		stats.requestStarted();
+		assertTrue(stats.getCost() > 1e12);
+		stats.requestCompleted(TimeUnit.MILLISECONDS.toNanos(10));
+		stats.requestStarted();
+		stats.requestStarted();
+		assertEquals(30.0, stats.getCost(), 0.1);
+		assertEquals(2, stats.getPending());
+	}
+
+	//路由上的最后一条连接关闭时移除统计，再次建立连接时重新统计
+	public void testReleaseWithLastConnection() {
+		SocketRouteStats first = SocketRouteStats.acquire(this.route);
+		assertSame(first, SocketRouteStats.acquire(this.route));
+		assertSame(first, SocketRouteStats.get("stats-test", 1));
+		SocketRouteStats.release(this.route);
+		assertSame(first, SocketRouteStats.get(this.route));
+		SocketRouteStats.release(this.route);
+		assertNull(SocketRouteStats.get(this.route));
+		assertNotSame(first, SocketRouteStats.acquire(this.route));
+	}
+
+}
@@ -0,0 +1,48 @@
+package feign.hystrix;
+
+import junit.framework.TestCase;
+
+import com.netflix.hystrix.HystrixCommand;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.strategy.HystrixPlugins;
+
+import feign.packet.RpcDeadline;
+
+//调用方线程上的RpcDeadline随Hystrix的命令传递到Hystrix的线程上
+public class RpcDeadlineConcurrencyStrategyTest extends TestCase {
+
+	//返回执行时Hystrix线程上的截止时间
+	static class DeadlineCommand extends HystrixCommand<RpcDeadline> {
+		DeadlineCommand() {
+			super(HystrixCommandGroupKey.Factory.asKey("RpcDeadlineConcurrencyStrategyTest"));
+		}
+
+		@Override
+		protected RpcDeadline run() {
+			return RpcDeadline.current();
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		RpcDeadlineConcurrencyStrategy.register();
+	}
+
+	public void testRegisterOnce() {
+		RpcDeadlineConcurrencyStrategy.register();
+		assertTrue(HystrixPlugins.getInstance().getConcurrencyStrategy() instanceof RpcDeadlineConcurrencyStrategy);
+	}
+
+	public void testPropagateDeadline() {
+		RpcDeadline deadline = RpcDeadline.after(5000);
+		RpcDeadline previous = RpcDeadline.attach(deadline);
+		try {
+			assertSame(deadline, new DeadlineCommand().execute());
+		} finally {
+			RpcDeadline.restore(previous);
+		}
+		//调用方线程上没有截止时间时，Hystrix线程上也没有，上一个命令的截止时间不会残留
+		assertNull(new DeadlineCommand().execute());
+	}
+
+}
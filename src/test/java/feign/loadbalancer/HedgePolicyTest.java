@@ -0,0 +1,89 @@
+package feign.loadbalancer;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+//HedgePolicy的对冲延迟（最近样本的百分位）以及对冲预算
+public class HedgePolicyTest extends TestCase {
+
+	//样本不足32个时不发送对冲请求
+	public void testDelayNeedsSamples() {
+		HedgePolicy policy = new HedgePolicy(95, 10, 0);
+		for (int i = 1; i < 32; i++) {
+			policy.recordLatency(millis(i));
+			assertEquals(-1, policy.getDelayNanos());
+		}
+		policy.recordLatency(millis(32));
+		assertEquals(millis(31), policy.getDelayNanos());
+	}
+
+	public void testPercentile() {
+		assertEquals(millis(16), delayOf(new HedgePolicy(50, 10, 0)));
+		assertEquals(millis(32), delayOf(new HedgePolicy(100, 10, 0)));
+		assertEquals(millis(1), delayOf(new HedgePolicy(1, 10, 0)));
+	}
+
+	//对冲延迟不小于minDelay
+	public void testMinDelay() {
+		assertEquals(millis(100), delayOf(new HedgePolicy(50, 10, 100)));
+	}
+
+	//每个请求增加budget%个令牌，最多累积10个
+	public void testBudget() {
+		HedgePolicy policy = new HedgePolicy(95, 10, 0);
+		assertFalse(policy.tryAcquireHedge());
+		for (int i = 0; i < 9; i++) {
+			policy.requestStarted();
+		}
+		assertFalse(policy.tryAcquireHedge());
+		policy.requestStarted();
+		assertTrue(policy.tryAcquireHedge());
+		assertFalse(policy.tryAcquireHedge());
+
+		for (int i = 0; i < 1000; i++) {
+			policy.requestStarted();
+		}
+		for (int i = 0; i < 10; i++) {
+			assertTrue(policy.tryAcquireHedge());
+		}
+		assertFalse(policy.tryAcquireHedge());
+	}
+
+	public void testZeroBudget() {
+		HedgePolicy policy = new HedgePolicy(95, 0, 0);
+		for (int i = 0; i < 100; i++) {
+			policy.requestStarted();
+		}
+		assertFalse(policy.tryAcquireHedge());
+	}
+
+	public void testInvalidArguments() {
+		assertInvalid(0, 10);
+		assertInvalid(101, 10);
+		assertInvalid(95, -1);
+		assertInvalid(95, 101);
+	}
+
+	//按照逆序记录1到32毫秒的延迟
+	private static long delayOf(HedgePolicy policy) {
+		for (int i = 32; i > 0; i--) {
+			policy.recordLatency(millis(i));
+		}
+		return policy.getDelayNanos();
+	}
+
+	private static long millis(long millis) {
+		return TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+
+	private static void assertInvalid(double percentile, double budget) {
+		try {
+			new HedgePolicy(percentile, budget, 0);
+			fail("Invalid hedge policy must be rejected");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+
+}
@@ -0,0 +1,107 @@
+package feign.loadbalancer;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.netflix.client.config.DefaultClientConfigImpl;
+import com.netflix.loadbalancer.BaseLoadBalancer;
+import com.netflix.loadbalancer.Server;
+
+//OutlierDetector按照连续失败次数剔除Server，以及剔除个数的上限
+public class OutlierDetectorTest extends TestCase {
+
+	private final List<Server> servers = Arrays.asList(new Server("a", 1), new Server("b", 1), new Server("c", 1), new Server("d", 1));
+
+	private BaseLoadBalancer lb;
+
+	@Override
+	protected void setUp() throws Exception {
+		this.lb = new BaseLoadBalancer();
+		this.lb.addServers(this.servers);
+	}
+
+	public void testEjectAfterConsecutiveFailures() {
+		OutlierDetector detector = newDetector(3, 30000, 50);
+		Server server = this.servers.get(0);
+		detector.record(server, true, 10);
+		detector.record(server, true, 10);
+		//成功的请求重新计算连续失败次数
+		detector.record(server, false, 10);
+		detector.record(server, true, 10);
+		detector.record(server, true, 10);
+		assertFalse(detector.isEjected(server));
+		detector.record(server, true, 10);
+		assertTrue(detector.isEjected(server));
+		assertFalse(detector.isEjected(this.servers.get(1)));
+	}
+
+	//被剔除的Server个数不超过总数的OutlierMaxEjectionPercent
+	public void testMaxEjectionPercent() {
+		OutlierDetector detector = newDetector(1, 30000, 50);
+		for (Server server : this.servers) {
+			detector.record(server, true, 10);
+		}
+		assertEquals(2, countEjected(detector));
+	}
+
+	//Server较少时至少允许剔除一个，只有一个Server时不剔除
+	public void testEjectAtLeastOne() {
+		OutlierDetector detector = newDetector(1, 30000, 10);
+		for (Server server : this.servers) {
+			detector.record(server, true, 10);
+		}
+		assertEquals(1, countEjected(detector));
+
+		BaseLoadBalancer single = new BaseLoadBalancer();
+		single.addServers(this.servers.subList(0, 1));
+		detector = new OutlierDetector(single, newConfig(1, 30000, 100));
+		detector.record(this.servers.get(0), true, 10);
+		assertFalse(detector.isEjected(this.servers.get(0)));
+	}
+
+	//剔除的时间到期之后重新可用
+	public void testEjectionExpires() throws InterruptedException {
+		OutlierDetector detector = newDetector(1, 50, 50);
+		Server server = this.servers.get(0);
+		detector.record(server, true, 10);
+		assertTrue(detector.isEjected(server));
+		Thread.sleep(100);
+		assertFalse(detector.isEjected(server));
+	}
+
+	//Server离开列表时移除其状态
+	public void testServerListChanged() {
+		OutlierDetector detector = newDetector(1, 30000, 50);
+		Server server = this.servers.get(0);
+		detector.record(server, true, 10);
+		assertTrue(detector.isEjected(server));
+		this.lb.setServersList(this.servers.subList(1, 4));
+		this.lb.setServersList(this.servers);
+		assertFalse(detector.isEjected(server));
+	}
+
+	private int countEjected(OutlierDetector detector) {
+		int ejected = 0;
+		for (Server server : this.servers) {
+			if (detector.isEjected(server)) {
+				ejected++;
+			}
+		}
+		return ejected;
+	}
+
+	private OutlierDetector newDetector(int consecutiveFailures, int baseEjectionTime, int maxEjectionPercent) {
+		return new OutlierDetector(this.lb, newConfig(consecutiveFailures, baseEjectionTime, maxEjectionPercent));
+	}
+
+	private static DefaultClientConfigImpl newConfig(int consecutiveFailures, int baseEjectionTime, int maxEjectionPercent) {
+		DefaultClientConfigImpl config = new DefaultClientConfigImpl();
+		config.setProperty(OutlierDetector.CONSECUTIVE_FAILURES, consecutiveFailures);
+		config.setProperty(OutlierDetector.BASE_EJECTION_TIME, baseEjectionTime);
+		config.setProperty(OutlierDetector.MAX_EJECTION_PERCENT, maxEjectionPercent);
+		return config;
+	}
+
+}
@@ -0,0 +1,78 @@
+package feign.loadbalancer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import com.netflix.loadbalancer.BaseLoadBalancer;
+import com.netflix.loadbalancer.Server;
+
+//PeakEwmaRule从随机的两个Server中选择成本较小的一个
+public class PeakEwmaRuleTest extends TestCase {
+
+	//按照给定的成本选择Server的规则
+	static class FixedCostRule extends PeakEwmaRule {
+		final Map<Server, Double> costs = new HashMap<Server, Double>();
+
+		FixedCostRule(BaseLoadBalancer lb) {
+			super(lb);
+		}
+
+		@Override
+		double getCost(Server server) {
+			return this.costs.get(server);
+		}
+	}
+
+	public void testChooseCheaperServer() {
+		Server fast = new Server("fast", 1);
+		Server slow = new Server("slow", 1);
+		FixedCostRule rule = new FixedCostRule(newLoadBalancer(fast, slow));
+		rule.costs.put(fast, 1.0);
+		rule.costs.put(slow, 10.0);
+		for (int i = 0; i < 100; i++) {
+			assertSame(fast, rule.choose(null));
+		}
+	}
+
+	//成本最高的Server不会被选中，其他Server都有机会被选中
+	public void testAvoidSlowestServer() {
+		Server a = new Server("a", 1);
+		Server b = new Server("b", 1);
+		Server slow = new Server("slow", 1);
+		FixedCostRule rule = new FixedCostRule(newLoadBalancer(a, b, slow));
+		rule.costs.put(a, 1.0);
+		rule.costs.put(b, 2.0);
+		rule.costs.put(slow, 100.0);
+		Set<Server> chosen = new HashSet<Server>();
+		for (int i = 0; i < 200; i++) {
+			chosen.add(rule.choose(null));
+		}
+		assertEquals(new HashSet<Server>(Arrays.asList(a, b)), chosen);
+	}
+
+	//没有MetaData（没有SOCKET端口）以及还没有连接的Server成本为0
+	public void testServerWithoutSocketRoute() {
+		Server a = new Server("a", 1);
+		Server b = new Server("b", 2);
+		PeakEwmaRule rule = new PeakEwmaRule(newLoadBalancer(a, b));
+		assertEquals(0.0, rule.getCost(a));
+		Server chosen = rule.choose(null);
+		assertTrue(chosen == a || chosen == b);
+	}
+
+	public void testNoServers() {
+		assertNull(new PeakEwmaRule(new BaseLoadBalancer()).choose(null));
+	}
+
+	private static BaseLoadBalancer newLoadBalancer(Server... servers) {
+		BaseLoadBalancer lb = new BaseLoadBalancer();
+		lb.addServers(Arrays.asList(servers));
+		return lb;
+	}
+
+}
@@ -0,0 +1,54 @@
+package feign.loadbalancer;
+
+import junit.framework.TestCase;
+
+//RetryBudget的令牌数：初始10个，每个成功请求增加percent%个，最多100个
+public class RetryBudgetTest extends TestCase {
+
+	public void testInitialTokens() {
+		RetryBudget budget = new RetryBudget(0);
+		assertEquals(10, budget.getAvailable());
+		for (int i = 0; i < 10; i++) {
+			assertTrue(budget.tryWithdraw());
+		}
+		assertFalse(budget.tryWithdraw());
+		//percent为0时成功的请求不增加令牌
+		for (int i = 0; i < 100; i++) {
+			budget.deposit();
+		}
+		assertFalse(budget.tryWithdraw());
+	}
+
+	public void testDepositByPercent() {
+		RetryBudget budget = new RetryBudget(20);
+		for (int i = 0; i < 10; i++) {
+			assertTrue(budget.tryWithdraw());
+		}
+		for (int i = 0; i < 4; i++) {
+			budget.deposit();
+		}
+		assertEquals(0, budget.getAvailable());
+		budget.deposit();
+		assertEquals(1, budget.getAvailable());
+		assertTrue(budget.tryWithdraw());
+		assertFalse(budget.tryWithdraw());
+	}
+
+	public void testMaxTokens() {
+		RetryBudget budget = new RetryBudget(100);
+		for (int i = 0; i < 1000; i++) {
+			budget.deposit();
+		}
+		assertEquals(100, budget.getAvailable());
+	}
+
+	public void testNegativePercent() {
+		try {
+			new RetryBudget(-1);
+			fail("Negative percent must be rejected");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+package feign.loadbalancer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.loadbalancer.BaseLoadBalancer;
+import com.netflix.loadbalancer.Server;
+import com.netflix.niws.loadbalancer.DiscoveryEnabledServer;
+
+import feign.client.socket.SocketRoute;
+import feign.enumerate.ProtocolType;
+
+//ServerEndpointCache缓存Server的端点，InstanceInfo变化或者Server离开列表时失效
+public class ServerEndpointCacheTest extends TestCase {
+
+	private BaseLoadBalancer lb;
+
+	private ServerEndpointCache cache;
+
+	@Override
+	protected void setUp() throws Exception {
+		this.lb = new BaseLoadBalancer();
+		this.cache = new ServerEndpointCache(this.lb);
+	}
+
+	public void testCachedEndpoint() {
+		Server server = newServer("9000");
+		ServerEndpoint endpoint = this.cache.get(server);
+		assertSame(endpoint, this.cache.get(server));
+		assertEquals(9000, endpoint.getPort(ProtocolType.SOCKET));
+		assertEquals(new SocketRoute("host1", 9000), endpoint.getRoute(ProtocolType.SOCKET));
+		//MetaData中没有端口时使用协议的默认端口
+		assertEquals(ProtocolType.DUBBO.getDefaultPort(), endpoint.getPort(ProtocolType.DUBBO));
+	}
+
+	//Eureka中实例的MetaData更新之后，Server列表刷新得到新的InstanceInfo，重新创建端点
+	public void testInstanceInfoChanged() {
+		ServerEndpoint endpoint = this.cache.get(newServer("9000"));
+		Server updated = newServer("9001");
+		ServerEndpoint newEndpoint = this.cache.get(updated);
+		assertNotSame(endpoint, newEndpoint);
+		assertEquals(9001, newEndpoint.getPort(ProtocolType.SOCKET));
+		assertSame(newEndpoint, this.cache.get(updated));
+	}
+
+	//Server离开列表时移除对应的端点
+	public void testServerListChanged() {
+		Server server = newServer("9000");
+		this.lb.setServersList(Arrays.asList(server));
+		ServerEndpoint endpoint = this.cache.get(server);
+		this.lb.setServersList(Collections.<Server>emptyList());
+		assertNotSame(endpoint, this.cache.get(server));
+	}
+
+	//端口格式错误或者没有MetaData时，只在使用该协议时失败
+	public void testInvalidPort() {
+		ServerEndpoint endpoint = this.cache.get(newServer("abc"));
+		assertNull(endpoint.findRoute(ProtocolType.SOCKET));
+		try {
+			endpoint.getPort(ProtocolType.SOCKET);
+			fail("An invalid port must be rejected");
+		} catch (RuntimeException e) {
+			//expected
+		}
+		endpoint = this.cache.get(new Server("host2", 8080));
+		assertNull(endpoint.findRoute(ProtocolType.SOCKET));
+		try {
+			endpoint.getRoute(ProtocolType.SOCKET);
+			fail("A server without MetaData has no socket route");
+		} catch (RuntimeException e) {
+			//expected
+		}
+	}
+
+	private static Server newServer(String socketPort) {
+		Map<String, String> metadata = new HashMap<String, String>();
+		metadata.put(ProtocolType.SOCKET.getName() + "-port", socketPort);
+		InstanceInfo instanceInfo = InstanceInfo.Builder.newBuilder().setAppName("app").setHostName("host1")
+				.setIPAddr("127.0.0.1").setPort(8080).setMetadata(metadata).build();
+		return new DiscoveryEnabledServer(instanceInfo, false);
+	}
+
+}
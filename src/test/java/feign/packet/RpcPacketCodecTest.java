@@ -0,0 +1,169 @@
+package feign.packet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+//RpcPacketCodec以及RpcHandshake的编解码
+public class RpcPacketCodecTest extends TestCase {
+
+	private static final List<String> DICTIONARY = Arrays.asList("X-RPC-SERIALIZER", "java", "X-RPC-TIMEOUT");
+
+	public void testRoundTrip() throws IOException {
+		Map<String, Collection<String>> headers = new LinkedHashMap<String, Collection<String>>();
+		headers.put("X-RPC-SERIALIZER", Arrays.asList("java"));
+		headers.put("X-Trace", Arrays.asList("a", "b"));
+		//本地头信息不写入帧中
+		headers.put(RpcPacketCodec.LOCAL_HEADER_PREFIX + "METHOD", Arrays.asList("key"));
+		RpcPacket packet = new RpcPacket("demo.Controller.hello(String)", headers, new byte[] { 1, 2, 3 });
+		packet.setRequestId(42L);
+		packet.setFlags(RpcPacketCodec.FLAG_CANCEL);
+		packet.setTimeout(1500);
+
+		RpcPacket decoded = decode(RpcPacketCodec.encode(packet), RpcSession.NONE);
+		assertEquals(42L, decoded.getRequestId());
+		assertEquals(RpcPacketCodec.FLAG_CANCEL, decoded.getFlags());
+		assertEquals(1500, decoded.getTimeout());
+		assertEquals("demo.Controller.hello(String)", decoded.getInvokeMethod());
+		assertTrue(Arrays.equals(new byte[] { 1, 2, 3 }, decoded.getPayload()));
+		assertEquals(Arrays.asList("java"), decoded.getHeaders().get("X-RPC-SERIALIZER"));
+		assertEquals(Arrays.asList("a", "b"), decoded.getHeaders().get("X-Trace"));
+		//超时时间只通过getTimeout返回
+		assertFalse(decoded.getHeaders().containsKey(RpcPacketCodec.TIMEOUT_HEADER));
+		assertFalse(decoded.getHeaders().containsKey(RpcPacketCodec.LOCAL_HEADER_PREFIX + "METHOD"));
+	}
+
+	//按照方法ID发送时不写入方法签名；协商了字典和压缩时，头信息使用字典ID，较大的包体被压缩
+	public void testRoundTripWithSession() throws IOException {
+		RpcSession session = new RpcSession(DICTIONARY, true, null);
+		Map<String, Collection<String>> headers = new HashMap<String, Collection<String>>();
+		headers.put("X-RPC-SERIALIZER", Arrays.asList("java"));
+		byte[] payload = new byte[RpcPacketCodec.COMPRESSION_THRESHOLD * 4];
+		Arrays.fill(payload, (byte) 'a');
+		RpcPacket packet = new RpcPacket("demo.Controller.hello(String)", headers, payload);
+		packet.setMethodId(7);
+
+		ByteBuffer frame = RpcPacketCodec.encode(packet, session);
+		ByteBuffer plain = RpcPacketCodec.encode(packet, RpcSession.NONE);
+		assertTrue(frame.remaining() < plain.remaining() / 2);
+
+		RpcPacket decoded = decode(frame, session);
+		assertEquals(7, decoded.getMethodId());
+		assertEquals("", decoded.getInvokeMethod());
+		assertEquals(0, decoded.getFlags() & RpcPacketCodec.FLAG_COMPRESSED);
+		assertTrue(Arrays.equals(payload, decoded.getPayload()));
+		assertEquals(Arrays.asList("java"), decoded.getHeaders().get("X-RPC-SERIALIZER"));
+	}
+
+	public void testBadMagic() throws IOException {
+		ByteBuffer frame = withoutLength(RpcPacketCodec.encode(new RpcPacket("m", null, new byte[0])));
+		frame.putShort(0, (short) 0x1234);
+		assertDecodeFails(frame);
+	}
+
+	public void testUnsupportedVersion() throws IOException {
+		ByteBuffer frame = withoutLength(RpcPacketCodec.encode(new RpcPacket("m", null, new byte[0])));
+		frame.put(2, (byte) (RpcPacketCodec.VERSION + 1));
+		assertDecodeFails(frame);
+	}
+
+	//固定包头中的长度与帧的实际长度不一致
+	public void testLengthMismatch() throws IOException {
+		ByteBuffer frame = withoutLength(RpcPacketCodec.encode(new RpcPacket("m", null, new byte[] { 1, 2, 3 })));
+		frame.putInt(20, 1000);
+		assertDecodeFails(frame);
+		assertDecodeFails(ByteBuffer.wrap(new byte[RpcPacketCodec.FIXED_HEADER_LENGTH - 1]));
+	}
+
+	public void testOversizedHeader() {
+		char[] name = new char[0x8000];
+		Arrays.fill(name, 'x');
+		try {
+			RpcPacketCodec.encode(new RpcPacket(new String(name), null, new byte[0]));
+			fail("Header longer than the limit must be rejected");
+		} catch (IOException e) {
+			//expected
+		}
+	}
+
+	//压缩包体声明的原始长度超过帧的最大长度时直接失败，不分配内存
+	public void testOversizedCompressedPayload() throws IOException {
+		byte[] payload = new byte[RpcPacketCodec.COMPRESSION_THRESHOLD * 2];
+		ByteBuffer frame = withoutLength(RpcPacketCodec.encode(new RpcPacket("m", null, payload), new RpcSession(null, true, null)));
+		int payloadLength = frame.getInt(20);
+		frame.putInt(frame.limit() - payloadLength, RpcPacketCodec.DEFAULT_MAX_FRAME_LENGTH + 1);
+		assertDecodeFails(frame);
+	}
+
+	public void testHandshakeRoundTrip() throws IOException {
+		RpcHandshake request = RpcHandshake.request(Arrays.asList("java", "json"), Arrays.asList(RpcPacketCodec.COMPRESSION_DEFLATE));
+		RpcHandshake decodedRequest = RpcHandshake.decode(request.encode());
+		assertEquals(RpcHandshake.PROTOCOL_VERSION, decodedRequest.getVersion());
+		assertEquals(Arrays.asList("java", "json"), decodedRequest.getSerializers());
+
+		Map<String, Integer> methodIds = Collections.singletonMap("demo.Controller.hello(String)", 1);
+		RpcHandshake response = RpcHandshake.accept(decodedRequest, Arrays.asList("json", "binary"),
+				Arrays.asList(RpcPacketCodec.COMPRESSION_DEFLATE), methodIds, DICTIONARY);
+		RpcHandshake decodedResponse = RpcHandshake.decode(response.encode());
+		assertEquals(Arrays.asList("json"), decodedResponse.getSerializers());
+		assertEquals(Arrays.asList(RpcPacketCodec.COMPRESSION_DEFLATE), decodedResponse.getCompressions());
+		assertEquals(Integer.valueOf(1), decodedResponse.getMethodIds().get("demo.Controller.hello(String)"));
+		assertEquals(DICTIONARY, decodedResponse.getDictionary());
+	}
+
+	//版本不一致时只返回服务端的版本
+	public void testHandshakeVersionMismatch() throws IOException {
+		RpcHandshake request = new RpcHandshake(RpcHandshake.PROTOCOL_VERSION + 1, Arrays.asList("java"), null, null, null);
+		RpcHandshake decoded = RpcHandshake.decode(request.encode());
+		assertEquals(RpcHandshake.PROTOCOL_VERSION + 1, decoded.getVersion());
+		assertTrue(decoded.getSerializers().isEmpty());
+		RpcHandshake response = RpcHandshake.accept(decoded, Arrays.asList("java"), null, null, null);
+		assertEquals(RpcHandshake.PROTOCOL_VERSION, response.getVersion());
+		assertTrue(response.getSerializers().isEmpty());
+	}
+
+	public void testMalformedHandshake() throws IOException {
+		try {
+			RpcHandshake.decode(new byte[] { 0, 0 });
+			fail("Truncated handshake must be rejected");
+		} catch (IOException e) {
+			//expected
+		}
+		byte[] bytes = RpcHandshake.request(Arrays.asList("java"), null).encode();
+		try {
+			RpcHandshake.decode(Arrays.copyOf(bytes, bytes.length - 1));
+			fail("Truncated handshake must be rejected");
+		} catch (IOException e) {
+			//expected
+		}
+	}
+
+	//去掉长度前缀，与NioChannel交给FrameHandler的帧相同
+	private static ByteBuffer withoutLength(ByteBuffer frame) {
+		frame.getInt();
+		return frame.slice();
+	}
+
+	private static RpcPacket decode(ByteBuffer frame, RpcSession session) throws IOException {
+		assertEquals(frame.remaining() - 4, frame.getInt(frame.position()));
+		return RpcPacketCodec.decode(withoutLength(frame), session);
+	}
+
+	private static void assertDecodeFails(ByteBuffer frame) {
+		try {
+			RpcPacketCodec.decode(frame);
+			fail("Invalid frame must be rejected");
+		} catch (IOException e) {
+			//expected
+		}
+	}
+
+}
@@ -0,0 +1,130 @@
+package feign.serializer;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+//BinarySerializer的序列化、反序列化，以及格式错误或者不受信任的输入
+public class BinarySerializerTest extends TestCase {
+
+	public enum Color { RED, GREEN }
+
+	public static class Item {
+		public String name;
+		public int qty;
+		public Color color;
+		public BigDecimal price;
+	}
+
+	public static class SpecialItem extends Item {
+		public long extra;
+	}
+
+	public static class Order {
+		public List<Item> items;
+		public Map<String, Item> byName;
+		public Item[] array;
+		public Date createTime;
+	}
+
+	//不在Order的字段中出现的类型
+	public static class Untrusted {
+		public String command;
+	}
+
+	private final BinarySerializer serializer = new BinarySerializer();
+
+	public void testRoundTrip() throws IOException {
+		Order order = newOrder();
+		Order decoded = (Order) this.serializer.deserialize(this.serializer.serialize(order), Order.class);
+		assertEquals(2, decoded.items.size());
+		assertEquals("a", decoded.items.get(0).name);
+		assertEquals(3, decoded.items.get(0).qty);
+		assertEquals(Color.GREEN, decoded.items.get(0).color);
+		assertEquals(new BigDecimal("1.5"), decoded.items.get(0).price);
+		//声明类型的子类也可以反序列化
+		assertTrue(decoded.items.get(1) instanceof SpecialItem);
+		assertEquals(7L, ((SpecialItem) decoded.items.get(1)).extra);
+		assertEquals("a", decoded.byName.get("a").name);
+		assertEquals(1, decoded.array.length);
+		assertEquals(order.createTime, decoded.createTime);
+	}
+
+	public void testRoundTripArgs() throws IOException {
+		byte[] bytes = this.serializer.serialize(new Object[] { newOrder(), 5, "x" });
+		Object[] args = this.serializer.deserializeArgs(bytes, new Type[] { Order.class, int.class, String.class });
+		assertEquals(3, args.length);
+		assertEquals("a", ((Order) args[0]).items.get(0).name);
+		assertEquals(Integer.valueOf(5), args[1]);
+		assertEquals("x", args[2]);
+	}
+
+	//只有目标类型的字段中出现的类型以及允许的包可以反序列化
+	public void testUntrustedClass() throws IOException {
+		Untrusted untrusted = new Untrusted();
+		untrusted.command = "rm";
+		byte[] bytes = this.serializer.serialize(untrusted);
+		assertRejected(bytes, Order.class);
+		assertRejected(bytes, Object.class);
+
+		BinarySerializer allowed = new BinarySerializer();
+		allowed.allowPackage(Untrusted.class.getName());
+		assertEquals("rm", ((Untrusted) allowed.deserialize(bytes, Object.class)).command);
+	}
+
+	//长度超过剩余字节数或者为负数时，在分配内存之前失败
+	public void testInvalidLength() throws IOException {
+		byte[] bytes = this.serializer.serialize(new int[0]);
+		assertEquals(0, bytes[bytes.length - 1]);
+		byte[] huge = Arrays.copyOf(bytes, bytes.length + 4);
+		System.arraycopy(new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 }, 0, huge, bytes.length - 1, 5);
+		assertRejected(huge, int[].class);
+		byte[] negative = huge.clone();
+		negative[negative.length - 1] = 0x0F;
+		assertRejected(negative, int[].class);
+	}
+
+	public void testMalformedInput() throws IOException {
+		byte[] bytes = this.serializer.serialize(newOrder());
+		for (int length = 1; length < bytes.length; length++) {
+			assertRejected(Arrays.copyOf(bytes, length), Order.class);
+		}
+		assertRejected(new byte[] { (byte) 0x7F }, Order.class);
+	}
+
+	private Order newOrder() {
+		Item item = new Item();
+		item.name = "a";
+		item.qty = 3;
+		item.color = Color.GREEN;
+		item.price = new BigDecimal("1.5");
+		SpecialItem special = new SpecialItem();
+		special.name = "b";
+		special.extra = 7;
+		Order order = new Order();
+		order.items = new ArrayList<Item>(Arrays.asList(item, special));
+		order.byName = new HashMap<String, Item>();
+		order.byName.put("a", item);
+		order.array = new Item[] { item };
+		order.createTime = new Date();
+		return order;
+	}
+
+	private void assertRejected(byte[] bytes, Type type) {
+		try {
+			this.serializer.deserialize(bytes, type);
+			fail("Invalid input must be rejected");
+		} catch (IOException e) {
+			//expected
+		}
+	}
+
+}
@@ -0,0 +1,78 @@
+package feign.server;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+//GradientLimiter按照延迟调整限制，每个采样窗口至少10个样本并且至少持续100毫秒
+public class GradientLimiterTest extends TestCase {
+
+	private static final long WINDOW_MILLIS = 110;
+
+	public void testInitialLimit() {
+		assertEquals(2, new GradientLimiter(0, 100).getLimit());
+		assertEquals(20, new GradientLimiter(20, 100).getLimit());
+		assertEquals(100, new GradientLimiter(500, 100).getLimit());
+		assertEquals(2, new GradientLimiter(10, 1).getLimit());
+	}
+
+	public void testAcquireAndCancel() {
+		GradientLimiter limiter = new GradientLimiter(2, 10);
+		assertTrue(limiter.tryAcquire());
+		assertTrue(limiter.tryAcquire());
+		assertFalse(limiter.tryAcquire());
+		assertEquals(2, limiter.getInFlight());
+		limiter.cancel();
+		assertEquals(1, limiter.getInFlight());
+		assertTrue(limiter.tryAcquire());
+	}
+
+	//延迟稳定并且请求数达到限制时，限制按照sqrt(limit)逐渐增大
+	public void testGrowUnderFullLoad() throws InterruptedException {
+		GradientLimiter limiter = new GradientLimiter(10, 100);
+		for (int i = 0; i < 5; i++) {
+			runWindow(limiter, 10, TimeUnit.MILLISECONDS.toNanos(1));
+		}
+		assertTrue("limit " + limiter.getLimit(), limiter.getLimit() > 10);
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	//延迟超过基准的1.5倍时，限制减小
+	public void testShrinkOnLatencyIncrease() throws InterruptedException {
+		GradientLimiter limiter = new GradientLimiter(20, 100);
+		runWindow(limiter, 10, TimeUnit.MILLISECONDS.toNanos(1));
+		int limit = limiter.getLimit();
+		for (int i = 0; i < 2; i++) {
+			runWindow(limiter, 10, TimeUnit.MILLISECONDS.toNanos(10));
+			assertTrue("limit " + limiter.getLimit(), limiter.getLimit() < limit);
+			limit = limiter.getLimit();
+		}
+	}
+
+	//正在处理的请求数从未超过限制的一半时，限制不增大
+	public void testNoGrowthUnderLowLoad() throws InterruptedException {
+		GradientLimiter limiter = new GradientLimiter(20, 100);
+		for (int i = 0; i < 3; i++) {
+			runWindow(limiter, 1, TimeUnit.MILLISECONDS.toNanos(1));
+		}
+		assertEquals(20, limiter.getLimit());
+	}
+
+	//每次同时开始concurrency个请求，直到样本数足够关闭一个采样窗口，concurrency应当整除10，避免样本跨越窗口
+	private static void runWindow(GradientLimiter limiter, int concurrency, long rttNanos) throws InterruptedException {
+		int samples = 0;
+		while (samples < 10) {
+			for (int i = 0; i < concurrency; i++) {
+				assertTrue(limiter.tryAcquire());
+			}
+			if (samples + concurrency >= 10) {
+				Thread.sleep(WINDOW_MILLIS);
+			}
+			for (int i = 0; i < concurrency; i++) {
+				limiter.release(rttNanos);
+			}
+			samples += concurrency;
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+package feign.server;
+
+import java.net.ServerSocket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import feign.annotation.Bulkhead;
+import feign.server.context.RpcServerContext;
+import feign.server.method.RpcMethodWrapper;
+
+//MethodBulkhead限制并发以及专用线程池，设置在Controller上的隔离舱由各个方法共用
+public class MethodBulkheadTest extends TestCase {
+
+	@Bulkhead
+	public static class UnlimitedController {
+	}
+
+	@Bulkhead(maxConcurrent = 2)
+	public static class ReportController {
+		public String daily(String day) {
+			return day;
+		}
+
+		public String monthly(String month) {
+			return month;
+		}
+
+		@Bulkhead(maxConcurrent = 1, threads = 1, queueCapacity = 0)
+		public String export(String format) {
+			return format;
+		}
+	}
+
+	//超过maxConcurrent的请求被拒绝，执行完成之后释放许可
+	public void testRejectWhenFull() {
+		MethodBulkhead bulkhead = new MethodBulkhead("daily", ReportController.class.getAnnotation(Bulkhead.class));
+		assertTrue(bulkhead.tryAcquire());
+		assertTrue(bulkhead.tryAcquire());
+		assertFalse(bulkhead.tryAcquire());
+		assertEquals(2, bulkhead.getActive());
+		assertEquals(1, bulkhead.getRejected());
+		bulkhead.release();
+		assertTrue(bulkhead.tryAcquire());
+		//拿到许可但是没有被执行的请求同样释放许可
+		bulkhead.cancel();
+		assertTrue(bulkhead.tryAcquire());
+		assertEquals(1, bulkhead.getCompleted());
+		assertEquals(2, bulkhead.getRejected());
+	}
+
+	//专用线程池的线程以及队列都满时拒绝执行，不影响共用的业务线程池
+	public void testDedicatedExecutor() throws Exception {
+		Bulkhead config = ReportController.class.getMethod("export", String.class).getAnnotation(Bulkhead.class);
+		MethodBulkhead bulkhead = new MethodBulkhead("export", config);
+		Executor shared = Runnable::run;
+		Executor executor = bulkhead.executor(shared);
+		assertNotSame(shared, executor);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+		executor.execute(() -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		try {
+			executor.execute(() -> { });
+			fail("A full bulkhead executor must reject");
+		} catch (RejectedExecutionException e) {
+			//expected
+		}
+		release.countDown();
+		bulkhead.shutdown();
+		bulkhead.awaitTermination(5000);
+		assertTrue(bulkhead.isShutdown());
+	}
+
+	//maxConcurrent小于等于0时不限制并发，没有专用线程时使用共用的业务线程池
+	public void testUnlimited() {
+		MethodBulkhead bulkhead = new MethodBulkhead("unlimited", UnlimitedController.class.getAnnotation(Bulkhead.class));
+		for (int i = 0; i < 100; i++) {
+			assertTrue(bulkhead.tryAcquire());
+		}
+		Executor shared = Runnable::run;
+		assertSame(shared, bulkhead.executor(shared));
+		assertFalse(bulkhead.isShutdown());
+	}
+
+	//Controller上的隔离舱由没有单独设置隔离舱的方法共用，方法上的设置覆盖Controller上的设置
+	public void testSharedByController() throws Exception {
+		RpcServerContext context = new RpcServerContext();
+		for (String name : new String[] { "daily", "monthly", "export" }) {
+			RpcMethodWrapper wrapper = new RpcMethodWrapper();
+			wrapper.setClassName("ReportController");
+			wrapper.setMethodName(name);
+			wrapper.setMethod(ReportController.class.getMethod(name, String.class));
+			wrapper.setTarget(new ReportController());
+			wrapper.setReturnType(String.class);
+			Bulkhead config = wrapper.getMethod().getAnnotation(Bulkhead.class);
+			wrapper.setBulkhead(config != null ? config : ReportController.class.getAnnotation(Bulkhead.class));
+			context.appendMethodMapping(wrapper);
+		}
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		SocketServer server = new SocketServer(port, context, 1, 1, 0);
+		try {
+			server.createBulkheads();
+			MethodBulkhead daily = server.bulkheads.get(context.getRegistry().get("ReportController.daily(String)"));
+			MethodBulkhead monthly = server.bulkheads.get(context.getRegistry().get("ReportController.monthly(String)"));
+			MethodBulkhead export = server.bulkheads.get(context.getRegistry().get("ReportController.export(String)"));
+			assertEquals("ReportController", daily.getName());
+			assertSame(daily, monthly);
+			assertEquals("ReportController.export(String)", export.getName());
+			assertEquals(2, server.getBulkheads().size());
+		} finally {
+			server.server.close();
+			for (MethodBulkhead bulkhead : server.getBulkheads()) {
+				bulkhead.shutdown();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,235 @@
+package feign.server;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import junit.framework.TestCase;
+
+import feign.Request;
+import feign.Response;
+import feign.Util;
+import feign.client.socket.SocketClient;
+import feign.client.socket.SocketConnection;
+import feign.client.socket.SocketConnectionPool;
+import feign.client.socket.SocketRoute;
+import feign.packet.RpcPacket;
+import feign.properties.FeignSocketClientProperties;
+import feign.serializer.Serializer;
+import feign.serializer.SerializerFactory;
+import feign.server.context.RpcServerContext;
+import feign.server.method.RpcMethodWrapper;
+
+//SocketServer处理请求：调用方法并写回结果或者错误信息，过载、停止、截止时间到期以及取消时的处理
+//Server只有一个业务线程，队列长度为1，block执行时后续的请求在队列中等待
+public class SocketServerTest extends TestCase {
+
+	public static class TestController {
+		//block开始执行，以及允许block返回
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		//echo被调用的次数
+		final AtomicInteger echoed = new AtomicInteger();
+		//block是否被中断
+		volatile boolean interrupted = false;
+
+		public String echo(String value) {
+			this.echoed.incrementAndGet();
+			return value;
+		}
+
+		public String block(String value) {
+			this.started.countDown();
+			try {
+				this.release.await();
+			} catch (InterruptedException e) {
+				this.interrupted = true;
+			}
+			return value;
+		}
+
+		public String fail(String value) {
+			throw new IllegalStateException("boom " + value);
+		}
+	}
+
+	private final Serializer serializer = SerializerFactory.getSerializer("java");
+
+	private final TestController controller = new TestController();
+
+	private int port;
+
+	private SocketServer server;
+
+	private SocketConnectionPool pool;
+
+	private SocketClient client;
+
+	@Override
+	protected void setUp() throws Exception {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			this.port = socket.getLocalPort();
+		}
+		RpcServerContext context = new RpcServerContext();
+		for (String name : new String[] { "echo", "fail", "block" }) {
+			RpcMethodWrapper wrapper = new RpcMethodWrapper();
+			wrapper.setClassName("TestController");
+			wrapper.setMethodName(name);
+			wrapper.setMethod(TestController.class.getMethod(name, String.class));
+			wrapper.setTarget(this.controller);
+			wrapper.setReturnType(String.class);
+			context.appendMethodMapping(wrapper);
+		}
+		this.server = new SocketServer(this.port, context, 1, 1, 0, 1, SocketServer.RejectionPolicy.BUSY);
+		assertTrue(this.server.start());
+		FeignSocketClientProperties properties = new FeignSocketClientProperties();
+		properties.setMaxConnectionsPerRoute(1);
+		properties.setMaxRequestsPerConnection(4);
+		properties.setMinIdlePerRoute(0);
+		properties.setIoThreads(1);
+		this.pool = new SocketConnectionPool(properties);
+		this.client = SocketClient.Builder.create().ConnectionPool(this.pool).build();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		this.controller.release.countDown();
+		this.pool.close();
+		this.server.stop();
+	}
+
+	public void testInvoke() throws IOException {
+		Response response = this.execute("echo", "hello");
+		assertEquals(200, response.status());
+		assertEquals("hello", this.serializer.deserialize(Util.toByteArray(response.body().asInputStream()), String.class));
+	}
+
+	//方法抛出异常时响应FLAG_ERROR，客户端转换成状态码为500的Response，reason是服务端的错误信息
+	public void testErrorResponse() throws IOException {
+		Response response = this.execute("fail", "hello");
+		assertEquals(SocketClient.SERVER_ERROR_STATUS, response.status());
+		assertTrue(response.reason(), response.reason().contains("boom hello"));
+		//找不到方法同样是服务端的错误
+		response = this.execute("missing", "hello");
+		assertEquals(SocketClient.SERVER_ERROR_STATUS, response.status());
+		assertTrue(response.reason(), response.reason().contains("TestController.missing(String)"));
+	}
+
+	//业务线程以及队列都满时响应FLAG_BUSY，客户端可以马上在其他Server上重试
+	public void testBusyWhenQueueFull() throws Exception {
+		CompletableFuture<Response> blocked = this.executeAsync("block", "x");
+		assertTrue(this.controller.started.await(5, TimeUnit.SECONDS));
+		CompletableFuture<Response> queued = this.executeAsync("echo", "queued");
+		waitUntil(() -> this.queueSize() == 1);
+		assertEquals(SocketClient.NOT_SENT_STATUS, this.execute("echo", "rejected").status());
+		this.controller.release.countDown();
+		assertEquals(200, blocked.get(5, TimeUnit.SECONDS).status());
+		assertEquals(200, queued.get(5, TimeUnit.SECONDS).status());
+		assertEquals(1, this.controller.echoed.get());
+	}
+
+	//停止时已有连接上新的请求响应FLAG_BUSY，正在处理的请求完成并写回之后才关闭连接
+	public void testBusyWhileDraining() throws Exception {
+		CompletableFuture<Response> blocked = this.executeAsync("block", "x");
+		assertTrue(this.controller.started.await(5, TimeUnit.SECONDS));
+		Thread stopper = new Thread(this.server::stop);
+		stopper.start();
+		waitUntil(() -> this.server.draining);
+		assertEquals(SocketClient.NOT_SENT_STATUS, this.execute("echo", "hello").status());
+		assertEquals(0, this.controller.echoed.get());
+		this.controller.release.countDown();
+		assertEquals(200, blocked.get(5, TimeUnit.SECONDS).status());
+		stopper.join(5000);
+		assertFalse(stopper.isAlive());
+		assertTrue(this.server.workers.isEmpty());
+	}
+
+	//在队列中等待超过截止时间的请求直接丢弃，不调用方法，也不写回响应
+	public void testExpiredRequestIsNotInvoked() throws Exception {
+		CompletableFuture<Response> blocked = this.executeAsync("block", "x");
+		assertTrue(this.controller.started.await(5, TimeUnit.SECONDS));
+		//直接在连接上发送请求，客户端不会因为超时而取消该请求
+		SocketConnection connection = this.pool.borrow(new SocketRoute("localhost", this.port), 1000);
+		RpcPacket requestPacket = new RpcPacket("TestController.echo(String)", this.headers(),
+				this.serializer.serializeArgs(new Object[] { "late" }));
+		requestPacket.setTimeout(100);
+		CompletableFuture<RpcPacket> expiring = connection.send(requestPacket);
+		waitUntil(() -> this.queueSize() == 1);
+		Thread.sleep(200);
+		this.controller.release.countDown();
+		assertEquals(200, blocked.get(5, TimeUnit.SECONDS).status());
+		waitUntil(() -> this.server.expired.get() == 1);
+		assertEquals(0, this.controller.echoed.get());
+		assertFalse(expiring.isDone());
+		expiring.cancel(false);
+		this.pool.release(connection, true);
+	}
+
+	//客户端取消排队中的请求时，业务线程取出请求后直接丢弃，不调用方法
+	public void testCancelQueuedCall() throws Exception {
+		CompletableFuture<Response> blocked = this.executeAsync("block", "x");
+		assertTrue(this.controller.started.await(5, TimeUnit.SECONDS));
+		CompletableFuture<Response> queued = this.executeAsync("echo", "hello");
+		waitUntil(() -> this.queueSize() == 1);
+		queued.cancel(false);
+		waitUntil(() -> this.server.cancelled.get() == 1);
+		this.controller.release.countDown();
+		assertEquals(200, blocked.get(5, TimeUnit.SECONDS).status());
+		waitUntil(() -> ((ThreadPoolExecutor) this.server.executor).getCompletedTaskCount() == 2);
+		assertEquals(0, this.controller.echoed.get());
+	}
+
+	//开启interruptOnCancel时，客户端取消正在执行的请求会中断执行线程
+	public void testCancelRunningCall() throws Exception {
+		this.server.setInterruptOnCancel(true);
+		CompletableFuture<Response> running = this.executeAsync("block", "x");
+		assertTrue(this.controller.started.await(5, TimeUnit.SECONDS));
+		running.cancel(false);
+		waitUntil(() -> this.controller.interrupted);
+		assertEquals(1, this.server.cancelled.get());
+		//执行线程的中断状态已经清除，可以继续处理请求
+		assertEquals(200, this.execute("echo", "hello").status());
+	}
+
+	private Response execute(String method, String value) throws IOException {
+		return this.client.execute(this.request(method, value), new Request.Options(1000, 3000));
+	}
+
+	private CompletableFuture<Response> executeAsync(String method, String value) throws IOException {
+		return this.client.executeAsync(this.request(method, value), new Request.Options(1000, 5000));
+	}
+
+	private Request request(String method, String value) throws IOException {
+		String url = "socket://localhost:" + this.port + "/rpc?interface=TestController." + method + "(String)";
+		return Request.create("POST", url, this.headers(), this.serializer.serializeArgs(new Object[] { value }), StandardCharsets.UTF_8);
+	}
+
+	private Map<String, Collection<String>> headers() {
+		Map<String, Collection<String>> headers = new HashMap<String, Collection<String>>();
+		headers.put(SerializerFactory.SERIALIZER_HEADER, Arrays.asList(this.serializer.getName()));
+		return headers;
+	}
+
+	private int queueSize() {
+		return ((ThreadPoolExecutor) this.server.executor).getQueue().size();
+	}
+
+	private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(condition.getAsBoolean());
+	}
+
+}
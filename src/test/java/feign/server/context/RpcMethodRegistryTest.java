@@ -0,0 +1,74 @@
+package feign.server.context;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import feign.server.method.RpcMethodWrapper;
+
+//RpcMethodRegistry按照方法签名区分重载的方法，并分配方法ID
+public class RpcMethodRegistryTest extends TestCase {
+
+	public static class UserController {
+		public String find(String name) {
+			return name;
+		}
+
+		public String find(String name, int age) {
+			return name + age;
+		}
+
+		public String find(long id) {
+			return String.valueOf(id);
+		}
+
+		public void delete(long id) {
+		}
+	}
+
+	private RpcMethodRegistry registry;
+
+	@Override
+	protected void setUp() throws Exception {
+		RpcServerContext context = new RpcServerContext();
+		for (Method method : UserController.class.getDeclaredMethods()) {
+			RpcMethodWrapper wrapper = new RpcMethodWrapper();
+			wrapper.setClassName("UserController");
+			wrapper.setMethodName(method.getName());
+			wrapper.setMethod(method);
+			wrapper.setTarget(new UserController());
+			wrapper.setReturnType(method.getReturnType());
+			context.appendMethodMapping(wrapper);
+		}
+		this.registry = context.getRegistry();
+	}
+
+	//重载的方法各自有不同的签名以及方法ID，ID按照签名排序从1开始分配
+	public void testOverloadedMethodIds() throws Exception {
+		assertEquals(4, this.registry.size());
+		Map<String, Integer> ids = this.registry.getMethodIds();
+		assertEquals(Integer.valueOf(1), ids.get("UserController.delete(long)"));
+		assertEquals(Integer.valueOf(2), ids.get("UserController.find(String)"));
+		assertEquals(Integer.valueOf(3), ids.get("UserController.find(String,int)"));
+		assertEquals(Integer.valueOf(4), ids.get("UserController.find(long)"));
+		for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+			RpcMethodWrapper wrapper = this.registry.get(entry.getValue());
+			assertEquals(entry.getKey(), wrapper.getSignature());
+			assertSame(wrapper, this.registry.get(entry.getKey()));
+		}
+		assertEquals(UserController.class.getMethod("find", String.class, int.class),
+				this.registry.get("UserController.find(String,int)").getMethod());
+	}
+
+	//只使用"类名.方法名"调用时，只能找到没有重载的方法
+	public void testLookupByName() {
+		assertEquals("UserController.delete(long)", this.registry.get("UserController.delete").getSignature());
+		assertNull(this.registry.get("UserController.find"));
+		assertNull(this.registry.get("UserController.missing(String)"));
+		assertNull(this.registry.get(null));
+		assertNull(this.registry.get(0));
+		assertNull(this.registry.get(5));
+	}
+
+}
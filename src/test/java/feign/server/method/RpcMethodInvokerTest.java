@@ -0,0 +1,104 @@
+package feign.server.method;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+//生成的调用器与反射调用的结果一致，以及无法生成调用器时退回到反射调用
+public class RpcMethodInvokerTest extends TestCase {
+
+	public static class Calculator {
+		private int calls = 0;
+
+		public long add(int a, long b) {
+			this.calls++;
+			return a + b;
+		}
+
+		public String join(String separator, String[] values, boolean upperCase) {
+			this.calls++;
+			String joined = String.join(separator, values);
+			return upperCase ? joined.toUpperCase() : joined;
+		}
+
+		public void reset() {
+			this.calls = 0;
+		}
+
+		public String fail(String message) throws IOException {
+			throw new IOException(message);
+		}
+
+		public static double half(double value) {
+			return value / 2;
+		}
+
+		private int calls() {
+			return this.calls;
+		}
+	}
+
+	static class Hidden {
+		public String hello(String name) {
+			return "hello " + name;
+		}
+	}
+
+	private final Calculator calculator = new Calculator();
+
+	public void testGeneratedMatchesReflection() throws Throwable {
+		assertSameResult(method(Calculator.class, "add", int.class, long.class), 1, 2L);
+		assertSameResult(method(Calculator.class, "join", String.class, String[].class, boolean.class), "-", new String[] { "a", "b" }, true);
+		assertSameResult(method(Calculator.class, "reset"));
+		assertSameResult(method(Calculator.class, "half", double.class), 3.0);
+	}
+
+	//基本类型的参数按照Number拆箱，反序列化得到的Long也可以传给int参数
+	public void testNumericArguments() throws Throwable {
+		RpcMethodInvoker invoker = generated(method(Calculator.class, "add", int.class, long.class));
+		assertEquals(Long.valueOf(5), invoker.invoke(new Object[] { Long.valueOf(2), Integer.valueOf(3) }));
+	}
+
+	//两种调用器抛出的都是方法自身的异常
+	public void testExceptionNotWrapped() throws Throwable {
+		Method method = method(Calculator.class, "fail", String.class);
+		for (RpcMethodInvoker invoker : Arrays.asList(generated(method), new RpcMethodInvoker.ReflectiveInvoker(this.calculator, method))) {
+			try {
+				invoker.invoke(new Object[] { "boom" });
+				fail("The exception of the method must be thrown");
+			} catch (IOException e) {
+				assertEquals("boom", e.getMessage());
+			}
+		}
+	}
+
+	//非public的方法或者类无法生成调用器
+	public void testFallbackToReflection() throws Throwable {
+		RpcMethodInvoker invoker = RpcMethodInvoker.create(this.calculator, method(Calculator.class, "calls"));
+		assertTrue(invoker instanceof RpcMethodInvoker.ReflectiveInvoker);
+		this.calculator.add(1, 1);
+		assertEquals(1, invoker.invoke(new Object[0]));
+
+		invoker = RpcMethodInvoker.create(new Hidden(), method(Hidden.class, "hello", String.class));
+		assertTrue(invoker instanceof RpcMethodInvoker.ReflectiveInvoker);
+		assertEquals("hello rpc", invoker.invoke(new Object[] { "rpc" }));
+	}
+
+	private void assertSameResult(Method method, Object... args) throws Throwable {
+		Object expected = new RpcMethodInvoker.ReflectiveInvoker(this.calculator, method).invoke(args);
+		assertEquals(expected, generated(method).invoke(args));
+	}
+
+	private RpcMethodInvoker generated(Method method) {
+		RpcMethodInvoker invoker = RpcMethodInvoker.create(this.calculator, method);
+		assertFalse(invoker instanceof RpcMethodInvoker.ReflectiveInvoker);
+		return invoker;
+	}
+
+	private static Method method(Class<?> clazz, String name, Class<?>... parameterTypes) throws NoSuchMethodException {
+		return clazz.getDeclaredMethod(name, parameterTypes);
+	}
+
+}
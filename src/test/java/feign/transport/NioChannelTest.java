@@ -0,0 +1,103 @@
+package feign.transport;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+//NioChannel按照长度前缀拆分帧，以及超过最大长度的帧
+public class NioChannelTest extends TestCase {
+
+	private static final int MAX_FRAME_LENGTH = 1024;
+
+	private EventLoop eventLoop;
+
+	private ServerSocketChannel server;
+
+	private SocketChannel peer;
+
+	private final CopyOnWriteArrayList<byte[]> frames = new CopyOnWriteArrayList<byte[]>();
+
+	private final CompletableFuture<Throwable> closed = new CompletableFuture<Throwable>();
+
+	@Override
+	protected void setUp() throws Exception {
+		this.eventLoop = new EventLoop("NioChannelTest-IO");
+		this.server = ServerSocketChannel.open();
+		this.server.bind(new InetSocketAddress("127.0.0.1", 0));
+		SocketChannel client = SocketChannel.open(this.server.getLocalAddress());
+		this.peer = this.server.accept();
+		new NioChannel(client, this.eventLoop, new NioChannel.FrameHandler() {
+			@Override
+			public void frameReceived(NioChannel channel, ByteBuffer frame) {
+				byte[] bytes = new byte[frame.remaining()];
+				frame.get(bytes);
+				NioChannelTest.this.frames.add(bytes);
+			}
+
+			@Override
+			public void channelClosed(NioChannel channel, Throwable cause) {
+				NioChannelTest.this.closed.complete(cause);
+			}
+		}, MAX_FRAME_LENGTH);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		this.peer.close();
+		this.server.close();
+		this.eventLoop.shutdown();
+	}
+
+	//多个帧在同一次读取中到达，或者一个帧分多次到达
+	public void testSplitFrames() throws Exception {
+		ByteBuffer data = ByteBuffer.allocate(4 + 3 + 4 + MAX_FRAME_LENGTH);
+		data.putInt(3).put(new byte[] { 1, 2, 3 });
+		data.putInt(MAX_FRAME_LENGTH).put(new byte[MAX_FRAME_LENGTH]);
+		data.flip();
+		ByteBuffer first = data.duplicate();
+		first.limit(10);
+		write(first);
+		Thread.sleep(50);
+		data.position(10);
+		write(data);
+		long deadline = System.currentTimeMillis() + 5000;
+		while (this.frames.size() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(2, this.frames.size());
+		assertEquals(3, this.frames.get(0).length);
+		assertEquals(MAX_FRAME_LENGTH, this.frames.get(1).length);
+		assertFalse(this.closed.isDone());
+	}
+
+	//超过最大长度的帧直接关闭连接
+	public void testOversizedFrame() throws Exception {
+		ByteBuffer data = ByteBuffer.allocate(4);
+		data.putInt(MAX_FRAME_LENGTH + 1).flip();
+		write(data);
+		Throwable cause = this.closed.get(5, TimeUnit.SECONDS);
+		assertTrue(cause instanceof IOException);
+		assertTrue(this.frames.isEmpty());
+	}
+
+	public void testNegativeFrameLength() throws Exception {
+		ByteBuffer data = ByteBuffer.allocate(4);
+		data.putInt(-1).flip();
+		write(data);
+		assertTrue(this.closed.get(5, TimeUnit.SECONDS) instanceof IOException);
+	}
+
+	private void write(ByteBuffer data) throws IOException {
+		while (data.hasRemaining()) {
+			this.peer.write(data);
+		}
+	}
+
+}